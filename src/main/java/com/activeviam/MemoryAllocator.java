@@ -7,6 +7,9 @@
 
 package com.activeviam;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
 public interface MemoryAllocator {
 
   /** The native page size. */
@@ -43,4 +46,28 @@ public interface MemoryAllocator {
    *     leaked.
    */
   void freeMemory(long address, long bytes);
+
+  /**
+   * Faults in the pages of memory obtained from {@link #allocateMemory}, in parallel, before it is
+   * written.
+   *
+   * <p>The first write to a page of a large allocation otherwise stops the writing thread for a
+   * page fault, one page at a time. Prefaulting lets the common {@link ForkJoinPool} take these
+   * faults while the caller does something else, e.g. parses the data it is about to write, and
+   * then {@link ForkJoinTask#join() joins} the returned task. The content of the memory is not
+   * changed, and it can be written while the task runs.
+   *
+   * @param address the address of the memory
+   * @param bytes the number of bytes to prefault
+   * @param parallelism the number of ranges the memory is split into, each being prefaulted by a
+   *     single thread
+   * @return the task prefaulting the memory, already submitted
+   */
+  default ForkJoinTask<Void> prefault(final long address, final long bytes, final int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive, was " + parallelism);
+    }
+    final long grain = Math.max(PAGE_SIZE, (bytes + parallelism - 1) / parallelism);
+    return ForkJoinPool.commonPool().submit(new PrefaultAction(address, address + bytes, grain));
+  }
 }
@@ -0,0 +1,79 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Touches every page of a range of memory, splitting the range between the threads of a {@link
+ * java.util.concurrent.ForkJoinPool}.
+ *
+ * <p>A page is touched with an atomic addition of 0 to one of its ints: it is faulted in for
+ * writing, as the first write would do, but its content is left unchanged even if other threads
+ * already write into it.
+ *
+ * @author ActiveViam
+ */
+class PrefaultAction extends RecursiveAction {
+
+  private static final long serialVersionUID = 1L;
+
+  /** First address of the range, inclusive */
+  protected final long from;
+
+  /** Last address of the range, exclusive */
+  protected final long to;
+
+  /** Number of bytes under which the range is touched by the current thread */
+  protected final long grain;
+
+  /**
+   * Constructor.
+   *
+   * @param from first address of the range, inclusive
+   * @param to last address of the range, exclusive
+   * @param grain number of bytes under which the range is not split anymore
+   */
+  PrefaultAction(final long from, final long to, final long grain) {
+    this.from = from;
+    this.to = to;
+    this.grain = grain;
+  }
+
+  @Override
+  protected void compute() {
+    if (this.to - this.from <= this.grain) {
+      touch(this.from, this.to);
+      return;
+    }
+    // Split on a page boundary, so that no page is touched twice
+    final long middle = (this.from + (this.to - this.from) / 2) & -MemoryAllocator.PAGE_SIZE;
+    if (middle <= this.from) {
+      touch(this.from, this.to);
+      return;
+    }
+    invokeAll(
+        new PrefaultAction(this.from, middle, this.grain),
+        new PrefaultAction(middle, this.to, this.grain));
+  }
+
+  /**
+   * Touches all the pages of a range.
+   *
+   * @param from first address of the range, inclusive
+   * @param to last address of the range, exclusive
+   */
+  protected static void touch(final long from, final long to) {
+    // Ints must be aligned for the atomic addition
+    long address = (from + Integer.BYTES - 1) & -Integer.BYTES;
+    while (address + Integer.BYTES <= to) {
+      UnsafeUtil.getAndAddInt(null, address, 0);
+      address = (address & -MemoryAllocator.PAGE_SIZE) + MemoryAllocator.PAGE_SIZE;
+    }
+  }
+}
@@ -0,0 +1,541 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.buffer;
+
+import com.activeviam.MemoryAllocator;
+import com.activeviam.UnsafeUtil;
+import com.activeviam.platform.LinuxPlatform;
+import com.activeviam.reference.PrintUtil;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A pool of memory frames caching the pages of a file, read and written with direct I/O.
+ *
+ * <p>Unlike memory mapped files, the pool decides which pages stay in memory, and the threads
+ * reading the data never wait for a page fault: a page is loaded when it is {@link #pin(long)
+ * pinned}, and stays in its frame until it is {@link #unpin(long, boolean) unpinned}. When all the
+ * frames are used, the frame of an unpinned page is reused, chosen with the CLOCK policy: a page
+ * accessed since the last pass of the clock hand gets a second chance.
+ *
+ * <p>Dirty pages are written back to the file by a background thread, so that evictions rarely have
+ * to write a page before reusing its frame.
+ *
+ * <p>Pinning a page that is in memory takes no lock: the page table is a concurrent map, and the
+ * pins of a frame are an atomic counter. The lock of the pool is only taken to load a page, which
+ * may evict another one, and to free a page. The content of a frame is guarded by the lock of the
+ * frame: the I/O of a frame does not block the other frames.
+ *
+ * @author ActiveViam
+ */
+public class BufferPool implements Closeable {
+
+  /** Class logger. */
+  private static final Logger logger = Logger.getLogger("buffer");
+
+  protected static final LinuxPlatform PLATFORM = LinuxPlatform.getInstance();
+
+  /** Default period between two write-backs of the dirty pages, in milliseconds. */
+  public static final long DEFAULT_WRITE_BACK_PERIOD = 100;
+
+  /** The size of a page, a multiple of {@link MemoryAllocator#PAGE_SIZE} */
+  protected final int pageSize;
+
+  /** The file storing the pages */
+  protected final Path path;
+
+  /** File descriptor of {@link #path} */
+  protected final int fd;
+
+  /** Address of the memory holding the frames, aligned for direct I/O */
+  protected final long address;
+
+  /** Address returned by the allocation of the frames, to free them */
+  protected final long rawAddress;
+
+  /** The frames */
+  protected final Frame[] frames;
+
+  /** The frames holding the pages, by page id, only modified under the lock of the pool */
+  protected final Map<Long, Frame> pageTable;
+
+  /** Position of the CLOCK hand in {@link #frames}, guarded by the lock of the pool */
+  protected int hand;
+
+  /** Number of pages in the file */
+  protected long pageCount;
+
+  /** Pages of the file that were freed and can be allocated again */
+  protected final Deque<Long> freePages;
+
+  /** Writes the dirty pages back in the background */
+  protected final ScheduledExecutorService writeBack;
+
+  /** Number of pins served from memory */
+  protected final LongAdder hits;
+
+  /** Statistics, guarded by the lock of the pool */
+  protected long misses, evictions;
+
+  /** Number of pages written, updated under the lock of a frame only */
+  protected final AtomicLong writes;
+
+  /**
+   * Constructor.
+   *
+   * @param dir the directory where to create the file of the pages
+   * @param frameCount the number of frames of the pool
+   * @param pageSize the size of a page, a multiple of {@link MemoryAllocator#PAGE_SIZE}
+   */
+  public BufferPool(final Path dir, final int frameCount, final int pageSize) {
+    this(dir, frameCount, pageSize, DEFAULT_WRITE_BACK_PERIOD);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param dir the directory where to create the file of the pages
+   * @param frameCount the number of frames of the pool
+   * @param pageSize the size of a page, a multiple of {@link MemoryAllocator#PAGE_SIZE}
+   * @param writeBackPeriod the period between two write-backs of the dirty pages, in milliseconds
+   */
+  public BufferPool(
+      final Path dir, final int frameCount, final int pageSize, final long writeBackPeriod) {
+    if (pageSize <= 0 || pageSize % MemoryAllocator.PAGE_SIZE != 0) {
+      throw new IllegalArgumentException(
+          "The page size must be a multiple of " + MemoryAllocator.PAGE_SIZE + ", was " + pageSize);
+    }
+    if (frameCount <= 0) {
+      throw new IllegalArgumentException("The pool needs frames, was " + frameCount);
+    }
+    this.pageSize = pageSize;
+    try {
+      Files.createDirectories(dir);
+      this.path = Files.createTempFile(dir, "buffer_pool_", ".pages");
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    this.path.toFile().deleteOnExit();
+    this.fd = PLATFORM.openFileDirect(this.path.toFile().getAbsolutePath());
+
+    this.rawAddress =
+        UnsafeUtil.allocateMemory((long) frameCount * pageSize + MemoryAllocator.PAGE_SIZE);
+    this.address = (this.rawAddress + MemoryAllocator.PAGE_SIZE - 1) & -MemoryAllocator.PAGE_SIZE;
+    this.frames = new Frame[frameCount];
+    for (int i = 0; i < frameCount; i++) {
+      this.frames[i] = new Frame(this.address + (long) i * pageSize);
+    }
+    this.pageTable = new ConcurrentHashMap<>();
+    this.freePages = new ArrayDeque<>();
+    this.hits = new LongAdder();
+    this.writes = new AtomicLong();
+
+    this.writeBack =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              final Thread thread = new Thread(r, "buffer-pool-write-back");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.writeBack.scheduleWithFixedDelay(
+        this::writeBackSafely, writeBackPeriod, writeBackPeriod, TimeUnit.MILLISECONDS);
+  }
+
+  /** @return the size of a page */
+  public int getPageSize() {
+    return this.pageSize;
+  }
+
+  /**
+   * Allocates a page in the file. Its content is all zeros.
+   *
+   * @return the id of the page
+   */
+  public synchronized long allocatePage() {
+    final Long free = this.freePages.poll();
+    if (free != null) {
+      return free;
+    }
+    final long pageId = this.pageCount++;
+    PLATFORM.fallocate(this.fd, pageId * this.pageSize, this.pageSize, false);
+    return pageId;
+  }
+
+  /**
+   * Frees a page of the file. Its content is dropped, even if it is dirty.
+   *
+   * @param pageId the id of the page, that must not be pinned
+   */
+  public synchronized void freePage(final long pageId) {
+    final Frame frame = this.pageTable.get(pageId);
+    if (frame != null) {
+      if (!frame.pins.compareAndSet(0, Frame.EVICTING)) {
+        throw new IllegalStateException("Cannot free the pinned page " + pageId);
+      }
+      this.pageTable.remove(pageId);
+      frame.pageId = Frame.NO_PAGE;
+      frame.dirty = false;
+      frame.referenced = false;
+      frame.pins.set(0);
+    }
+    PLATFORM.fallocate(this.fd, pageId * this.pageSize, this.pageSize, true);
+    this.freePages.push(pageId);
+  }
+
+  /**
+   * Pins a page in memory, loading it if needed. The page stays at the returned address until it is
+   * {@link #unpin(long, boolean) unpinned}.
+   *
+   * @param pageId the id of the page
+   * @return the address of the page in memory
+   * @throws IllegalStateException if all the frames are pinned
+   */
+  public long pin(final long pageId) {
+    while (true) {
+      Frame frame = this.pageTable.get(pageId);
+      if (frame != null && frame.tryPin(pageId)) {
+        frame.referenced = true;
+        this.hits.increment();
+      } else {
+        final long victim;
+        synchronized (this) {
+          final Frame cached = this.pageTable.get(pageId);
+          if (cached != null) {
+            // Loaded by another thread meanwhile. Frames only change under this lock: the pin
+            // works.
+            final boolean pinned = cached.tryPin(pageId);
+            assert pinned : cached;
+            cached.referenced = true;
+            this.hits.increment();
+            frame = cached;
+            victim = Frame.NO_PAGE;
+          } else {
+            if (pageId < 0 || pageId >= this.pageCount) {
+              throw new IllegalArgumentException("Unknown page " + pageId);
+            }
+            frame = evict();
+            victim = frame.pageId;
+            if (victim == Frame.NO_PAGE) {
+              frame.pageId = pageId;
+              frame.referenced = true;
+              frame.loaded = false;
+              frame.failed = false;
+              this.pageTable.put(pageId, frame);
+              // Publishes the new page to the threads pinning the frame without the lock
+              frame.pins.set(1);
+              this.misses++;
+            }
+          }
+        }
+        if (victim != Frame.NO_PAGE) {
+          // Write the dirty page of the victim without holding the lock of the pool, then look for
+          // a frame again: the page may have been pinned meanwhile.
+          writePinned(frame, victim);
+          continue;
+        }
+      }
+      if (frame.loaded) {
+        return frame.address;
+      }
+      // Threads pinning the page while it is loaded wait here
+      synchronized (frame) {
+        if (frame.failed) {
+          // The thread loading the page gave the frame back, the next pin will read it again
+          frame.pins.decrementAndGet();
+          continue;
+        }
+        if (!frame.loaded) {
+          try {
+            PLATFORM.pread(this.fd, frame.address, this.pageSize, pageId * this.pageSize);
+          } catch (RuntimeException e) {
+            frame.failed = true;
+            synchronized (this) {
+              // Give the frame back once the threads waiting for the page released it
+              this.pageTable.remove(pageId);
+              frame.pageId = Frame.NO_PAGE;
+              frame.pins.decrementAndGet();
+            }
+            throw e;
+          }
+          frame.loaded = true;
+        }
+      }
+      return frame.address;
+    }
+  }
+
+  /**
+   * Releases a page {@link #pin(long) pinned} earlier.
+   *
+   * @param pageId the id of the page
+   * @param dirty true if the page was written while it was pinned
+   */
+  public void unpin(final long pageId, final boolean dirty) {
+    final Frame frame = this.pageTable.get(pageId);
+    if (frame == null) {
+      throw new IllegalStateException("The page " + pageId + " is not pinned");
+    }
+    if (dirty) {
+      // Before the pin is released, so that a write-back starting after it writes the page again
+      frame.dirty = true;
+    }
+    int pins;
+    do {
+      pins = frame.pins.get();
+      if (pins <= 0) {
+        throw new IllegalStateException("The page " + pageId + " is not pinned");
+      }
+    } while (!frame.pins.compareAndSet(pins, pins - 1));
+  }
+
+  /**
+   * Finds a frame for a new page with the CLOCK policy. Must be called under the lock of the pool.
+   *
+   * <p>A dirty page is not written under the lock of the pool: its frame is returned {@link
+   * Frame#pins pinned} and still holding the page, for the caller to write it with {@link
+   * #writePinned(Frame, long)} and look for a frame again.
+   *
+   * @return a frame that holds no page anymore, whose pins are {@link Frame#EVICTING} so that no
+   *     thread can pin it, or a pinned frame holding a dirty page
+   */
+  private Frame evict() {
+    // Two full turns: the first one may only clear the reference bits
+    for (int i = 0; i < 2 * this.frames.length; i++) {
+      final Frame frame = this.frames[this.hand];
+      this.hand = (this.hand + 1) % this.frames.length;
+      if (frame.pins.get() != 0) {
+        continue;
+      }
+      if (frame.referenced) {
+        frame.referenced = false;
+        continue;
+      }
+      if (frame.pageId != Frame.NO_PAGE && frame.dirty) {
+        // The write-back did not catch up: pin it so that it is not evicted while it is written
+        if (!frame.pins.compareAndSet(0, 1)) {
+          continue;
+        }
+        frame.dirty = false;
+        return frame;
+      }
+      // Pinned without the lock meanwhile
+      if (!frame.pins.compareAndSet(0, Frame.EVICTING)) {
+        continue;
+      }
+      if (frame.pageId != Frame.NO_PAGE) {
+        this.pageTable.remove(frame.pageId);
+        frame.pageId = Frame.NO_PAGE;
+        this.evictions++;
+      }
+      return frame;
+    }
+    throw new IllegalStateException(
+        "All the " + this.frames.length + " frames of the buffer pool are pinned");
+  }
+
+  /**
+   * @param pageId the id of a page
+   * @return true if the page is currently in a frame
+   */
+  public boolean isResident(final long pageId) {
+    return this.pageTable.containsKey(pageId);
+  }
+
+  /**
+   * Writes the content of a frame in the file.
+   *
+   * @param frame the frame, whose lock is held
+   * @param pageId the page held by the frame
+   */
+  private void write(final Frame frame, final long pageId) {
+    PLATFORM.pwrite(this.fd, frame.address, this.pageSize, pageId * this.pageSize);
+    this.writes.incrementAndGet();
+  }
+
+  /** Writes all the dirty pages that are not pinned back to the file. */
+  public void flush() {
+    for (final Frame frame : this.frames) {
+      // Pin it so that it is not evicted while it is written
+      if (!frame.dirty || !frame.pins.compareAndSet(0, 1)) {
+        continue;
+      }
+      final long pageId = frame.pageId;
+      if (pageId == Frame.NO_PAGE || !frame.dirty) {
+        frame.pins.decrementAndGet();
+        continue;
+      }
+      frame.dirty = false;
+      writePinned(frame, pageId);
+    }
+  }
+
+  /**
+   * Writes a page pinned to be written, without holding the lock of the pool, then unpins it. The
+   * page is marked dirty again if the write fails.
+   *
+   * @param frame the frame, pinned and marked clean
+   * @param pageId the page held by the frame
+   */
+  private void writePinned(final Frame frame, final long pageId) {
+    try {
+      synchronized (frame) {
+        write(frame, pageId);
+      }
+    } catch (RuntimeException e) {
+      frame.dirty = true;
+      throw e;
+    } finally {
+      frame.pins.decrementAndGet();
+    }
+  }
+
+  private void writeBackSafely() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Failed to write back the pages of " + this.path, e);
+    }
+  }
+
+  /** @return the number of pins served from memory */
+  public long getHitCount() {
+    return this.hits.sum();
+  }
+
+  /** @return the number of pins that read their page from the file */
+  public synchronized long getMissCount() {
+    return this.misses;
+  }
+
+  /** @return the number of pages removed from memory to make room for others */
+  public synchronized long getEvictionCount() {
+    return this.evictions;
+  }
+
+  /** @return the number of pages written to the file */
+  public long getWriteCount() {
+    return this.writes.get();
+  }
+
+  /** Stops the write-back, frees the frames and deletes the file. The pages are lost. */
+  @Override
+  public void close() {
+    this.writeBack.shutdownNow();
+    try {
+      this.writeBack.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this) {
+      PLATFORM.closeFile(this.fd);
+      UnsafeUtil.freeMemory(this.rawAddress);
+      this.path.toFile().delete();
+      this.pageTable.clear();
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return getClass().getSimpleName()
+        + " [path="
+        + this.path
+        + ", frames="
+        + this.frames.length
+        + ", pageSize="
+        + PrintUtil.printDataSize(this.pageSize)
+        + ", pages="
+        + this.pageCount
+        + ", hits="
+        + this.hits.sum()
+        + ", misses="
+        + this.misses
+        + ", evictions="
+        + this.evictions
+        + ", writes="
+        + this.writes.get()
+        + "]";
+  }
+
+  /** A piece of memory holding a page. */
+  protected static class Frame {
+
+    /** Value of {@link #pageId} when the frame holds no page */
+    protected static final long NO_PAGE = -1;
+
+    /** Value of {@link #pins} while the frame changes page under the lock of the pool */
+    protected static final int EVICTING = -1;
+
+    /** Address of the frame */
+    protected final long address;
+
+    /** The page held by the frame, {@link #NO_PAGE} if none. Changed under the lock of the pool. */
+    protected volatile long pageId = NO_PAGE;
+
+    /**
+     * Number of pins of the page, the frame cannot be reused while it is positive. {@link
+     * #EVICTING} while the frame changes page, so that it cannot be pinned.
+     */
+    protected final AtomicInteger pins = new AtomicInteger();
+
+    /** true if the page was written since it was last written to the file */
+    protected volatile boolean dirty;
+
+    /** CLOCK reference bit, set on each pin */
+    protected volatile boolean referenced;
+
+    /** true once the page was read from the file. Written under the lock of the frame. */
+    protected volatile boolean loaded;
+
+    /**
+     * true if reading the page from the file failed, for the threads waiting for it to release
+     * their pins. Written under the lock of the frame.
+     */
+    protected volatile boolean failed;
+
+    /** @param address the address of the frame */
+    protected Frame(final long address) {
+      this.address = address;
+    }
+
+    /**
+     * Pins the frame without the lock of the pool, if it still holds the page.
+     *
+     * @param pageId the page the frame was found for
+     * @return true if the frame is pinned, false if it is changing page or holds another page
+     */
+    protected boolean tryPin(final long pageId) {
+      int pins;
+      do {
+        pins = this.pins.get();
+        if (pins < 0) {
+          return false;
+        }
+      } while (!this.pins.compareAndSet(pins, pins + 1));
+      if (this.pageId != pageId) {
+        // Evicted, and possibly holding another page, since it was looked up
+        this.pins.decrementAndGet();
+        return false;
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import com.activeviam.buffer.BufferPool;
+import java.io.Closeable;
+
+/**
+ * A chunk whose elements are stored in the pages of a {@link BufferPool}.
+ *
+ * <p>Each access pins the page of the element for the duration of the access only: the chunk can be
+ * larger than the pool.
+ *
+ * @param <K> the type of the elements
+ * @author ActiveViam
+ */
+abstract class AbstractBufferedChunk<K> implements Chunk<K>, Closeable {
+
+  private final int capacity;
+
+  /** The pool holding the pages */
+  protected final BufferPool pool;
+
+  /** The pages of the chunk, in order */
+  protected final long[] pages;
+
+  /** The order of the number of elements in a page */
+  protected final int pageOrder;
+
+  /** Mask to extract the position of an element within its page */
+  protected final int pageMask;
+
+  /** The order of the size in bytes of an element */
+  protected final int elementSizeOrder;
+
+  /**
+   * Constructor.
+   *
+   * @param pool the pool holding the pages
+   * @param capacity the number of elements of the chunk
+   * @param elementSizeOrder the order of the size in bytes of an element
+   */
+  protected AbstractBufferedChunk(
+      final BufferPool pool, final int capacity, final int elementSizeOrder) {
+    this.capacity = capacity;
+    this.pool = pool;
+    this.elementSizeOrder = elementSizeOrder;
+    this.pageOrder = Integer.numberOfTrailingZeros(pool.getPageSize()) - elementSizeOrder;
+    this.pageMask = (1 << this.pageOrder) - 1;
+    this.pages = new long[((capacity - 1) >>> this.pageOrder) + 1];
+    for (int i = 0; i < this.pages.length; i++) {
+      this.pages[i] = pool.allocatePage();
+    }
+  }
+
+  @Override
+  public int capacity() {
+    return this.capacity;
+  }
+
+  /**
+   * Pins the page of an element.
+   *
+   * @param position the position of the element
+   * @return the address of the element, valid until its page is {@link #unpin(int, boolean)
+   *     unpinned}
+   */
+  protected long pin(final int position) {
+    final long address = this.pool.pin(this.pages[position >>> this.pageOrder]);
+    return address + ((long) (position & this.pageMask) << this.elementSizeOrder);
+  }
+
+  /**
+   * Unpins the page of an element.
+   *
+   * @param position the position of the element
+   * @param dirty true if the element was written
+   */
+  protected void unpin(final int position, final boolean dirty) {
+    this.pool.unpin(this.pages[position >>> this.pageOrder], dirty);
+  }
+
+  /** @return the number of elements in a page */
+  protected int elementsPerPage() {
+    return 1 << this.pageOrder;
+  }
+
+  @Override
+  public double residency() {
+    int resident = 0;
+    for (final long page : this.pages) {
+      if (this.pool.isResident(page)) {
+        resident++;
+      }
+    }
+    return (double) resident / this.pages.length;
+  }
+
+  @Override
+  public void close() {
+    for (final long page : this.pages) {
+      this.pool.freePage(page);
+    }
+  }
+}
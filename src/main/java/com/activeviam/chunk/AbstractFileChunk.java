@@ -7,16 +7,49 @@
 
 package com.activeviam.chunk;
 
+import com.activeviam.UnsafeUtil;
+import com.activeviam.platform.AccessPattern;
+import com.activeviam.platform.LinuxPlatform;
 import com.activeviam.reference.MemoryAllocatorOnFile;
 import java.io.Closeable;
+import java.util.BitSet;
 
 abstract class AbstractFileChunk<K> implements Chunk<K>, Closeable {
 
 	private final int capacity;
 
+	/**
+	 * Mask of the positions whose reads record an access: one value in 64, so that reads of single
+	 * values keep the chunk warm without reading the volatile epoch each time.
+	 */
+	static final int TOUCH_SAMPLE_MASK = 63;
+
 	private final MemoryAllocatorOnFile allocator;
-	long ptr;
-	private final long blockSize;
+
+	/**
+	 * The address of the memory of the chunk, -1 once freed. Volatile for the {@link ColdChunkManager}
+	 * thread, which advises the chunk under its monitor, like {@link #close()} frees it.
+	 */
+	volatile long ptr;
+	final long blockSize;
+
+	/** The last {@link AccessPattern#isSticky() sticky} pattern given to the memory of the chunk */
+	private volatile AccessPattern pattern = AccessPattern.NORMAL;
+
+	/**
+	 * The {@link ColdChunkManager#epoch() epoch} of the last access to the chunk. Written without
+	 * synchronization: a lost update only delays the detection of an access by one epoch.
+	 */
+	int lastAccess = ColdChunkManager.epoch();
+
+	/** The value of {@link #lastAccess} when the chunk was last demoted, -1 if never */
+	int demotedAccess = -1;
+
+	/** The pinner locking the chunk in RAM, null if the chunk is not pinned */
+	volatile ChunkPinner pinner;
+
+	/** The manager watching the chunk, null if none */
+	volatile ColdChunkManager manager;
 
 	public AbstractFileChunk(
 			final MemoryAllocatorOnFile allocator, final int capacity, final long blockSize) {
@@ -35,13 +68,100 @@ abstract class AbstractFileChunk<K> implements Chunk<K>, Closeable {
 		return this.ptr + offset;
 	}
 
+	/**
+	 * Records an access to the chunk, for the {@link ColdChunkManager}. Called once per bulk access
+	 * such as {@code findRows}, and through {@link #touchSampled(int)} for the reads of single values:
+	 * reading the volatile epoch on every value makes sequential reads about 1.5 times slower.
+	 *
+	 * <p>The field is only written when the epoch changed, so that reading threads do not keep
+	 * invalidating the cache line of the chunk.
+	 */
+	protected final void touch() {
+		final int now = ColdChunkManager.epoch();
+		if (this.lastAccess != now) {
+			this.lastAccess = now;
+		}
+	}
+
+	/**
+	 * Records an access to the chunk for one read of a single value in 64. Sequential reads touch the
+	 * chunk every 64 values, and lookups spread over the chunk touch it every 64 reads on average.
+	 *
+	 * @param position The position of the read value
+	 */
+	protected final void touchSampled(final int position) {
+		if ((position & TOUCH_SAMPLE_MASK) == 0) {
+			touch();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>Sticky patterns are only given to the kernel when they change, so that this can be called
+	 * before each access.
+	 */
+	@Override
+	public void advise(final AccessPattern pattern) {
+		if (pattern.isSticky()) {
+			if (this.pattern == pattern) {
+				return;
+			}
+			this.pattern = pattern;
+		}
+		LinuxPlatform.getInstance().madvise(this.ptr, this.blockSize, pattern);
+	}
+
+	/** @return the last {@link AccessPattern#isSticky() sticky} pattern given to the chunk */
+	public AccessPattern getPattern() {
+		return this.pattern;
+	}
+
+	/** @return the number of bytes of the chunk currently in RAM, counted by whole pages */
+	public long residentBytes() {
+		return LinuxPlatform.getInstance().residentBytes(this.ptr, this.blockSize);
+	}
+
+	/** @return the pages of the chunk currently in RAM, the first page being at index 0 */
+	public BitSet residencyBitmap() {
+		return LinuxPlatform.getInstance().residency(this.ptr, this.blockSize);
+	}
+
+	@Override
+	public double residency() {
+		return (double) residentBytes() / this.blockSize;
+	}
+
+	/**
+	 * Zeros the whole chunk. Its pages are given back to the file system, which reads them as zeros
+	 * until they are written again, so that no page is touched. Zeros are only written when the file
+	 * system cannot punch holes.
+	 */
+	void zero() {
+		if (!LinuxPlatform.getInstance().removePages(this.ptr, this.blockSize)) {
+			UnsafeUtil.getUnsafe().setMemory(this.ptr, this.blockSize, (byte) 0);
+		}
+	}
+
 	@Override
 	public void close() {
-		if (this.ptr >= 0) {
-			this.allocator.freeMemory(this.ptr, this.blockSize);
-			this.ptr = -1;
-		} else {
-			throw new IllegalStateException("Cannot free twice the same block");
+		final ColdChunkManager manager = this.manager;
+		if (manager != null) {
+			manager.unregister(this);
+		}
+		// The manager advises the chunk under its monitor: the memory must not be recycled meanwhile
+		synchronized (this) {
+			if (this.ptr >= 0) {
+				final ChunkPinner pinner = this.pinner;
+				if (pinner != null) {
+					// The memory is recycled by the allocator, it must not stay locked
+					pinner.unpin(this);
+				}
+				this.allocator.freeMemory(this.ptr, this.blockSize);
+				this.ptr = -1;
+			} else {
+				throw new IllegalStateException("Cannot free twice the same block");
+			}
 		}
 	}
 }
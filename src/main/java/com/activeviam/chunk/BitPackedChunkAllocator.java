@@ -0,0 +1,52 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+/**
+ * This allocator allocates {@link BitPackedIntegerChunk bit-packed} integer chunks on the heap, and
+ * the double chunks with another allocator.
+ *
+ * <p>Only heap tables gain from it: the chunks are never backed by files, so that a file-backed
+ * table using this allocator moves its attribute columns to the heap instead of shrinking its
+ * files. File-backed tables are compressed by {@link ChunkSealer sealing} their full chunks
+ * off-heap.
+ *
+ * @author ActiveViam
+ */
+public class BitPackedChunkAllocator implements IChunkAllocator {
+
+  /** The allocator of the double chunks */
+  protected final IChunkAllocator doubleAllocator;
+
+  /** Constructor of an allocator allocating the double chunks on the heap. */
+  public BitPackedChunkAllocator() {
+    this(new OnHeapAllocator());
+  }
+
+  /** @param doubleAllocator the allocator of the double chunks */
+  public BitPackedChunkAllocator(final IChunkAllocator doubleAllocator) {
+    this.doubleAllocator = doubleAllocator;
+  }
+
+  @Override
+  public IntegerChunk allocateIntergerChunk(int size) {
+    return new BitPackedIntegerChunk(size);
+  }
+
+  @Override
+  public DoubleChunk allocateDoubleChunk(int size) {
+    return this.doubleAllocator.allocateDoubleChunk(size);
+  }
+
+  @Override
+  public void release(final Chunk<?> chunk) {
+    if (chunk instanceof DoubleChunk) {
+      this.doubleAllocator.release(chunk);
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import java.util.BitSet;
+
+/**
+ * {@link IntegerChunk} of non-negative values packed in the smallest bit width that holds all of
+ * them.
+ *
+ * <p>The widths are powers of two, from 0 bit for a chunk of zeros to 32 bits, so that no value
+ * spans two words. Writing a value that does not fit in the current width repacks the chunk in the
+ * smallest width that holds it.
+ *
+ * <p>{@link #findRows(int, int, long[], int, IntegerChunk.Op)} compares all the values of a word at
+ * once, with SWAR (SIMD within a register) arithmetic, and stores the matches of 64 rows at once.
+ *
+ * <p>The values are kept on the heap: there is no file-backed variant of this chunk, and tables
+ * stored in files gain nothing from it. Their full chunks are compressed off-heap by the {@link
+ * ChunkSealer} instead.
+ *
+ * @author ActiveViam
+ */
+public class BitPackedIntegerChunk implements IntegerChunk {
+
+  /**
+   * The masks of the steps of {@link #compress(long, int)}, by order of the width: step {@code s}
+   * keeps runs of {@code 2^(s+1)} bits, one run every {@code 2^(s+1)} lanes.
+   */
+  private static final long[][] COMPRESS_MASKS = new long[6][];
+
+  static {
+    for (int order = 0; order < COMPRESS_MASKS.length; order++) {
+      final int bits = 1 << order;
+      // Lanes of 1 bit are gathered already
+      final long[] masks = new long[order == 0 ? 0 : COMPRESS_MASKS.length - order];
+      for (int step = 0; step < masks.length; step++) {
+        final int run = 2 << step;
+        for (int start = 0; start < Long.SIZE; start += run * bits) {
+          masks[step] |= (-1L >>> (Long.SIZE - run)) << start;
+        }
+      }
+      COMPRESS_MASKS[order] = masks;
+    }
+  }
+
+  /** The number of values of the chunk */
+  private final int capacity;
+
+  /** The number of bits of a value, a power of two up to 32, or 0 when all values are 0 */
+  private int bits;
+
+  /** The packed values, value {@code i} being in bits {@code [i * bits, (i + 1) * bits)} */
+  private long[] words;
+
+  /** @param capacity the number of values of the chunk */
+  public BitPackedIntegerChunk(final int capacity) {
+    this.capacity = capacity;
+    this.bits = 0;
+    this.words = new long[0];
+  }
+
+  @Override
+  public int capacity() {
+    return this.capacity;
+  }
+
+  /** @return the number of bits used by each value */
+  public int getBitWidth() {
+    return this.bits;
+  }
+
+  /** @return the number of bytes used by the packed values */
+  public long sizeInBytes() {
+    return (long) this.words.length * Long.BYTES;
+  }
+
+  @Override
+  public int readInt(int position) {
+    assert 0 <= position && position < this.capacity;
+    final int bits = this.bits;
+    if (bits == 0) {
+      return 0;
+    }
+    final long index = (long) position * bits;
+    return (int) ((this.words[(int) (index >>> 6)] >>> (index & 63)) & mask(bits));
+  }
+
+  @Override
+  public void writeInt(int position, int value) {
+    assert 0 <= position && position < this.capacity;
+    if (value < 0) {
+      throw new IllegalArgumentException("Cannot pack negative value: " + value);
+    }
+    if (value > mask(this.bits)) {
+      widen(widthOf(value));
+    }
+    final int bits = this.bits;
+    if (bits == 0) {
+      return;
+    }
+    final long index = (long) position * bits;
+    final int word = (int) (index >>> 6);
+    final int shift = (int) (index & 63);
+    this.words[word] = (this.words[word] & ~(mask(bits) << shift)) | ((long) value << shift);
+  }
+
+  /**
+   * Repacks the values in a larger width.
+   *
+   * @param bits the new width
+   */
+  private void widen(final int bits) {
+    final long[] words = new long[Math.toIntExact(((long) this.capacity * bits + 63) >>> 6)];
+    if (this.bits > 0) {
+      for (int i = 0; i < this.capacity; i++) {
+        final long index = (long) i * bits;
+        words[(int) (index >>> 6)] |= (long) readInt(i) << (index & 63);
+      }
+    }
+    this.words = words;
+    this.bits = bits;
+  }
+
+  @Override
+  public BitSet findRows(int value, int limit) {
+    final long[] words = RowFinder.words(limit);
+    return findRows(value, limit, words, 0, Op.OR) ? BitSet.valueOf(words) : null;
+  }
+
+  @Override
+  public boolean findRows(int value, int limit, long[] words, int wordOffset, Op op) {
+    assert limit <= this.capacity;
+    final int bits = this.bits;
+    boolean any = false;
+    if (bits == 0 || value < 0 || value > mask(bits)) {
+      // Either all the values are 0, or none can be the searched one
+      final long matches = value == 0 ? -1L : 0L;
+      for (int start = 0; start < limit; start += Long.SIZE) {
+        final int count = Math.min(Long.SIZE, limit - start);
+        any |= RowFinder.store(words, wordOffset + (start >>> 6), matches, count, op);
+      }
+      return any;
+    }
+
+    final int order = Integer.numberOfTrailingZeros(bits);
+    final int lanes = Long.SIZE >>> order;
+    final long low = lowBits(bits);
+    final long high = low << (bits - 1);
+    final long pattern = low * value;
+    final int wordCount = (int) (((long) limit * bits + 63) >>> 6);
+    // The rows of 64 values are in as many packed words as there are bits per value
+    long matches = 0;
+    for (int w = 0; w < wordCount; w++) {
+      // A lane of x is 0 iff the value matches
+      final long x = this.words[w] ^ pattern;
+      // Sets the high bit of the lanes that are not 0, without carries across lanes
+      final long nonZero = (((x & ~high) + ~high) | x) & high;
+      matches |= compress(~nonZero & high, order) << ((w & (bits - 1)) * lanes);
+      if ((w & (bits - 1)) == bits - 1 || w == wordCount - 1) {
+        final int word = w >>> order;
+        final int count = Math.min(Long.SIZE, limit - (word << 6));
+        any |= RowFinder.store(words, wordOffset + word, matches, count, op);
+        matches = 0;
+      }
+    }
+    return any;
+  }
+
+  /**
+   * Gathers the high bits of the lanes of a word into its lowest bits, pairing up the gathered runs
+   * of bits at each step.
+   *
+   * @param highBits a word whose bits are only set at the highest bit of its lanes
+   * @param order the order of the width of the lanes
+   * @return a word whose bit {@code i} is the high bit of lane {@code i}
+   */
+  private static long compress(final long highBits, final int order) {
+    final int bits = 1 << order;
+    long x = highBits >>> (bits - 1);
+    final long[] masks = COMPRESS_MASKS[order];
+    for (int step = 0; step < masks.length; step++) {
+      x = (x | (x >>> ((bits - 1) << step))) & masks[step];
+    }
+    return x;
+  }
+
+  /**
+   * @param bits a width
+   * @return the largest value of the width
+   */
+  private static long mask(final int bits) {
+    return (1L << bits) - 1;
+  }
+
+  /**
+   * @param bits a width, dividing 64
+   * @return a word with the lowest bit of each lane of the width set
+   */
+  private static long lowBits(final int bits) {
+    return Long.divideUnsigned(-1L, mask(bits));
+  }
+
+  /**
+   * @param value a positive value
+   * @return the smallest power of two width holding the value
+   */
+  static int widthOf(final int value) {
+    final int significant = Integer.SIZE - Integer.numberOfLeadingZeros(value);
+    return significant <= 1 ? significant : Integer.highestOneBit(significant - 1) << 1;
+  }
+}
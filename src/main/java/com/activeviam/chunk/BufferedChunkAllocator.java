@@ -0,0 +1,40 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import com.activeviam.buffer.BufferPool;
+
+/**
+ * This allocator allocates chunks in the pages of a {@link BufferPool}, read and written with
+ * direct I/O rather than mapped in memory.
+ *
+ * <p>The tables using it can be larger than the memory of the pool, which only keeps the pages
+ * being accessed and the most recently used ones.
+ *
+ * @author ActiveViam
+ */
+public class BufferedChunkAllocator implements IChunkAllocator {
+
+  /** The pool storing the chunks */
+  protected final BufferPool pool;
+
+  /** @param pool the pool storing the chunks */
+  public BufferedChunkAllocator(final BufferPool pool) {
+    this.pool = pool;
+  }
+
+  @Override
+  public IntegerChunk allocateIntergerChunk(int size) {
+    return new BufferedIntegerChunk(this.pool, size);
+  }
+
+  @Override
+  public DoubleChunk allocateDoubleChunk(int size) {
+    return new BufferedDoubleChunk(this.pool, size);
+  }
+}
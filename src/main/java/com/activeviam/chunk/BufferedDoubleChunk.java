@@ -0,0 +1,57 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import com.activeviam.UnsafeUtil;
+import com.activeviam.buffer.BufferPool;
+
+/**
+ * {@link DoubleChunk} stored in the pages of a {@link BufferPool}.
+ *
+ * @author ActiveViam
+ */
+public class BufferedDoubleChunk extends AbstractBufferedChunk<Double> implements DoubleChunk {
+
+  /** Unsafe provider. */
+  private static final sun.misc.Unsafe UNSAFE = UnsafeUtil.getUnsafe();
+
+  /** The order of the size in bytes of an element. */
+  private static final int ELEMENT_SIZE_ORDER = 3;
+
+  /**
+   * Constructor.
+   *
+   * @param pool the pool holding the pages
+   * @param capacity the number of elements of the chunk
+   */
+  public BufferedDoubleChunk(final BufferPool pool, final int capacity) {
+    super(pool, capacity, ELEMENT_SIZE_ORDER);
+  }
+
+  @Override
+  public double readDouble(int position) {
+    assert 0 <= position && position < capacity();
+    final long address = pin(position);
+    try {
+      return UNSAFE.getDouble(address);
+    } finally {
+      unpin(position, false);
+    }
+  }
+
+  @Override
+  public void writeDouble(int position, double value) {
+    assert 0 <= position && position < capacity();
+    final long address = pin(position);
+    try {
+      UNSAFE.putDouble(address, value);
+    } finally {
+      unpin(position, true);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import com.activeviam.UnsafeUtil;
+import com.activeviam.buffer.BufferPool;
+import java.util.BitSet;
+
+/**
+ * {@link IntegerChunk} stored in the pages of a {@link BufferPool}.
+ *
+ * @author ActiveViam
+ */
+public class BufferedIntegerChunk extends AbstractBufferedChunk<Integer> implements IntegerChunk {
+
+  /** Unsafe provider. */
+  private static final sun.misc.Unsafe UNSAFE = UnsafeUtil.getUnsafe();
+
+  /** The order of the size in bytes of an element. */
+  private static final int ELEMENT_SIZE_ORDER = 2;
+
+  /**
+   * Constructor.
+   *
+   * @param pool the pool holding the pages
+   * @param capacity the number of elements of the chunk
+   */
+  public BufferedIntegerChunk(final BufferPool pool, final int capacity) {
+    super(pool, capacity, ELEMENT_SIZE_ORDER);
+  }
+
+  @Override
+  public int readInt(int position) {
+    assert 0 <= position && position < capacity();
+    final long address = pin(position);
+    try {
+      return UNSAFE.getInt(address);
+    } finally {
+      unpin(position, false);
+    }
+  }
+
+  @Override
+  public void writeInt(int position, int value) {
+    assert 0 <= position && position < capacity();
+    final long address = pin(position);
+    try {
+      UNSAFE.putInt(address, value);
+    } finally {
+      unpin(position, true);
+    }
+  }
+
+  @Override
+  public BitSet findRows(int value, int limit) {
+    assert limit <= capacity();
+
+    BitSet result = null;
+    // Pin each page once for all its elements
+    for (int start = 0; start < limit; start += elementsPerPage()) {
+      final int end = Math.min(limit, start + elementsPerPage());
+      long addr = pin(start);
+      try {
+        for (int i = start; i < end; i++) {
+          if (UNSAFE.getInt(addr) == value) {
+            if (result == null) {
+              result = new BitSet();
+            }
+            result.set(i);
+          }
+          addr += 1 << ELEMENT_SIZE_ORDER;
+        }
+      } finally {
+        unpin(start, false);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Each page is pinned once, and scanned by the {@link RowFinder} like off-heap memory. The
+   * pages hold a multiple of 64 elements, so that each page starts at a word of the bitmap.
+   */
+  @Override
+  public boolean findRows(int value, int limit, long[] words, int wordOffset, Op op) {
+    assert limit <= capacity();
+
+    final RowFinder finder = RowFinder.getInstance();
+    boolean any = false;
+    for (int start = 0; start < limit; start += elementsPerPage()) {
+      final int count = Math.min(limit - start, elementsPerPage());
+      final long addr = pin(start);
+      try {
+        any |= finder.findRows(addr, value, count, words, wordOffset + (start >>> 6), op);
+      } finally {
+        unpin(start, false);
+      }
+    }
+    return any;
+  }
+}
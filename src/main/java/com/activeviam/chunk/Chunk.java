@@ -7,6 +7,8 @@
 
 package com.activeviam.chunk;
 
+import com.activeviam.platform.AccessPattern;
+
 public interface Chunk<K> {
 
   /** Returns the (fixed) capacity of the chunk (number of elements it can store). */
@@ -43,4 +45,25 @@ public interface Chunk<K> {
    * @param position 0-based index in an array
    */
   void writeDouble(int position, double value);
+
+  /**
+   * Tells how the chunk is going to be accessed, so that its storage can prepare for it.
+   *
+   * <p>The default implementation ignores the advice, e.g. for chunks on the heap.
+   *
+   * @param pattern how the chunk is going to be accessed
+   */
+  default void advise(AccessPattern pattern) {}
+
+  /**
+   * Returns the fraction of the chunk currently in RAM, i.e. that can be read without a disk
+   * access. The value is a snapshot, the system may load or evict memory at any time.
+   *
+   * <p>The default implementation is for chunks on the heap, always in RAM.
+   *
+   * @return a value between 0 and 1
+   */
+  default double residency() {
+    return 1d;
+  }
 }
@@ -0,0 +1,170 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import com.activeviam.platform.LinuxPlatform;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.logging.Logger;
+
+/**
+ * Locks chunks in RAM with {@code mlock}, so that the kernel never pages them out and reading them
+ * never waits for the disk.
+ *
+ * <p>The memory locked by a pinner is bounded by a budget, itself bounded by the {@code
+ * RLIMIT_MEMLOCK} limit of the process. A chunk that does not fit in the budget is not pinned.
+ *
+ * <p>A chunk is pinned by one pinner at most: the kernel does not count the locks of a range, the
+ * first {@code munlock} unlocking it for all the pinners.
+ *
+ * @author ActiveViam
+ */
+public class ChunkPinner implements Closeable {
+
+  /** Class logger. */
+  private static final Logger logger = Logger.getLogger("chunk");
+
+  /** Sets the pinner of a chunk, if it has none */
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<AbstractFileChunk, ChunkPinner> PINNER =
+      AtomicReferenceFieldUpdater.newUpdater(AbstractFileChunk.class, ChunkPinner.class, "pinner");
+
+  /** The maximum number of bytes locked by this pinner */
+  protected final long budget;
+
+  /** The number of bytes locked by this pinner */
+  protected volatile long pinnedBytes;
+
+  /** The pinned chunks, with the number of bytes locked for each of them */
+  protected final Map<AbstractFileChunk<?>, Long> chunks;
+
+  /** Constructor of a pinner allowed to lock as much memory as the process can. */
+  public ChunkPinner() {
+    this(Long.MAX_VALUE);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param budget the maximum number of bytes this pinner locks, lowered to the {@code
+   *     RLIMIT_MEMLOCK} limit of the process
+   */
+  public ChunkPinner(final long budget) {
+    final long limit = LinuxPlatform.getInstance().getMemlockLimit();
+    if (budget > limit && budget != Long.MAX_VALUE) {
+      logger.warning(
+          "The budget of "
+              + budget
+              + " bytes is over RLIMIT_MEMLOCK, only "
+              + limit
+              + " bytes can be pinned. Raise the limit with 'ulimit -l'.");
+    }
+    this.budget = Math.min(budget, limit);
+    this.chunks = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Locks a chunk in RAM. Chunks that are not stored in files are always in RAM, and are ignored.
+   * Sealed chunks stored in files cannot be pinned. Sparse chunks are pinned through their dense
+   * chunk, as soon as they have one.
+   *
+   * @param chunk the chunk
+   * @return true if the chunk is pinned, false if it does not fit in the budget, is pinned by
+   *     another pinner or cannot be pinned
+   */
+  public synchronized boolean pin(final Chunk<?> chunk) {
+    if (chunk instanceof FrameOfReferenceIntegerChunk) {
+      return !((FrameOfReferenceIntegerChunk) chunk).isOffHeap();
+    } else if (chunk instanceof XorDoubleChunk) {
+      return !((XorDoubleChunk) chunk).isOffHeap();
+    } else if (chunk instanceof SparseIntegerChunk) {
+      return ((SparseIntegerChunk) chunk).pin(this);
+    } else if (chunk instanceof SparseDoubleChunk) {
+      return ((SparseDoubleChunk) chunk).pin(this);
+    } else if (!(chunk instanceof AbstractFileChunk)) {
+      return true;
+    }
+    final AbstractFileChunk<?> fileChunk = (AbstractFileChunk<?>) chunk;
+    if (this.chunks.containsKey(fileChunk)) {
+      return true;
+    }
+    final long size = fileChunk.blockSize;
+    if (this.pinnedBytes + size > this.budget || !PINNER.compareAndSet(fileChunk, null, this)) {
+      return false;
+    }
+    if (!LinuxPlatform.getInstance().mlock(fileChunk.ptr, size)) {
+      fileChunk.pinner = null;
+      return false;
+    }
+    this.chunks.put(fileChunk, size);
+    this.pinnedBytes += size;
+    return true;
+  }
+
+  /**
+   * Unlocks a chunk pinned by this pinner, so that the kernel can page it out again.
+   *
+   * @param chunk the chunk
+   */
+  public synchronized void unpin(final Chunk<?> chunk) {
+    if (chunk instanceof SparseIntegerChunk) {
+      ((SparseIntegerChunk) chunk).unpin(this);
+      return;
+    } else if (chunk instanceof SparseDoubleChunk) {
+      ((SparseDoubleChunk) chunk).unpin(this);
+      return;
+    }
+    final Long size = this.chunks.remove(chunk);
+    if (size != null) {
+      final AbstractFileChunk<?> fileChunk = (AbstractFileChunk<?>) chunk;
+      LinuxPlatform.getInstance().munlock(fileChunk.ptr, size);
+      // Only now can another pinner lock the chunk
+      fileChunk.pinner = null;
+      this.pinnedBytes -= size;
+    }
+  }
+
+  /**
+   * @param chunk a chunk
+   * @return true if the chunk is pinned by this pinner
+   */
+  public boolean isPinned(final Chunk<?> chunk) {
+    if (chunk instanceof SparseIntegerChunk) {
+      return ((SparseIntegerChunk) chunk).pinner == this;
+    } else if (chunk instanceof SparseDoubleChunk) {
+      return ((SparseDoubleChunk) chunk).pinner == this;
+    }
+    return this.chunks.containsKey(chunk);
+  }
+
+  /** @return the number of bytes locked in RAM by this pinner */
+  public long getPinnedBytes() {
+    return this.pinnedBytes;
+  }
+
+  /** @return the number of chunks pinned by this pinner */
+  public int getPinnedChunkCount() {
+    return this.chunks.size();
+  }
+
+  /** @return the maximum number of bytes this pinner locks */
+  public long getBudget() {
+    return this.budget;
+  }
+
+  /** Unpins all the chunks. */
+  @Override
+  public synchronized void close() {
+    for (final AbstractFileChunk<?> chunk : new ArrayList<>(this.chunks.keySet())) {
+      unpin(chunk);
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import com.activeviam.reference.MemoryAllocatorOnFile;
+
+/**
+ * Re-encodes the chunks that are not written anymore when this saves memory: integer chunks into
+ * {@link FrameOfReferenceIntegerChunk frame of reference chunks}, double chunks into {@link
+ * XorDoubleChunk XOR compressed chunks}.
+ *
+ * <p>{@link SparseIntegerChunk Sparse} and {@link ConstantIntegerChunk constant} chunks that are
+ * not dense are already smaller than any re-encoding, and are kept as they are.
+ *
+ * @author ActiveViam
+ */
+public class ChunkSealer {
+
+  /** The allocator of the sealed chunks, null to store them on the heap */
+  protected final MemoryAllocatorOnFile allocator;
+
+  /** Constructor of a sealer storing the sealed chunks on the heap. */
+  public ChunkSealer() {
+    this(null);
+  }
+
+  /** @param allocator the allocator of the sealed chunks, null to store them on the heap */
+  public ChunkSealer(final MemoryAllocatorOnFile allocator) {
+    this.allocator = allocator;
+  }
+
+  /**
+   * Seals a chunk. The chunk must not be written anymore.
+   *
+   * @param chunk the chunk to seal
+   * @return the sealed chunk, or the given chunk if sealing it does not save memory
+   */
+  public IntegerChunk seal(final IntegerChunk chunk) {
+    if (chunk instanceof FrameOfReferenceIntegerChunk
+        || (chunk instanceof SparseIntegerChunk && !((SparseIntegerChunk) chunk).isDense())) {
+      return chunk;
+    }
+    final FrameOfReferenceIntegerChunk sealed =
+        FrameOfReferenceIntegerChunk.encode(chunk, this.allocator);
+    if (sealed.sizeInBytes() >= sizeOf(chunk)) {
+      sealed.close();
+      return chunk;
+    }
+    return sealed;
+  }
+
+  /**
+   * Seals a chunk. The chunk must not be written anymore.
+   *
+   * @param chunk the chunk to seal
+   * @return the sealed chunk, or the given chunk if sealing it does not save memory
+   */
+  public DoubleChunk seal(final DoubleChunk chunk) {
+    if (chunk instanceof XorDoubleChunk
+        || (chunk instanceof SparseDoubleChunk && !((SparseDoubleChunk) chunk).isDense())) {
+      return chunk;
+    }
+    final XorDoubleChunk sealed = XorDoubleChunk.encode(chunk, this.allocator);
+    if (sealed.sizeInBytes() >= (long) chunk.capacity() * Double.BYTES) {
+      sealed.close();
+      return chunk;
+    }
+    return sealed;
+  }
+
+  /**
+   * Releases a chunk returned by {@link #seal(IntegerChunk)} or {@link #seal(DoubleChunk)}.
+   *
+   * @param chunk the sealed chunk
+   */
+  public void release(final Chunk<?> chunk) {
+    if (chunk instanceof FrameOfReferenceIntegerChunk) {
+      ((FrameOfReferenceIntegerChunk) chunk).close();
+    } else if (chunk instanceof XorDoubleChunk) {
+      ((XorDoubleChunk) chunk).close();
+    }
+  }
+
+  /**
+   * @param chunk a chunk
+   * @return the number of bytes used by the chunk
+   */
+  protected static long sizeOf(final IntegerChunk chunk) {
+    if (chunk instanceof BitPackedIntegerChunk) {
+      return ((BitPackedIntegerChunk) chunk).sizeInBytes();
+    } else if (chunk instanceof RunLengthIntegerChunk) {
+      return ((RunLengthIntegerChunk) chunk).sizeInBytes();
+    } else {
+      return (long) chunk.capacity() * Integer.BYTES;
+    }
+  }
+}
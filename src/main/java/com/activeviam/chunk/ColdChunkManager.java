@@ -0,0 +1,223 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import com.activeviam.platform.AccessPattern;
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Demotes the file chunks that have not been accessed for a while, so that the kernel reclaims
+ * their pages before the ones of the hot chunks.
+ *
+ * <p>File chunks record the {@link #epoch() epoch} of their last bulk access, such as {@code
+ * findRows}, a coarse clock advanced by a background thread. Reads of single values are sampled,
+ * one in 64 being recorded, to keep them almost free of extra work. The manager periodically gives
+ * the {@link AccessPattern#COLD} or {@link AccessPattern#PAGEOUT} advice to the registered chunks
+ * untouched for longer than the configured delay. A chunk is demoted once, and again only after it
+ * was accessed.
+ *
+ * @author ActiveViam
+ */
+public class ColdChunkManager implements Closeable {
+
+  /** Class logger. */
+  private static final Logger logger = Logger.getLogger("chunk");
+
+  /** Duration of an epoch, in milliseconds. */
+  public static final long EPOCH_MILLIS = 100;
+
+  /** The current epoch, advanced every {@link #EPOCH_MILLIS} */
+  private static volatile int epoch;
+
+  /** Advances {@link #epoch}, started with the first manager */
+  private static ScheduledExecutorService clock;
+
+  /** The chunks watched by this manager */
+  protected final Set<AbstractFileChunk<?>> chunks;
+
+  /** The number of epochs after which an untouched chunk is demoted */
+  protected final int coldEpochs;
+
+  /** The advice given to cold chunks */
+  protected final AccessPattern demotion;
+
+  /** Checks the chunks periodically, null if the manager is not scheduled */
+  protected final ScheduledExecutorService scanner;
+
+  /** The number of chunks demoted so far */
+  protected final AtomicLong demotions;
+
+  /**
+   * Constructor.
+   *
+   * @param coldAfter the time after which an untouched chunk is demoted
+   * @param unit the unit of {@code coldAfter}
+   * @param demotion {@link AccessPattern#COLD} to let the kernel reclaim the pages of cold chunks
+   *     first, {@link AccessPattern#PAGEOUT} to reclaim them right away
+   */
+  public ColdChunkManager(final long coldAfter, final TimeUnit unit, final AccessPattern demotion) {
+    this(coldAfter, unit, demotion, true);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param coldAfter the time after which an untouched chunk is demoted
+   * @param unit the unit of {@code coldAfter}
+   * @param demotion {@link AccessPattern#COLD} or {@link AccessPattern#PAGEOUT}
+   * @param scheduled false to neither advance the epoch nor scan the chunks in the background, for
+   *     tests calling {@link #advanceEpochs(int)} and {@link #demoteColdChunks()} themselves
+   */
+  ColdChunkManager(
+      final long coldAfter,
+      final TimeUnit unit,
+      final AccessPattern demotion,
+      final boolean scheduled) {
+    if (demotion != AccessPattern.COLD && demotion != AccessPattern.PAGEOUT) {
+      throw new IllegalArgumentException("Cold chunks cannot be demoted with " + demotion);
+    }
+    this.coldEpochs = (int) Math.max(1, unit.toMillis(coldAfter) / EPOCH_MILLIS);
+    this.demotion = demotion;
+    this.chunks = ConcurrentHashMap.newKeySet();
+    this.demotions = new AtomicLong();
+    if (!scheduled) {
+      this.scanner = null;
+      return;
+    }
+    startClock();
+
+    final long period = Math.max(EPOCH_MILLIS, unit.toMillis(coldAfter) / 4);
+    this.scanner =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              final Thread thread = new Thread(r, "cold-chunk-manager");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.scanner.scheduleWithFixedDelay(
+        this::demoteColdChunks, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  /** @return the current epoch of the access clock */
+  static int epoch() {
+    return epoch;
+  }
+
+  /**
+   * Advances the epoch.
+   *
+   * @param epochs the number of epochs to add
+   */
+  static synchronized void advanceEpochs(final int epochs) {
+    epoch += epochs;
+  }
+
+  private static synchronized void startClock() {
+    if (clock == null) {
+      clock =
+          Executors.newSingleThreadScheduledExecutor(
+              r -> {
+                final Thread thread = new Thread(r, "chunk-access-clock");
+                thread.setDaemon(true);
+                return thread;
+              });
+      clock.scheduleAtFixedRate(
+          () -> advanceEpochs(1), EPOCH_MILLIS, EPOCH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Watches a chunk. Chunks that are not stored in files are ignored.
+   *
+   * <p>Closed chunks are forgotten by the manager.
+   *
+   * @param chunk the chunk
+   */
+  public void register(final Chunk<?> chunk) {
+    if (chunk instanceof AbstractFileChunk) {
+      final AbstractFileChunk<?> fileChunk = (AbstractFileChunk<?>) chunk;
+      fileChunk.manager = this;
+      this.chunks.add(fileChunk);
+    }
+  }
+
+  /**
+   * Stops watching a chunk.
+   *
+   * @param chunk the chunk
+   */
+  public void unregister(final Chunk<?> chunk) {
+    if (this.chunks.remove(chunk)) {
+      ((AbstractFileChunk<?>) chunk).manager = null;
+    }
+  }
+
+  /**
+   * Demotes the chunks that have not been accessed for long enough.
+   *
+   * <p>A chunk is advised under its monitor, so that it cannot be freed, and its memory recycled,
+   * meanwhile. A chunk failing to be advised is logged and skipped: an exception would cancel the
+   * scheduled scans.
+   */
+  protected void demoteColdChunks() {
+    final int now = epoch;
+    int demoted = 0;
+    for (final Iterator<AbstractFileChunk<?>> it = this.chunks.iterator(); it.hasNext(); ) {
+      final AbstractFileChunk<?> chunk = it.next();
+      final int lastAccess = chunk.lastAccess;
+      if (now - lastAccess < this.coldEpochs || chunk.demotedAccess == lastAccess) {
+        continue;
+      }
+      try {
+        synchronized (chunk) {
+          if (chunk.ptr < 0) {
+            it.remove();
+            continue;
+          }
+          chunk.advise(this.demotion);
+        }
+        chunk.demotedAccess = lastAccess;
+        demoted++;
+      } catch (RuntimeException e) {
+        logger.log(Level.WARNING, "Cannot demote a cold chunk with " + this.demotion, e);
+      }
+    }
+    if (demoted > 0) {
+      this.demotions.addAndGet(demoted);
+      logger.fine("Demoted " + demoted + " cold chunks with " + this.demotion);
+    }
+  }
+
+  /** @return the number of chunks watched by this manager */
+  public int getChunkCount() {
+    return this.chunks.size();
+  }
+
+  /** @return the number of times a cold chunk was demoted */
+  public long getDemotionCount() {
+    return this.demotions.get();
+  }
+
+  /** Stops watching the chunks. */
+  @Override
+  public void close() {
+    if (this.scanner != null) {
+      this.scanner.shutdownNow();
+    }
+    this.chunks.clear();
+  }
+}
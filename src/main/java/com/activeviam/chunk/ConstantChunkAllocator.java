@@ -0,0 +1,42 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+/**
+ * This allocator allocates {@link ConstantIntegerChunk constant} chunks adopting the first value
+ * written into them, which become dense chunks of another allocator once another value is written.
+ *
+ * <p>Columns holding a single value per chunk, such as the date of a partition or the id of a load,
+ * then take no memory for the chunks where they do not change.
+ *
+ * @author ActiveViam
+ */
+public class ConstantChunkAllocator implements IChunkAllocator {
+
+  /** The allocator of the dense chunks */
+  protected final IChunkAllocator allocator;
+
+  /**
+   * Constructor.
+   *
+   * @param allocator the allocator of the dense chunks
+   */
+  public ConstantChunkAllocator(final IChunkAllocator allocator) {
+    this.allocator = allocator;
+  }
+
+  @Override
+  public IntegerChunk allocateIntergerChunk(int size) {
+    return new ConstantIntegerChunk(size, this.allocator);
+  }
+
+  @Override
+  public DoubleChunk allocateDoubleChunk(int size) {
+    return new ConstantDoubleChunk(size, this.allocator);
+  }
+}
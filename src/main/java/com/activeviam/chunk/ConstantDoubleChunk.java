@@ -0,0 +1,62 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+/**
+ * {@link DoubleChunk} whose rows all have the same value, using constant memory. Writing a
+ * different value makes the chunk dense, as a {@link SparseDoubleChunk} accepting no exception.
+ *
+ * <p>A chunk created without a value adopts the first value written into it: the rows not written
+ * yet read as that value, and 0 before any write.
+ *
+ * @author ActiveViam
+ */
+public class ConstantDoubleChunk extends SparseDoubleChunk {
+
+  /** Whether the value of the rows is known, false until the first write if it was not given */
+  private boolean adopted;
+
+  /**
+   * Constructor.
+   *
+   * @param capacity the number of values of the chunk
+   * @param value the value of all the rows
+   * @param allocator the allocator of the dense chunk
+   */
+  public ConstantDoubleChunk(
+      final int capacity, final double value, final IChunkAllocator allocator) {
+    super(capacity, value, 0, allocator);
+    this.adopted = true;
+  }
+
+  /**
+   * Constructor of a chunk adopting the first value written into it.
+   *
+   * @param capacity the number of values of the chunk
+   * @param allocator the allocator of the dense chunk
+   */
+  public ConstantDoubleChunk(final int capacity, final IChunkAllocator allocator) {
+    super(capacity, 0d, 0, allocator);
+    this.adopted = false;
+  }
+
+  @Override
+  public void writeDouble(int position, double value) {
+    if (!this.adopted) {
+      setDefaultValue(value);
+      this.adopted = true;
+      return;
+    }
+    super.writeDouble(position, value);
+  }
+
+  /** @return true while all the rows have the same value */
+  public boolean isConstant() {
+    return !isDense();
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+/**
+ * {@link IntegerChunk} whose rows all have the same value, using constant memory.
+ *
+ * <p>{@link #findRows(int, int)} answers without reading any row. Writing a different value makes
+ * the chunk dense, as a {@link SparseIntegerChunk} accepting no exception.
+ *
+ * <p>A chunk created without a value adopts the first value written into it: the rows not written
+ * yet read as that value, and 0 before any write.
+ *
+ * @author ActiveViam
+ */
+public class ConstantIntegerChunk extends SparseIntegerChunk {
+
+  /** Whether the value of the rows is known, false until the first write if it was not given */
+  private boolean adopted;
+
+  /**
+   * Constructor.
+   *
+   * @param capacity the number of values of the chunk
+   * @param value the value of all the rows
+   * @param allocator the allocator of the dense chunk
+   */
+  public ConstantIntegerChunk(
+      final int capacity, final int value, final IChunkAllocator allocator) {
+    super(capacity, value, 0, allocator);
+    this.adopted = true;
+  }
+
+  /**
+   * Constructor of a chunk adopting the first value written into it.
+   *
+   * @param capacity the number of values of the chunk
+   * @param allocator the allocator of the dense chunk
+   */
+  public ConstantIntegerChunk(final int capacity, final IChunkAllocator allocator) {
+    super(capacity, 0, 0, allocator);
+    this.adopted = false;
+  }
+
+  /** @return true while all the rows have the same value */
+  public boolean isConstant() {
+    return !isDense();
+  }
+
+  @Override
+  public void writeInt(int position, int value) {
+    if (!this.adopted) {
+      setDefaultValue(value);
+      this.adopted = true;
+      return;
+    }
+    super.writeInt(position, value);
+  }
+
+  @Override
+  public boolean findRows(int value, int limit, long[] words, int wordOffset, Op op) {
+    if (isDense()) {
+      return super.findRows(value, limit, words, wordOffset, op);
+    }
+    // All the rows match, or none does
+    return RowFinder.storeRange(words, wordOffset, 0, limit, value == getDefaultValue(), op);
+  }
+}
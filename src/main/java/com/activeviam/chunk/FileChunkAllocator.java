@@ -0,0 +1,39 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import com.activeviam.reference.MemoryAllocatorOnFile;
+
+/**
+ * This allocator allocates chunks in memory mapped files, with a {@link MemoryAllocatorOnFile}.
+ *
+ * <p>The tables using it can be larger than the heap, and than the RAM: the kernel loads the pages
+ * of the chunks being accessed and writes back the others to the files when it needs memory.
+ *
+ * @author ActiveViam
+ */
+public class FileChunkAllocator implements IChunkAllocator {
+
+  /** The allocator of the memory of the chunks */
+  protected final MemoryAllocatorOnFile allocator;
+
+  /** @param allocator the allocator of the memory of the chunks */
+  public FileChunkAllocator(final MemoryAllocatorOnFile allocator) {
+    this.allocator = allocator;
+  }
+
+  @Override
+  public IntegerChunk allocateIntergerChunk(int size) {
+    return new FileIntegerChunk(this.allocator, size);
+  }
+
+  @Override
+  public DoubleChunk allocateDoubleChunk(int size) {
+    return new FileDoubleChunk(this.allocator, size);
+  }
+}
@@ -36,6 +36,7 @@ public class FileDoubleChunk extends AbstractFileChunk<Double> implements Double
   @Override
   public double readDouble(int position) {
     assert 0 <= position && position < capacity();
+    touchSampled(position);
     return UNSAFE.getDouble(offset(position << ELEMENT_SIZE_ORDER));
   }
 
@@ -41,6 +41,7 @@ public class FileIntegerChunk extends AbstractFileChunk<Integer> implements Inte
 	@Override
 	public int readInt(int position) {
 		assert 0 <= position && position < capacity();
+		touchSampled(position);
 		return UNSAFE.getInt(offset(position << ELEMENT_SIZE_ORDER));
 	}
 
@@ -53,20 +54,17 @@ public class FileIntegerChunk extends AbstractFileChunk<Integer> implements Inte
 	@Override
 	public BitSet findRows(int value, int limit) {
 		assert limit <= capacity();
+		touch();
 
-		BitSet result = null;
-		long addr = this.ptr;
-		for (int i = 0; i < limit; i++) {
-			if (UNSAFE.getInt(addr) == value) {
-				if (result == null) {
-					result = new BitSet();
-				}
-				result.set(i);
-			}
+		return RowFinder.getInstance().findRows(this.ptr, value, limit);
+	}
 
-			addr += 1 << ELEMENT_SIZE_ORDER;
-		}
-		return result;
+	@Override
+	public boolean findRows(int value, int limit, long[] words, int wordOffset, Op op) {
+		assert limit <= capacity();
+		touch();
+
+		return RowFinder.getInstance().findRows(this.ptr, value, limit, words, wordOffset, op);
 	}
 
 }
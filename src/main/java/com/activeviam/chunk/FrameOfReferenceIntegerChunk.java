@@ -0,0 +1,312 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import com.activeviam.MemoryAllocator;
+import com.activeviam.UnsafeUtil;
+import com.activeviam.reference.MemoryAllocatorOnFile;
+import java.io.Closeable;
+import java.util.BitSet;
+
+/**
+ * Read-only {@link IntegerChunk} encoded with a frame of reference, for the chunks that are not
+ * written anymore.
+ *
+ * <p>The values are split in blocks of {@link #BLOCK_SIZE} rows. Each block stores its minimum, the
+ * reference, and the difference of each value to the reference packed in the number of bits of the
+ * largest difference. Values spanning a narrow range far from zero then take a few bits each.
+ *
+ * <p>The bit offset of each block is stored, so that {@link #readInt(int)} is O(1). {@link
+ * #findRows(int, int, long[], int, IntegerChunk.Op)} clears or keeps the rows of the blocks whose
+ * range does not contain the value without unpacking them, and unpacks the others a word of rows at
+ * a time.
+ *
+ * <p>The packed values are stored either on the heap, or in memory allocated by a {@link
+ * MemoryAllocatorOnFile}, freed when the chunk is {@link #close() closed}.
+ *
+ * @author ActiveViam
+ */
+public class FrameOfReferenceIntegerChunk implements IntegerChunk, Closeable {
+
+  /** The number of rows of a block */
+  public static final int BLOCK_SIZE = 128;
+
+  private static final int BLOCK_ORDER = Integer.numberOfTrailingZeros(BLOCK_SIZE);
+
+  private static final sun.misc.Unsafe UNSAFE = UnsafeUtil.getUnsafe();
+
+  /** The number of values of the chunk */
+  private final int capacity;
+
+  /** The minimum value of each block */
+  private final int[] references;
+
+  /** The number of bits of the packed values of each block */
+  private final byte[] widths;
+
+  /** The offset of the first bit of each block, relative to {@link #offset} */
+  private final long[] bitOffsets;
+
+  /** The array holding the packed values, null when they are off-heap */
+  private final long[] words;
+
+  /** The address of the packed values, or their offset in {@link #words} */
+  private final long offset;
+
+  /** The allocator of the packed values when they are off-heap, null when they are on the heap */
+  private final MemoryAllocatorOnFile allocator;
+
+  /** The number of bytes of the packed values */
+  private final long bytes;
+
+  /** Whether the off-heap memory was freed */
+  private boolean closed;
+
+  private FrameOfReferenceIntegerChunk(
+      final int capacity,
+      final int[] references,
+      final byte[] widths,
+      final long[] bitOffsets,
+      final long totalBits,
+      final MemoryAllocatorOnFile allocator) {
+    this.capacity = capacity;
+    this.references = references;
+    this.widths = widths;
+    this.bitOffsets = bitOffsets;
+    // One more word, so that reading a value never reads past the end
+    final long bytes = ((totalBits + 63) / 64 + 1) * Long.BYTES;
+    this.allocator = allocator;
+    if (allocator == null) {
+      this.bytes = bytes;
+      this.words = new long[Math.toIntExact(this.bytes / Long.BYTES)];
+      this.offset = sun.misc.Unsafe.ARRAY_LONG_BASE_OFFSET;
+    } else {
+      // The allocator works with whole pages
+      this.bytes =
+          (bytes + MemoryAllocator.PAGE_SIZE - 1)
+              / MemoryAllocator.PAGE_SIZE
+              * MemoryAllocator.PAGE_SIZE;
+      this.words = null;
+      this.offset = allocator.allocateMemory(this.bytes);
+      UNSAFE.setMemory(this.offset, this.bytes, (byte) 0);
+    }
+  }
+
+  /**
+   * Encodes the values of a chunk.
+   *
+   * @param chunk the chunk to encode
+   * @param allocator the allocator of the packed values, null to store them on the heap
+   * @return the encoded chunk
+   */
+  public static FrameOfReferenceIntegerChunk encode(
+      final IntegerChunk chunk, final MemoryAllocatorOnFile allocator) {
+    final int capacity = chunk.capacity();
+    final int blocks = (capacity + BLOCK_SIZE - 1) >>> BLOCK_ORDER;
+    final int[] references = new int[blocks];
+    final byte[] widths = new byte[blocks];
+    final long[] bitOffsets = new long[blocks];
+    final int[] buffer = new int[BLOCK_SIZE];
+
+    // First pass for the layout of the blocks
+    long totalBits = 0;
+    for (int b = 0; b < blocks; b++) {
+      final int count = read(chunk, b, buffer);
+      int min = buffer[0];
+      int max = buffer[0];
+      for (int i = 1; i < count; i++) {
+        min = Math.min(min, buffer[i]);
+        max = Math.max(max, buffer[i]);
+      }
+      references[b] = min;
+      widths[b] = (byte) (Long.SIZE - Long.numberOfLeadingZeros((long) max - min));
+      bitOffsets[b] = totalBits;
+      totalBits += (long) count * widths[b];
+    }
+
+    final FrameOfReferenceIntegerChunk encoded =
+        new FrameOfReferenceIntegerChunk(
+            capacity, references, widths, bitOffsets, totalBits, allocator);
+    for (int b = 0; b < blocks; b++) {
+      final int count = read(chunk, b, buffer);
+      for (int i = 0; i < count; i++) {
+        encoded.pack(bitOffsets[b] + (long) i * widths[b], widths[b], buffer[i] - references[b]);
+      }
+    }
+    return encoded;
+  }
+
+  private static int read(final IntegerChunk chunk, final int block, final int[] buffer) {
+    final int start = block << BLOCK_ORDER;
+    final int count = Math.min(BLOCK_SIZE, chunk.capacity() - start);
+    for (int i = 0; i < count; i++) {
+      buffer[i] = chunk.readInt(start + i);
+    }
+    return count;
+  }
+
+  /**
+   * Writes a packed value. The bits of the value must be 0 before.
+   *
+   * @param bit the offset of the value, in bits
+   * @param width the number of bits of the value
+   * @param delta the value, minus the reference of its block
+   */
+  private void pack(final long bit, final int width, final int delta) {
+    if (width == 0) {
+      return;
+    }
+    final long address = this.offset + (bit >>> 6) * Long.BYTES;
+    final int shift = (int) (bit & 63);
+    final long value = delta & mask(width);
+    UNSAFE.putLong(this.words, address, UNSAFE.getLong(this.words, address) | (value << shift));
+    if (shift + width > Long.SIZE) {
+      final long next = address + Long.BYTES;
+      UNSAFE.putLong(
+          this.words, next, UNSAFE.getLong(this.words, next) | (value >>> (Long.SIZE - shift)));
+    }
+  }
+
+  /**
+   * Reads a packed value.
+   *
+   * @param bit the offset of the value, in bits
+   * @param width the number of bits of the value, more than 0
+   * @return the value, minus the reference of its block
+   */
+  private int unpack(final long bit, final int width) {
+    final long address = this.offset + (bit >>> 6) * Long.BYTES;
+    final int shift = (int) (bit & 63);
+    long value = UNSAFE.getLong(this.words, address) >>> shift;
+    if (shift + width > Long.SIZE) {
+      value |= UNSAFE.getLong(this.words, address + Long.BYTES) << (Long.SIZE - shift);
+    }
+    return (int) (value & mask(width));
+  }
+
+  private static long mask(final int width) {
+    return (1L << width) - 1;
+  }
+
+  @Override
+  public int capacity() {
+    return this.capacity;
+  }
+
+  /** @return the number of bytes used by the chunk, its block metadata included */
+  public long sizeInBytes() {
+    return this.bytes + (long) this.references.length * (Integer.BYTES + 1 + Long.BYTES);
+  }
+
+  @Override
+  public int readInt(int position) {
+    assert 0 <= position && position < this.capacity;
+    final int block = position >>> BLOCK_ORDER;
+    final int width = this.widths[block];
+    if (width == 0) {
+      return this.references[block];
+    }
+    final long bit = this.bitOffsets[block] + (long) (position & (BLOCK_SIZE - 1)) * width;
+    return this.references[block] + unpack(bit, width);
+  }
+
+  @Override
+  public void writeInt(int position, int value) {
+    throw new UnsupportedOperationException("Cannot write into a sealed chunk");
+  }
+
+  /**
+   * Decodes the values of a block.
+   *
+   * @param block the block
+   * @param out receives the values, at least {@link #BLOCK_SIZE} long
+   * @return the number of values of the block
+   */
+  public int decode(final int block, final int[] out) {
+    final int count = Math.min(BLOCK_SIZE, this.capacity - (block << BLOCK_ORDER));
+    final int reference = this.references[block];
+    final int width = this.widths[block];
+    if (width == 0) {
+      for (int i = 0; i < count; i++) {
+        out[i] = reference;
+      }
+      return count;
+    }
+    final long mask = mask(width);
+    long bit = this.bitOffsets[block];
+    for (int i = 0; i < count; i++, bit += width) {
+      final long address = this.offset + (bit >>> 6) * Long.BYTES;
+      final int shift = (int) (bit & 63);
+      // Both words are read, so that the loop does not branch
+      final long low = UNSAFE.getLong(this.words, address) >>> shift;
+      final long high = (UNSAFE.getLong(this.words, address + Long.BYTES) << 1) << (63 - shift);
+      out[i] = reference + (int) ((low | high) & mask);
+    }
+    return count;
+  }
+
+  @Override
+  public BitSet findRows(int value, int limit) {
+    final long[] words = RowFinder.words(limit);
+    return findRows(value, limit, words, 0, Op.OR) ? BitSet.valueOf(words) : null;
+  }
+
+  @Override
+  public boolean findRows(int value, int limit, long[] words, int wordOffset, Op op) {
+    assert limit <= this.capacity;
+    boolean any = false;
+    final int blocks = (limit + BLOCK_SIZE - 1) >>> BLOCK_ORDER;
+    for (int b = 0; b < blocks; b++) {
+      final int start = b << BLOCK_ORDER;
+      final int end = Math.min(limit, start + BLOCK_SIZE);
+      final int width = this.widths[b];
+      final long delta = (long) value - this.references[b];
+      if (delta < 0 || delta > mask(width) || width == 0) {
+        // Either the value is out of the range of the block, or all the values of the block are
+        // equal to the reference: no need to unpack them
+        any |= RowFinder.storeRange(words, wordOffset, start, end, delta == 0, op);
+        continue;
+      }
+      final long mask = mask(width);
+      // Blocks are made of whole words of rows
+      for (int from = start; from < end; from += Long.SIZE) {
+        final int word = wordOffset + (from >>> 6);
+        if (op == Op.AND && words[word] == 0) {
+          // No row left to keep
+          continue;
+        }
+        final int count = Math.min(Long.SIZE, end - from);
+        long bit = this.bitOffsets[b] + (long) (from - start) * width;
+        long matches = 0;
+        for (int i = 0; i < count; i++, bit += width) {
+          final long address = this.offset + (bit >>> 6) * Long.BYTES;
+          final int shift = (int) (bit & 63);
+          // Both words are read, so that the loop does not branch
+          final long low = UNSAFE.getLong(this.words, address) >>> shift;
+          final long high = (UNSAFE.getLong(this.words, address + Long.BYTES) << 1) << (63 - shift);
+          matches |= ScalarRowFinder.equal((int) ((low | high) & mask), (int) delta) << i;
+        }
+        any |= RowFinder.store(words, word, matches, count, op);
+      }
+    }
+    return any;
+  }
+
+  /** @return true if the packed values are stored in a file rather than on the heap */
+  public boolean isOffHeap() {
+    return this.allocator != null;
+  }
+
+  @Override
+  public void close() {
+    if (this.allocator != null && !this.closed) {
+      this.closed = true;
+      this.allocator.freeMemory(this.offset, this.bytes);
+    }
+  }
+}
@@ -7,6 +7,8 @@
 
 package com.activeviam.chunk;
 
+import java.util.Arrays;
+
 public class HeapDoubleChunk implements DoubleChunk {
 
   private double[] array;
@@ -29,4 +31,9 @@ public class HeapDoubleChunk implements DoubleChunk {
   public void writeDouble(int position, double value) {
     this.array[position] = value;
   }
+
+  /** Writes zeros over the whole chunk. */
+  void zero() {
+    Arrays.fill(this.array, 0d);
+  }
 }
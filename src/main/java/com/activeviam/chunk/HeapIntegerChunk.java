@@ -6,6 +6,7 @@
 
 package com.activeviam.chunk;
 
+import java.util.Arrays;
 import java.util.BitSet;
 
 public class HeapIntegerChunk implements IntegerChunk {
@@ -33,17 +34,16 @@ public class HeapIntegerChunk implements IntegerChunk {
 
 	@Override
 	public BitSet findRows(int value, int limit) {
-		BitSet result = null;
-		final int[] array = this.array;
-		for (int i = 0; i < limit; i++) {
-			if (array[i] == value) {
-				if (result == null) {
-					result = new BitSet();
-				}
-				result.set(i);
-			}
-		}
-		return result;
+		return RowFinder.getInstance().findRows(this.array, value, limit);
 	}
 
+	@Override
+	public boolean findRows(int value, int limit, long[] words, int wordOffset, Op op) {
+		return RowFinder.getInstance().findRows(this.array, value, limit, words, wordOffset, op);
+	}
+
+	/** Writes zeros over the whole chunk. */
+	void zero() {
+		Arrays.fill(this.array, 0);
+	}
 }
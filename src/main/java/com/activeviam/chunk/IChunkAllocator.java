@@ -1,5 +1,9 @@
 package com.activeviam.chunk;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
  * @author ActiveViam
  */
@@ -9,4 +13,23 @@ public interface IChunkAllocator {
 
 	DoubleChunk allocateDoubleChunk(int size);
 
+	/**
+	 * Releases the storage of a chunk allocated by this allocator. The chunk must not be used
+	 * afterwards.
+	 *
+	 * <p>The default implementation closes the chunks that are {@link Closeable}, and leaves the
+	 * others to the garbage collector.
+	 *
+	 * @param chunk The chunk to release
+	 */
+	default void release(final Chunk<?> chunk) {
+		if (chunk instanceof Closeable) {
+			try {
+				((Closeable) chunk).close();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Cannot release the chunk " + chunk, e);
+			}
+		}
+	}
+
 }
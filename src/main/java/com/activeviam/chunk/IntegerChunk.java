@@ -39,4 +39,54 @@ public interface IntegerChunk extends Chunk<Integer> {
 		}
 		return result;
 	}
+
+	/**
+	 * Finds the rows containing the given value, and combines them with the rows of a bitmap owned by
+	 * the caller, without allocating.
+	 *
+	 * <p>Row {@code i} of the chunk is bit {@code i % 64} of word {@code wordOffset + i / 64}. The
+	 * bits of the rows after the limit are left unchanged.
+	 *
+	 * @param value the searched value
+	 * @param limit the rows after this limit will be ignored
+	 * @param words the words of the bitmap
+	 * @param wordOffset the word of the first row of the chunk
+	 * @param op how the rows containing the value are combined with the bitmap
+	 * @return true if any row before the limit is set in the bitmap afterwards
+	 */
+	default boolean findRows(int value, int limit, long[] words, int wordOffset, Op op) {
+		boolean any = false;
+		for (int start = 0; start < limit; start += Long.SIZE) {
+			final int word = wordOffset + (start >>> 6);
+			if (op == Op.AND && words[word] == 0) {
+				// No row left to keep
+				continue;
+			}
+			final int count = Math.min(Long.SIZE, limit - start);
+			long matches = 0;
+			for (int i = 0; i < count; i++) {
+				matches |= ScalarRowFinder.equal(readInt(start + i), value) << i;
+			}
+			any |= RowFinder.store(words, word, matches, count, op);
+		}
+		return any;
+	}
+
+	/** How the rows found in a chunk are combined with the rows of a bitmap. */
+	enum Op {
+		/** Keeps the rows of the bitmap that are found */
+		AND,
+		/** Adds the rows found to the bitmap */
+		OR;
+
+		/**
+		 * @param word a word of the bitmap
+		 * @param matches the rows of the word that are found
+		 * @param rows the rows of the word that were looked at
+		 * @return the new word
+		 */
+		public long apply(final long word, final long matches, final long rows) {
+			return this == AND ? word & (matches | ~rows) : word | (matches & rows);
+		}
+	}
 }
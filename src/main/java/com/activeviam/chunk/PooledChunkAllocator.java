@@ -0,0 +1,227 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import com.activeviam.platform.AccessPattern;
+import java.io.Closeable;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This allocator keeps the chunks it releases, up to a budget of bytes, and hands them back for the
+ * next chunks of the same type and capacity.
+ *
+ * <p>Temporary tables then reuse the memory of the previous ones, already mapped, instead of going
+ * through the underlying allocator again. Unless the pool is told that its users write all the rows
+ * before reading them, the chunks are zeroed: the file chunks when they are released, by giving
+ * their pages back to the file system rather than writing them, and the others when they are handed
+ * back. Chunks that are not zeroed keep their pages faulted in.
+ *
+ * @author ActiveViam
+ */
+public class PooledChunkAllocator implements IChunkAllocator, Closeable {
+
+  /** The allocator of the chunks that are not in the pool */
+  protected final IChunkAllocator allocator;
+
+  /** The maximum number of bytes of the chunks kept in the pool */
+  protected final long budget;
+
+  /** Whether the chunks are zeroed before being handed back */
+  protected final boolean zeroOnReuse;
+
+  /** The released integer chunks, by capacity */
+  protected final Map<Integer, Deque<IntegerChunk>> integerChunks = new ConcurrentHashMap<>();
+
+  /** The released double chunks, by capacity */
+  protected final Map<Integer, Deque<DoubleChunk>> doubleChunks = new ConcurrentHashMap<>();
+
+  /** The number of bytes of the chunks in the pool */
+  protected final AtomicLong pooledBytes = new AtomicLong();
+
+  /** The number of chunks served from the pool */
+  protected final AtomicLong hits = new AtomicLong();
+
+  /** The number of chunks allocated by {@link #allocator} */
+  protected final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Constructor of a pool zeroing the chunks it hands back.
+   *
+   * @param allocator the allocator of the chunks that are not in the pool
+   * @param budget the maximum number of bytes of the chunks kept in the pool
+   */
+  public PooledChunkAllocator(final IChunkAllocator allocator, final long budget) {
+    this(allocator, budget, true);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param allocator the allocator of the chunks that are not in the pool
+   * @param budget the maximum number of bytes of the chunks kept in the pool
+   * @param zeroOnReuse true to zero the chunks handed back, false to hand them back with their
+   *     previous content
+   */
+  public PooledChunkAllocator(
+      final IChunkAllocator allocator, final long budget, final boolean zeroOnReuse) {
+    if (budget < 0) {
+      throw new IllegalArgumentException("The budget must not be negative, was " + budget);
+    }
+    this.allocator = allocator;
+    this.budget = budget;
+    this.zeroOnReuse = zeroOnReuse;
+  }
+
+  @Override
+  public IntegerChunk allocateIntergerChunk(int size) {
+    final IntegerChunk chunk = poll(this.integerChunks, size);
+    if (chunk == null) {
+      this.misses.incrementAndGet();
+      return this.allocator.allocateIntergerChunk(size);
+    }
+    if (this.zeroOnReuse) {
+      if (chunk instanceof HeapIntegerChunk) {
+        ((HeapIntegerChunk) chunk).zero();
+      } else if (!(chunk instanceof AbstractFileChunk)) {
+        for (int i = 0; i < size; i++) {
+          chunk.writeInt(i, 0);
+        }
+      }
+    }
+    return chunk;
+  }
+
+  @Override
+  public DoubleChunk allocateDoubleChunk(int size) {
+    final DoubleChunk chunk = poll(this.doubleChunks, size);
+    if (chunk == null) {
+      this.misses.incrementAndGet();
+      return this.allocator.allocateDoubleChunk(size);
+    }
+    if (this.zeroOnReuse) {
+      if (chunk instanceof HeapDoubleChunk) {
+        ((HeapDoubleChunk) chunk).zero();
+      } else if (!(chunk instanceof AbstractFileChunk)) {
+        for (int i = 0; i < size; i++) {
+          chunk.writeDouble(i, 0d);
+        }
+      }
+    }
+    return chunk;
+  }
+
+  private <C extends Chunk<?>> C poll(final Map<Integer, Deque<C>> pool, final int size) {
+    final Deque<C> chunks = pool.get(size);
+    // Last in first out, to reuse the chunks whose pages are the most likely in RAM
+    final C chunk = chunks != null ? chunks.pollFirst() : null;
+    if (chunk != null) {
+      this.pooledBytes.addAndGet(-sizeOf(chunk));
+      this.hits.incrementAndGet();
+    }
+    return chunk;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The chunk is kept in the pool if it fits in the budget, otherwise it is released by the
+   * underlying allocator.
+   */
+  @Override
+  public void release(final Chunk<?> chunk) {
+    final long size = sizeOf(chunk);
+    if (this.pooledBytes.addAndGet(size) > this.budget) {
+      this.pooledBytes.addAndGet(-size);
+      this.allocator.release(chunk);
+      return;
+    }
+    if (chunk instanceof AbstractFileChunk) {
+      // The pool does not keep memory locked, watched or advised for tables that are gone
+      final AbstractFileChunk<?> fileChunk = (AbstractFileChunk<?>) chunk;
+      final ChunkPinner pinner = fileChunk.pinner;
+      if (pinner != null) {
+        pinner.unpin(chunk);
+      }
+      final ColdChunkManager manager = fileChunk.manager;
+      if (manager != null) {
+        manager.unregister(chunk);
+      }
+      fileChunk.advise(AccessPattern.NORMAL);
+      if (this.zeroOnReuse) {
+        // The file chunks are zeroed by giving their pages back, which also frees them
+        fileChunk.zero();
+      }
+    }
+    if (chunk instanceof IntegerChunk) {
+      this.integerChunks
+          .computeIfAbsent(chunk.capacity(), k -> new ConcurrentLinkedDeque<>())
+          .addFirst((IntegerChunk) chunk);
+    } else if (chunk instanceof DoubleChunk) {
+      this.doubleChunks
+          .computeIfAbsent(chunk.capacity(), k -> new ConcurrentLinkedDeque<>())
+          .addFirst((DoubleChunk) chunk);
+    } else {
+      this.pooledBytes.addAndGet(-size);
+      this.allocator.release(chunk);
+    }
+  }
+
+  /**
+   * @param chunk a chunk
+   * @return the number of bytes of memory used by the chunk
+   */
+  protected static long sizeOf(final Chunk<?> chunk) {
+    if (chunk instanceof AbstractFileChunk) {
+      return ((AbstractFileChunk<?>) chunk).blockSize;
+    } else if (chunk instanceof DoubleChunk) {
+      return (long) chunk.capacity() * Double.BYTES;
+    } else {
+      return (long) chunk.capacity() * Integer.BYTES;
+    }
+  }
+
+  /** @return the number of bytes of the chunks in the pool */
+  public long getPooledBytes() {
+    return this.pooledBytes.get();
+  }
+
+  /** @return the number of chunks served from the pool */
+  public long getHitCount() {
+    return this.hits.get();
+  }
+
+  /** @return the number of chunks allocated because the pool had none of their type and capacity */
+  public long getMissCount() {
+    return this.misses.get();
+  }
+
+  /** Releases all the chunks of the pool with the underlying allocator. */
+  public void clear() {
+    clear(this.integerChunks);
+    clear(this.doubleChunks);
+  }
+
+  private <C extends Chunk<?>> void clear(final Map<Integer, Deque<C>> pool) {
+    for (final Deque<C> chunks : pool.values()) {
+      C chunk;
+      while ((chunk = chunks.pollFirst()) != null) {
+        this.pooledBytes.addAndGet(-sizeOf(chunk));
+        this.allocator.release(chunk);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    clear();
+  }
+}
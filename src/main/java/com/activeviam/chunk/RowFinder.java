@@ -0,0 +1,174 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import com.activeviam.chunk.IntegerChunk.Op;
+import java.util.BitSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds the rows of a column of ints equal to a value, writing the matches of 64 rows at once into
+ * the words of a bitmap rather than setting the bits one by one.
+ *
+ * <p>{@link #getInstance()} compares several ints per instruction with the Vector API when the
+ * {@code jdk.incubator.vector} module is available, i.e. when the project is built with {@code
+ * -Pvector} on JDK 16 or later and run with {@code --add-modules jdk.incubator.vector}. It falls
+ * back to a scalar loop otherwise.
+ *
+ * @author ActiveViam
+ */
+public abstract class RowFinder {
+
+  /** The property to set to false to use the scalar loop even when the Vector API is available */
+  public static final String VECTOR_PROPERTY = "activeviam.chunk.vector";
+
+  /** The module of the Vector API */
+  protected static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+  /** The implementation using the Vector API, only compiled on JDK 16 or later */
+  protected static final String VECTOR_CLASS = "com.activeviam.chunk.VectorRowFinder";
+
+  private static final RowFinder INSTANCE = load();
+
+  /** @return the fastest implementation available */
+  public static RowFinder getInstance() {
+    return INSTANCE;
+  }
+
+  private static RowFinder load() {
+    if (Boolean.parseBoolean(System.getProperty(VECTOR_PROPERTY, "true"))
+        && ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+      try {
+        return (RowFinder) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance();
+      } catch (ReflectiveOperationException | LinkageError e) {
+        Logger.getLogger("chunk").log(Level.FINE, "Cannot use the Vector API", e);
+      }
+    }
+    return new ScalarRowFinder();
+  }
+
+  /**
+   * Finds the rows of an array equal to a value.
+   *
+   * @param array the values
+   * @param value the searched value
+   * @param limit the number of rows to look at
+   * @return the matching rows, null if none
+   */
+  public BitSet findRows(final int[] array, final int value, final int limit) {
+    final long[] words = words(limit);
+    return findRows(array, value, limit, words, 0, Op.OR) ? BitSet.valueOf(words) : null;
+  }
+
+  /**
+   * Finds the rows of off-heap memory equal to a value.
+   *
+   * @param address the address of the first value
+   * @param value the searched value
+   * @param limit the number of rows to look at
+   * @return the matching rows, null if none
+   */
+  public BitSet findRows(final long address, final int value, final int limit) {
+    final long[] words = words(limit);
+    return findRows(address, value, limit, words, 0, Op.OR) ? BitSet.valueOf(words) : null;
+  }
+
+  /**
+   * Finds the rows of an array equal to a value, and combines them with the rows of a bitmap, as
+   * {@link IntegerChunk#findRows(int, int, long[], int, Op)}.
+   *
+   * @param array the values
+   * @param value the searched value
+   * @param limit the number of rows to look at
+   * @param words the words of the bitmap
+   * @param wordOffset the word of the first row
+   * @param op how the matching rows are combined with the bitmap
+   * @return true if any row before the limit is set in the bitmap afterwards
+   */
+  public abstract boolean findRows(
+      int[] array, int value, int limit, long[] words, int wordOffset, Op op);
+
+  /**
+   * Finds the rows of off-heap memory equal to a value, and combines them with the rows of a
+   * bitmap, as {@link IntegerChunk#findRows(int, int, long[], int, Op)}.
+   *
+   * @param address the address of the first value
+   * @param value the searched value
+   * @param limit the number of rows to look at
+   * @param words the words of the bitmap
+   * @param wordOffset the word of the first row
+   * @param op how the matching rows are combined with the bitmap
+   * @return true if any row before the limit is set in the bitmap afterwards
+   */
+  public abstract boolean findRows(
+      long address, int value, int limit, long[] words, int wordOffset, Op op);
+
+  /** @return a short description of the implementation */
+  @Override
+  public abstract String toString();
+
+  /**
+   * @param limit a number of rows
+   * @return the words of a bitmap of the rows
+   */
+  protected static long[] words(final int limit) {
+    return new long[(limit + Long.SIZE - 1) >>> 6];
+  }
+
+  /**
+   * Combines the matching rows of a word with a bitmap.
+   *
+   * @param words the words of the bitmap
+   * @param word the word of the rows
+   * @param matches the matching rows, as the lowest bits of the word
+   * @param count the number of rows of the word that were looked at, from 1 to 64
+   * @param op how the matching rows are combined with the bitmap
+   * @return true if any of the rows looked at is set in the bitmap afterwards
+   */
+  static boolean store(
+      final long[] words, final int word, final long matches, final int count, final Op op) {
+    final long rows = -1L >>> (Long.SIZE - count);
+    final long result = op.apply(words[word], matches, rows);
+    words[word] = result;
+    return (result & rows) != 0;
+  }
+
+  /**
+   * Combines a range of rows that either all match or all do not match with a bitmap, a word at a
+   * time.
+   *
+   * @param words the words of the bitmap
+   * @param wordOffset the word of row 0
+   * @param from the first row of the range
+   * @param to the end of the range, exclusive
+   * @param match whether the rows of the range match
+   * @param op how the matching rows are combined with the bitmap
+   * @return true if any row of the range is set in the bitmap afterwards
+   */
+  static boolean storeRange(
+      final long[] words,
+      final int wordOffset,
+      final int from,
+      final int to,
+      final boolean match,
+      final Op op) {
+    final long matches = match ? -1L : 0L;
+    boolean any = false;
+    for (int start = from; start < to; ) {
+      final int word = wordOffset + (start >>> 6);
+      final int end = Math.min(to, (start & -Long.SIZE) + Long.SIZE);
+      final long rows = (-1L >>> (Long.SIZE - (end - start))) << (start & 63);
+      final long result = op.apply(words[word], matches, rows);
+      words[word] = result;
+      any |= (result & rows) != 0;
+      start = end;
+    }
+    return any;
+  }
+}
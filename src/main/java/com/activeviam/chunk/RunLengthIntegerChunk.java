@@ -0,0 +1,242 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * {@link IntegerChunk} storing runs of equal consecutive values, for the columns of tables loaded
+ * in sorted order.
+ *
+ * <p>Its memory and the cost of {@link #findRows(int, int)} are proportional to the number of runs
+ * rather than to the number of rows. Rows are expected to be written in order: writing the row
+ * after the last written one extends or adds a run at the end, but overwriting a row inside the
+ * chunk may split a run in three, shifting the following runs. Rows after the last written one read
+ * as 0.
+ *
+ * @author ActiveViam
+ */
+public class RunLengthIntegerChunk implements IntegerChunk {
+
+  /** The initial number of runs the arrays can hold */
+  private static final int INITIAL_RUNS = 4;
+
+  /** The number of values of the chunk */
+  private final int capacity;
+
+  /** The end of each run, exclusive. A run starts at the end of the previous one. */
+  private int[] ends;
+
+  /** The value of each run */
+  private int[] values;
+
+  /** The number of runs */
+  private int runs;
+
+  /** The run of the last read, the next read being most likely in the same run */
+  private int lastRun;
+
+  /** @param capacity the number of values of the chunk */
+  public RunLengthIntegerChunk(final int capacity) {
+    this.capacity = capacity;
+    this.ends = new int[INITIAL_RUNS];
+    this.values = new int[INITIAL_RUNS];
+  }
+
+  @Override
+  public int capacity() {
+    return this.capacity;
+  }
+
+  /** @return the number of runs of the chunk */
+  public int getRunCount() {
+    return this.runs;
+  }
+
+  /** @return the number of bytes used by the runs */
+  public long sizeInBytes() {
+    return 2L * this.ends.length * Integer.BYTES;
+  }
+
+  /** @return the number of rows written, i.e. the end of the last run */
+  private int size() {
+    return this.runs == 0 ? 0 : this.ends[this.runs - 1];
+  }
+
+  /**
+   * @param position a row before {@link #size()}
+   * @return the run containing the row
+   */
+  private int findRun(final int position) {
+    final int last = this.lastRun;
+    if (last < this.runs
+        && position < this.ends[last]
+        && (last == 0 || position >= this.ends[last - 1])) {
+      return last;
+    }
+    int low = 0;
+    int high = this.runs - 1;
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      if (this.ends[middle] <= position) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    this.lastRun = low;
+    return low;
+  }
+
+  @Override
+  public int readInt(int position) {
+    assert 0 <= position && position < this.capacity;
+    if (position >= size()) {
+      return 0;
+    }
+    return this.values[findRun(position)];
+  }
+
+  @Override
+  public void writeInt(int position, int value) {
+    assert 0 <= position && position < this.capacity;
+    final int size = size();
+    if (position >= size) {
+      if (position > size) {
+        // The skipped rows are 0
+        append(position, 0);
+      }
+      append(position + 1, value);
+      return;
+    }
+
+    final int run = findRun(position);
+    final int old = this.values[run];
+    if (old == value) {
+      return;
+    }
+    final int start = run == 0 ? 0 : this.ends[run - 1];
+    final int end = this.ends[run];
+
+    // The runs replacing the run of the row: before the row, the row, after the row
+    final int[] newEnds = new int[3];
+    final int[] newValues = new int[3];
+    int count = 0;
+    int from = run;
+    int to = run + 1;
+    if (position > start) {
+      newEnds[count] = position;
+      newValues[count++] = old;
+    } else if (run > 0 && this.values[run - 1] == value) {
+      // The row extends the previous run
+      from = run - 1;
+    }
+    newEnds[count] = position + 1;
+    newValues[count++] = value;
+    if (position + 1 < end) {
+      newEnds[count] = end;
+      newValues[count++] = old;
+    } else if (run + 1 < this.runs && this.values[run + 1] == value) {
+      // The row extends the next run
+      newEnds[count - 1] = this.ends[run + 1];
+      to = run + 2;
+    }
+    splice(from, to, newEnds, newValues, count);
+  }
+
+  /**
+   * Adds rows at the end of the chunk.
+   *
+   * @param end the end of the added rows, exclusive
+   * @param value the value of the added rows
+   */
+  private void append(final int end, final int value) {
+    if (this.runs > 0 && this.values[this.runs - 1] == value) {
+      this.ends[this.runs - 1] = end;
+    } else {
+      ensureRunCapacity(this.runs + 1);
+      this.ends[this.runs] = end;
+      this.values[this.runs] = value;
+      this.runs++;
+    }
+  }
+
+  /**
+   * Replaces the runs {@code [from, to)} by new runs.
+   *
+   * @param from the first replaced run
+   * @param to the end of the replaced runs, exclusive
+   * @param newEnds the ends of the new runs
+   * @param newValues the values of the new runs
+   * @param count the number of new runs
+   */
+  private void splice(
+      final int from, final int to, final int[] newEnds, final int[] newValues, final int count) {
+    final int runs = this.runs - (to - from) + count;
+    ensureRunCapacity(runs);
+    System.arraycopy(this.ends, to, this.ends, from + count, this.runs - to);
+    System.arraycopy(this.values, to, this.values, from + count, this.runs - to);
+    System.arraycopy(newEnds, 0, this.ends, from, count);
+    System.arraycopy(newValues, 0, this.values, from, count);
+    this.runs = runs;
+    this.lastRun = from;
+  }
+
+  private void ensureRunCapacity(final int runs) {
+    if (runs > this.ends.length) {
+      final int length = Math.max(runs, 2 * this.ends.length);
+      this.ends = Arrays.copyOf(this.ends, length);
+      this.values = Arrays.copyOf(this.values, length);
+    }
+  }
+
+  @Override
+  public BitSet findRows(int value, int limit) {
+    assert limit <= this.capacity;
+    BitSet result = null;
+    int start = 0;
+    for (int r = 0; r < this.runs && start < limit; r++) {
+      final int end = this.ends[r];
+      if (this.values[r] == value) {
+        if (result == null) {
+          result = new BitSet(limit);
+        }
+        result.set(start, Math.min(end, limit));
+      }
+      start = end;
+    }
+    if (value == 0 && start < limit) {
+      // The rows that were never written
+      if (result == null) {
+        result = new BitSet(limit);
+      }
+      result.set(start, limit);
+    }
+    return result;
+  }
+
+  @Override
+  public boolean findRows(int value, int limit, long[] words, int wordOffset, Op op) {
+    assert limit <= this.capacity;
+    boolean any = false;
+    int start = 0;
+    for (int r = 0; r < this.runs && start < limit; r++) {
+      final int end = this.ends[r];
+      any |=
+          RowFinder.storeRange(
+              words, wordOffset, start, Math.min(end, limit), this.values[r] == value, op);
+      start = end;
+    }
+    if (start < limit) {
+      // The rows that were never written are 0
+      any |= RowFinder.storeRange(words, wordOffset, start, limit, value == 0, op);
+    }
+    return any;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import com.activeviam.UnsafeUtil;
+import com.activeviam.chunk.IntegerChunk.Op;
+
+/**
+ * {@link RowFinder} without branches on the result of the comparisons, so that its speed does not
+ * depend on the selectivity.
+ *
+ * <p>Off-heap values are read two at a time with a 64-bit load, and compared with SWAR (SIMD within
+ * a register) arithmetic. Arrays are compared one int at a time, which the JIT compiler may unroll.
+ *
+ * @author ActiveViam
+ */
+class ScalarRowFinder extends RowFinder {
+
+  private static final sun.misc.Unsafe UNSAFE = UnsafeUtil.getUnsafe();
+
+  /** The lowest bit of both 32-bit lanes of a long */
+  private static final long LOW_LANES = 0x0000_0001_0000_0001L;
+
+  /** The highest bit of both 32-bit lanes of a long */
+  private static final long HIGH_BITS = 0x8000_0000_8000_0000L;
+
+  @Override
+  public boolean findRows(
+      final int[] array,
+      final int value,
+      final int limit,
+      final long[] words,
+      final int wordOffset,
+      final Op op) {
+    boolean any = false;
+    for (int start = 0; start < limit; start += Long.SIZE) {
+      final int word = wordOffset + (start >>> 6);
+      if (op == Op.AND && words[word] == 0) {
+        // No row left to keep
+        continue;
+      }
+      final int count = Math.min(Long.SIZE, limit - start);
+      long matches = 0;
+      for (int i = 0; i < count; i++) {
+        matches |= equal(array[start + i], value) << i;
+      }
+      any |= store(words, word, matches, count, op);
+    }
+    return any;
+  }
+
+  @Override
+  public boolean findRows(
+      final long address,
+      final int value,
+      final int limit,
+      final long[] words,
+      final int wordOffset,
+      final Op op) {
+    // The searched value in both lanes of a long
+    final long pattern = (value & 0xFFFFFFFFL) * LOW_LANES;
+    boolean any = false;
+    for (int start = 0; start < limit; start += Long.SIZE) {
+      final int word = wordOffset + (start >>> 6);
+      if (op == Op.AND && words[word] == 0) {
+        // No row left to keep
+        continue;
+      }
+      final int count = Math.min(Long.SIZE, limit - start);
+      final long base = address + ((long) start << 2);
+      long matches = 0;
+      for (int p = 0; p < count >>> 1; p++) {
+        matches |= equalLanes(UNSAFE.getLong(base + ((long) p << 3)) ^ pattern) << (p << 1);
+      }
+      if ((count & 1) != 0) {
+        // The last row has no pair
+        matches |= equal(UNSAFE.getInt(base + ((long) (count - 1) << 2)), value) << (count - 1);
+      }
+      any |= store(words, word, matches, count, op);
+    }
+    return any;
+  }
+
+  /**
+   * @param x two ints XOR-ed with the searched value
+   * @return 2 bits, the lowest one set if the low lane is 0, the other if the high lane is 0
+   */
+  static long equalLanes(final long x) {
+    // The high bit of a lane is set iff the lane is not 0, without carries across lanes
+    final long nonZero = (((x & ~HIGH_BITS) + ~HIGH_BITS) | x) & HIGH_BITS;
+    final long zero = ~nonZero & HIGH_BITS;
+    return ((zero >>> 31) & 1) | (zero >>> 62);
+  }
+
+  /**
+   * Compares two ints without a branch, which the processor would mispredict for half of the rows
+   * at a selectivity of 50%.
+   *
+   * @return 1 if the ints are equal, else 0
+   */
+  static long equal(final int a, final int b) {
+    final int x = a ^ b;
+    // The sign bit of x | -x is set iff x is not 0
+    return ((x | -x) >>> 31) ^ 1;
+  }
+
+  @Override
+  public String toString() {
+    return "scalar";
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+/**
+ * This allocator allocates {@link SparseIntegerChunk sparse} chunks of zeros, which become dense
+ * chunks of another allocator once they hold too many other values.
+ *
+ * <p>Columns that are mostly 0 within a chunk, such as a rarely set measure, then only take memory
+ * for their other values.
+ *
+ * @author ActiveViam
+ */
+public class SparseChunkAllocator implements IChunkAllocator {
+
+  /** The allocator of the dense chunks */
+  protected final IChunkAllocator allocator;
+
+  /** The fraction of the rows that can differ from 0 before a chunk becomes dense */
+  protected final double maxDensity;
+
+  /**
+   * Constructor.
+   *
+   * @param allocator the allocator of the dense chunks
+   * @param maxDensity the fraction of the rows that can differ from 0 before a chunk becomes dense
+   */
+  public SparseChunkAllocator(final IChunkAllocator allocator, final double maxDensity) {
+    this.allocator = allocator;
+    this.maxDensity = maxDensity;
+  }
+
+  @Override
+  public IntegerChunk allocateIntergerChunk(int size) {
+    return new SparseIntegerChunk(size, 0, this.maxDensity, this.allocator);
+  }
+
+  @Override
+  public DoubleChunk allocateDoubleChunk(int size) {
+    return new SparseDoubleChunk(size, 0d, this.maxDensity, this.allocator);
+  }
+}
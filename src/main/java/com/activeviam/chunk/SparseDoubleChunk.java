@@ -0,0 +1,243 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import com.activeviam.platform.AccessPattern;
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * {@link DoubleChunk} of a default value, storing only the rows that differ from it.
+ *
+ * <p>Values are compared by their bits, so that {@code -0d} and {@code NaN} are stored as written.
+ * Once the exceptions exceed a fraction of the capacity, the chunk allocates a dense chunk with
+ * another allocator, copies its values into it and delegates all the accesses to it.
+ *
+ * @author ActiveViam
+ */
+public class SparseDoubleChunk implements DoubleChunk, Closeable {
+
+  /** Class logger. */
+  private static final Logger logger = Logger.getLogger("chunk");
+
+  /** The number of values of the chunk */
+  protected final int capacity;
+
+  /** The value of the rows that are not exceptions */
+  protected double defaultValue;
+
+  /** The bits of {@link #defaultValue} */
+  private long defaultBits;
+
+  /** The number of exceptions above which the chunk becomes dense */
+  protected final int maxExceptions;
+
+  /** The allocator of the dense chunk */
+  protected final IChunkAllocator allocator;
+
+  /** The sorted rows of the exceptions, null once dense */
+  private int[] rows;
+
+  /** The values of the exceptions, null once dense */
+  private double[] values;
+
+  /** The number of exceptions */
+  private int exceptions;
+
+  /** The chunk holding all the values once there are too many exceptions, null before */
+  private DoubleChunk dense;
+
+  /** The pinner locking the dense chunk in RAM, null if the chunk is not pinned */
+  volatile ChunkPinner pinner;
+
+  /**
+   * Constructor.
+   *
+   * @param capacity the number of values of the chunk
+   * @param defaultValue the value of the rows that are not exceptions
+   * @param maxDensity the fraction of the rows that can be exceptions before the chunk becomes
+   *     dense
+   * @param allocator the allocator of the dense chunk
+   */
+  public SparseDoubleChunk(
+      final int capacity,
+      final double defaultValue,
+      final double maxDensity,
+      final IChunkAllocator allocator) {
+    if (maxDensity < 0 || maxDensity > 1) {
+      throw new IllegalArgumentException("The density must be between 0 and 1, was " + maxDensity);
+    }
+    this.capacity = capacity;
+    this.defaultValue = defaultValue;
+    this.defaultBits = Double.doubleToRawLongBits(defaultValue);
+    this.maxExceptions = (int) (capacity * maxDensity);
+    this.allocator = allocator;
+    this.rows = new int[0];
+    this.values = new double[0];
+  }
+
+  @Override
+  public int capacity() {
+    return this.capacity;
+  }
+
+  /** @return the value of the rows that are not exceptions */
+  public double getDefaultValue() {
+    return this.defaultValue;
+  }
+
+  /**
+   * Changes the value of the rows that are not exceptions, while there is none.
+   *
+   * @param defaultValue the new value of the rows
+   */
+  protected void setDefaultValue(final double defaultValue) {
+    if (this.dense != null || this.exceptions > 0) {
+      throw new IllegalStateException("Cannot change the default value of a chunk with exceptions");
+    }
+    this.defaultValue = defaultValue;
+    this.defaultBits = Double.doubleToRawLongBits(defaultValue);
+  }
+
+  /** @return the number of rows that differ from the default value, while the chunk is sparse */
+  public int getExceptionCount() {
+    return this.exceptions;
+  }
+
+  /** @return true if the chunk has become dense */
+  public boolean isDense() {
+    return this.dense != null;
+  }
+
+  @Override
+  public double readDouble(int position) {
+    assert 0 <= position && position < this.capacity;
+    if (this.dense != null) {
+      return this.dense.readDouble(position);
+    }
+    final int index = Arrays.binarySearch(this.rows, 0, this.exceptions, position);
+    return index >= 0 ? this.values[index] : this.defaultValue;
+  }
+
+  @Override
+  public void writeDouble(int position, double value) {
+    assert 0 <= position && position < this.capacity;
+    if (this.dense != null) {
+      this.dense.writeDouble(position, value);
+      return;
+    }
+    final boolean isDefault = Double.doubleToRawLongBits(value) == this.defaultBits;
+    final int index = Arrays.binarySearch(this.rows, 0, this.exceptions, position);
+    if (index >= 0) {
+      if (isDefault) {
+        remove(index);
+      } else {
+        this.values[index] = value;
+      }
+    } else if (!isDefault) {
+      if (this.exceptions >= this.maxExceptions) {
+        promote();
+        this.dense.writeDouble(position, value);
+      } else {
+        insert(-index - 1, position, value);
+      }
+    }
+  }
+
+  private void insert(final int index, final int position, final double value) {
+    if (this.exceptions == this.rows.length) {
+      final int length = Math.min(this.maxExceptions, Math.max(4, 2 * this.rows.length));
+      this.rows = Arrays.copyOf(this.rows, length);
+      this.values = Arrays.copyOf(this.values, length);
+    }
+    System.arraycopy(this.rows, index, this.rows, index + 1, this.exceptions - index);
+    System.arraycopy(this.values, index, this.values, index + 1, this.exceptions - index);
+    this.rows[index] = position;
+    this.values[index] = value;
+    this.exceptions++;
+  }
+
+  private void remove(final int index) {
+    System.arraycopy(this.rows, index + 1, this.rows, index, this.exceptions - index - 1);
+    System.arraycopy(this.values, index + 1, this.values, index, this.exceptions - index - 1);
+    this.exceptions--;
+  }
+
+  /** Copies the values into a dense chunk, that serves all the next accesses. */
+  private void promote() {
+    final DoubleChunk dense = this.allocator.allocateDoubleChunk(this.capacity);
+    // The allocator may recycle chunks that are not zeroed
+    for (int i = 0; i < this.capacity; i++) {
+      dense.writeDouble(i, this.defaultValue);
+    }
+    for (int i = 0; i < this.exceptions; i++) {
+      dense.writeDouble(this.rows[i], this.values[i]);
+    }
+    final ChunkPinner pinner = this.pinner;
+    if (pinner != null && !pinner.pin(dense)) {
+      logger.warning("Cannot pin the dense chunk of a pinned sparse chunk");
+    }
+    this.dense = dense;
+    this.rows = null;
+    this.values = null;
+    this.exceptions = 0;
+  }
+
+  @Override
+  public void advise(final AccessPattern pattern) {
+    if (this.dense != null) {
+      this.dense.advise(pattern);
+    }
+  }
+
+  @Override
+  public double residency() {
+    return this.dense != null ? this.dense.residency() : 1d;
+  }
+
+  /**
+   * Pins the dense chunk, now if the chunk is dense, otherwise once it becomes dense.
+   *
+   * @param pinner the pinner
+   * @return true if the chunk is pinned
+   */
+  boolean pin(final ChunkPinner pinner) {
+    if (this.pinner != null) {
+      return this.pinner == pinner;
+    }
+    if (this.dense != null && !pinner.pin(this.dense)) {
+      return false;
+    }
+    this.pinner = pinner;
+    return true;
+  }
+
+  /**
+   * Unpins the dense chunk, if pinned by the given pinner.
+   *
+   * @param pinner the pinner
+   */
+  void unpin(final ChunkPinner pinner) {
+    if (this.pinner == pinner) {
+      this.pinner = null;
+      if (this.dense != null) {
+        pinner.unpin(this.dense);
+      }
+    }
+  }
+
+  /** Releases the dense chunk, if any. */
+  @Override
+  public void close() {
+    if (this.dense != null) {
+      this.allocator.release(this.dense);
+      this.dense = null;
+    }
+  }
+}
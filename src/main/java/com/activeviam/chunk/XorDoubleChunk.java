@@ -0,0 +1,314 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import com.activeviam.MemoryAllocator;
+import com.activeviam.UnsafeUtil;
+import com.activeviam.reference.MemoryAllocatorOnFile;
+import java.io.Closeable;
+import java.util.Arrays;
+
+/**
+ * Read-only {@link DoubleChunk} compressed by XOR-ing each value with the previous one, as in the
+ * Gorilla time series database, for the chunks that are not written anymore.
+ *
+ * <p>Consecutive values that are close share their sign, exponent and first bits of mantissa, so
+ * their XOR has long runs of leading and trailing zeros. Each value is stored as:
+ *
+ * <ul>
+ *   <li>{@code 0} when it is equal to the previous value,
+ *   <li>{@code 10} and the meaningful bits of the XOR, when they fit in the window of leading and
+ *       trailing zeros of the previous XOR,
+ *   <li>{@code 11}, the number of leading zeros on 5 bits, the number of meaningful bits on 6 bits,
+ *       and the meaningful bits, otherwise.
+ * </ul>
+ *
+ * <p>The encoding restarts every {@link #BLOCK_SIZE} values with a value stored on 64 bits, whose
+ * bit offset is kept, so that {@link #readDouble(int)} decodes at most one block. Whole columns are
+ * decoded block by block with {@link #decode(int, double[])}.
+ *
+ * @author ActiveViam
+ */
+public class XorDoubleChunk implements DoubleChunk, Closeable {
+
+  /** The number of values between two checkpoints */
+  public static final int BLOCK_SIZE = 64;
+
+  private static final int BLOCK_ORDER = Integer.numberOfTrailingZeros(BLOCK_SIZE);
+
+  /** The largest number of leading zeros that can be stored, on 5 bits */
+  private static final int MAX_LEADING_ZEROS = 31;
+
+  private static final sun.misc.Unsafe UNSAFE = UnsafeUtil.getUnsafe();
+
+  /** The number of values of the chunk */
+  private final int capacity;
+
+  /** The offset of the first bit of each block, relative to {@link #offset} */
+  private final long[] bitOffsets;
+
+  /** The array holding the encoded values, null when they are off-heap */
+  private final long[] words;
+
+  /** The address of the encoded values, or their offset in {@link #words} */
+  private final long offset;
+
+  /** The allocator of the encoded values when they are off-heap, null when they are on the heap */
+  private final MemoryAllocatorOnFile allocator;
+
+  /** The number of bytes of the encoded values */
+  private final long bytes;
+
+  /** Whether the off-heap memory was freed */
+  private boolean closed;
+
+  private XorDoubleChunk(
+      final int capacity,
+      final long[] bitOffsets,
+      final long[] encoded,
+      final MemoryAllocatorOnFile allocator) {
+    this.capacity = capacity;
+    this.bitOffsets = bitOffsets;
+    this.allocator = allocator;
+    if (allocator == null) {
+      this.words = encoded;
+      this.bytes = (long) encoded.length * Long.BYTES;
+      this.offset = sun.misc.Unsafe.ARRAY_LONG_BASE_OFFSET;
+    } else {
+      // The allocator works with whole pages
+      final long bytes = (long) encoded.length * Long.BYTES;
+      this.bytes =
+          (bytes + MemoryAllocator.PAGE_SIZE - 1)
+              / MemoryAllocator.PAGE_SIZE
+              * MemoryAllocator.PAGE_SIZE;
+      this.words = null;
+      this.offset = allocator.allocateMemory(this.bytes);
+      UNSAFE.copyMemory(encoded, sun.misc.Unsafe.ARRAY_LONG_BASE_OFFSET, null, this.offset, bytes);
+    }
+  }
+
+  /**
+   * Encodes the values of a chunk.
+   *
+   * @param chunk the chunk to encode
+   * @param allocator the allocator of the encoded values, null to store them on the heap
+   * @return the encoded chunk
+   */
+  public static XorDoubleChunk encode(
+      final DoubleChunk chunk, final MemoryAllocatorOnFile allocator) {
+    final int capacity = chunk.capacity();
+    final int blocks = (capacity + BLOCK_SIZE - 1) >>> BLOCK_ORDER;
+    final long[] bitOffsets = new long[blocks];
+    final BitWriter writer = new BitWriter(capacity);
+    for (int b = 0; b < blocks; b++) {
+      bitOffsets[b] = writer.size;
+      final int start = b << BLOCK_ORDER;
+      final int end = Math.min(capacity, start + BLOCK_SIZE);
+      long previous = Double.doubleToRawLongBits(chunk.readDouble(start));
+      writer.write(previous, Long.SIZE);
+      // No window before the first XOR of the block
+      int leading = Integer.MAX_VALUE;
+      int trailing = 0;
+      for (int i = start + 1; i < end; i++) {
+        final long bits = Double.doubleToRawLongBits(chunk.readDouble(i));
+        final long xor = bits ^ previous;
+        previous = bits;
+        if (xor == 0) {
+          writer.write(0, 1);
+          continue;
+        }
+        final int xorLeading = Math.min(Long.numberOfLeadingZeros(xor), MAX_LEADING_ZEROS);
+        final int xorTrailing = Long.numberOfTrailingZeros(xor);
+        if (xorLeading >= leading && xorTrailing >= trailing) {
+          writer.write(0b01, 2);
+          writer.write(xor >>> trailing, Long.SIZE - leading - trailing);
+        } else {
+          leading = xorLeading;
+          trailing = xorTrailing;
+          final int length = Long.SIZE - leading - trailing;
+          writer.write(0b11, 2);
+          writer.write(leading, 5);
+          // A length of 64 is stored as 0, as a XOR that is not 0 has at least one meaningful bit
+          writer.write(length & (Long.SIZE - 1), 6);
+          writer.write(xor >>> trailing, length);
+        }
+      }
+    }
+    return new XorDoubleChunk(capacity, bitOffsets, writer.toArray(), allocator);
+  }
+
+  /** Appends bits to an array of words, the first bits in the low bits of the first word. */
+  private static final class BitWriter {
+
+    private long[] words;
+
+    private long size;
+
+    private BitWriter(final int capacity) {
+      // Enough for values compressed by half
+      this.words = new long[Math.max(2, capacity / 2)];
+    }
+
+    private void write(final long value, final int bits) {
+      final int word = (int) (this.size >>> 6);
+      if (word + 1 >= this.words.length) {
+        this.words = Arrays.copyOf(this.words, 2 * this.words.length);
+      }
+      final int shift = (int) (this.size & 63);
+      final long masked = value & mask(bits);
+      this.words[word] |= masked << shift;
+      if (shift + bits > Long.SIZE) {
+        this.words[word + 1] |= masked >>> (Long.SIZE - shift);
+      }
+      this.size += bits;
+    }
+
+    private long[] toArray() {
+      // One more word, so that reading bits never reads past the end
+      return Arrays.copyOf(this.words, (int) ((this.size + 63) >>> 6) + 1);
+    }
+  }
+
+  /**
+   * @param bits a number of bits, from 1 to 64
+   * @return a mask of the lowest bits
+   */
+  private static long mask(final int bits) {
+    return -1L >>> (Long.SIZE - bits);
+  }
+
+  /**
+   * Reads bits.
+   *
+   * @param bit the offset of the first bit
+   * @param bits the number of bits, from 1 to 64
+   * @return the bits
+   */
+  private long read(final long bit, final int bits) {
+    final long address = this.offset + (bit >>> 6) * Long.BYTES;
+    final int shift = (int) (bit & 63);
+    // Both words are read, so that reading does not branch
+    final long low = UNSAFE.getLong(this.words, address) >>> shift;
+    final long high = (UNSAFE.getLong(this.words, address + Long.BYTES) << 1) << (63 - shift);
+    return (low | high) & mask(bits);
+  }
+
+  /**
+   * Decodes the first values of a block.
+   *
+   * @param block the block
+   * @param count the number of values to decode
+   * @param out receives the values if not null
+   * @return the raw bits of the last decoded value
+   */
+  private long decode(final int block, final int count, final double[] out) {
+    long bit = this.bitOffsets[block];
+    long value = read(bit, Long.SIZE);
+    bit += Long.SIZE;
+    if (out != null) {
+      out[0] = Double.longBitsToDouble(value);
+    }
+    int leading = 0;
+    int trailing = 0;
+    for (int i = 1; i < count; i++) {
+      final long control = read(bit, 2);
+      if ((control & 1) == 0) {
+        // Same value
+        bit++;
+      } else {
+        bit += 2;
+        if (control == 0b11) {
+          leading = (int) read(bit, 5);
+          final int length = (int) read(bit + 5, 6);
+          trailing = Long.SIZE - leading - (length == 0 ? Long.SIZE : length);
+          bit += 11;
+        }
+        final int length = Long.SIZE - leading - trailing;
+        value ^= read(bit, length) << trailing;
+        bit += length;
+      }
+      if (out != null) {
+        out[i] = Double.longBitsToDouble(value);
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Decodes the values of a block.
+   *
+   * @param block the block
+   * @param out receives the values, at least {@link #BLOCK_SIZE} long
+   * @return the number of values of the block
+   */
+  public int decode(final int block, final double[] out) {
+    final int count = Math.min(BLOCK_SIZE, this.capacity - (block << BLOCK_ORDER));
+    decode(block, count, out);
+    return count;
+  }
+
+  /** @return the number of blocks of the chunk */
+  public int getBlockCount() {
+    return this.bitOffsets.length;
+  }
+
+  /**
+   * Sums the first values of the chunk, decoding them block by block.
+   *
+   * @param limit the number of values to sum
+   * @return the sum
+   */
+  public double sum(final int limit) {
+    assert limit <= this.capacity;
+    final double[] buffer = new double[BLOCK_SIZE];
+    double sum = 0;
+    final int blocks = (limit + BLOCK_SIZE - 1) >>> BLOCK_ORDER;
+    for (int b = 0; b < blocks; b++) {
+      final int count = Math.min(decode(b, buffer), limit - (b << BLOCK_ORDER));
+      for (int i = 0; i < count; i++) {
+        sum += buffer[i];
+      }
+    }
+    return sum;
+  }
+
+  @Override
+  public int capacity() {
+    return this.capacity;
+  }
+
+  /** @return the number of bytes used by the chunk, its checkpoints included */
+  public long sizeInBytes() {
+    return this.bytes + (long) this.bitOffsets.length * Long.BYTES;
+  }
+
+  @Override
+  public double readDouble(int position) {
+    assert 0 <= position && position < this.capacity;
+    return Double.longBitsToDouble(
+        decode(position >>> BLOCK_ORDER, (position & (BLOCK_SIZE - 1)) + 1, null));
+  }
+
+  @Override
+  public void writeDouble(int position, double value) {
+    throw new UnsupportedOperationException("Cannot write into a sealed chunk");
+  }
+
+  /** @return true if the encoded values are stored in a file rather than on the heap */
+  public boolean isOffHeap() {
+    return this.allocator != null;
+  }
+
+  @Override
+  public void close() {
+    if (this.allocator != null && !this.closed) {
+      this.closed = true;
+      this.allocator.freeMemory(this.offset, this.bytes);
+    }
+  }
+}
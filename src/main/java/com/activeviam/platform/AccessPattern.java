@@ -0,0 +1,58 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.platform;
+
+/**
+ * How a range of mapped memory is going to be accessed, given to the kernel with {@link
+ * LinuxPlatform#madvise(long, long, AccessPattern)} to tune its readahead and its reclaim.
+ *
+ * <p>{@link #NORMAL}, {@link #RANDOM} and {@link #SEQUENTIAL} are properties of the mapping: giving
+ * them to a part of a mapping splits it in several areas, that count towards
+ * <i>vm.max_map_count</i>. The other patterns act once on the pages currently in the range.
+ *
+ * @author ActiveViam
+ */
+public enum AccessPattern {
+
+  /** No particular pattern, the default readahead. */
+  NORMAL(CLibrary.MADV_NORMAL, true),
+
+  /** Pages are accessed in random order: no readahead. */
+  RANDOM(CLibrary.MADV_RANDOM, true),
+
+  /** Pages are accessed in order, once: aggressive readahead, pages dropped soon after reading. */
+  SEQUENTIAL(CLibrary.MADV_SEQUENTIAL, true),
+
+  /** Pages will be accessed soon: they are read ahead now. */
+  WILLNEED(CLibrary.MADV_WILLNEED, false),
+
+  /** Pages will not be accessed for a while: they are reclaimed first under memory pressure. */
+  COLD(CLibrary.MADV_COLD, false),
+
+  /** Pages will not be accessed for a while: they are reclaimed now. */
+  PAGEOUT(CLibrary.MADV_PAGEOUT, false);
+
+  /** The MADV_* value */
+  final int advice;
+
+  /** true if the pattern stays attached to the memory, false if it acts once */
+  private final boolean sticky;
+
+  AccessPattern(final int advice, final boolean sticky) {
+    this.advice = advice;
+    this.sticky = sticky;
+  }
+
+  /**
+   * @return true if the pattern stays attached to the memory until another sticky pattern is given,
+   *     false if it only acts on the pages when it is given
+   */
+  public boolean isSticky() {
+    return this.sticky;
+  }
+}
@@ -0,0 +1,316 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.platform;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The block device storing a directory, with the properties of its request queue read from {@code
+ * /sys/block/<dev>/queue}, and the settings they recommend for the memory mapped on its files.
+ *
+ * @author ActiveViam
+ */
+public class BlockDevice {
+
+  /** Class logger. */
+  private static final Logger LOGGER = Logger.getLogger("platform");
+
+  /** The block devices by number, linking to their directory in sysfs */
+  protected static final String DEVICES_PATH = "/sys/dev/block";
+
+  /** The block devices by name */
+  protected static final String DEVICE_NAMES_PATH = "/sys/class/block";
+
+  /** The mounts of the process */
+  protected static final String MOUNT_INFO_PATH = "/proc/self/mountinfo";
+
+  /** The name of the device, e.g. {@code nvme0n1} */
+  protected final String name;
+
+  /** The smallest unit the device can address, in bytes */
+  protected final int logicalBlockSize;
+
+  /** The smallest unit the device writes without a read-modify-write, in bytes */
+  protected final int physicalBlockSize;
+
+  /** The largest request the kernel sends to the device, in KB */
+  protected final int maxSectorsKb;
+
+  /** The number of requests the kernel queues for the device */
+  protected final int nrRequests;
+
+  /** The readahead of the device, in KB */
+  protected final int readAheadKb;
+
+  /** Whether the device is a spinning disk */
+  protected final boolean rotational;
+
+  /**
+   * Constructor.
+   *
+   * @param name the name of the device
+   * @param logicalBlockSize the smallest unit the device can address, in bytes
+   * @param physicalBlockSize the smallest unit the device writes without a read-modify-write
+   * @param maxSectorsKb the largest request the kernel sends to the device, in KB
+   * @param nrRequests the number of requests the kernel queues for the device
+   * @param readAheadKb the readahead of the device, in KB
+   * @param rotational whether the device is a spinning disk
+   */
+  public BlockDevice(
+      final String name,
+      final int logicalBlockSize,
+      final int physicalBlockSize,
+      final int maxSectorsKb,
+      final int nrRequests,
+      final int readAheadKb,
+      final boolean rotational) {
+    this.name = name;
+    this.logicalBlockSize = logicalBlockSize;
+    this.physicalBlockSize = physicalBlockSize;
+    this.maxSectorsKb = maxSectorsKb;
+    this.nrRequests = nrRequests;
+    this.readAheadKb = readAheadKb;
+    this.rotational = rotational;
+  }
+
+  /**
+   * Finds the block device storing a file or a directory.
+   *
+   * @param path an existing file or directory
+   * @return the device, null if the path is not stored on a block device, e.g. on a tmpfs, or if
+   *     the device cannot be found
+   */
+  public static BlockDevice probe(final Path path) {
+    try {
+      Path device = null;
+      final Object dev = Files.getAttribute(path, "unix:dev");
+      if (dev instanceof Long) {
+        device = findDevice(major((Long) dev) + ":" + minor((Long) dev));
+      }
+      if (device == null) {
+        // File systems on several devices, e.g. btrfs, have an anonymous device number
+        device = findMountedDevice(path.toRealPath());
+      }
+      return device == null ? null : read(device);
+    } catch (IOException | RuntimeException e) {
+      LOGGER.log(Level.FINE, "Cannot find the block device of " + path, e);
+      return null;
+    }
+  }
+
+  /**
+   * @param number the number of a device, as {@code major:minor}
+   * @return the directory of the device in sysfs, null if it is not a block device
+   */
+  protected static Path findDevice(final String number) throws IOException {
+    final Path device = Path.of(DEVICES_PATH, number);
+    return Files.exists(device) ? device.toRealPath() : null;
+  }
+
+  /**
+   * Finds the device mounted on the longest mount point containing a path.
+   *
+   * @param path a real path
+   * @return the directory of the device in sysfs, null if unknown
+   */
+  protected static Path findMountedDevice(final Path path) throws IOException {
+    final List<String> mounts = Files.readAllLines(Path.of(MOUNT_INFO_PATH));
+    String bestMountPoint = null;
+    String bestNumber = null;
+    String bestSource = null;
+    for (final String mount : mounts) {
+      // 28 1 254:0 / / rw,relatime - ext4 /dev/vda rw
+      final String[] fields = mount.split(" ");
+      final String mountPoint = fields[4];
+      if (path.startsWith(mountPoint)
+          && (bestMountPoint == null || mountPoint.length() >= bestMountPoint.length())) {
+        bestMountPoint = mountPoint;
+        bestNumber = fields[2];
+        final int separator = mount.indexOf(" - ");
+        final String[] fsFields = mount.substring(separator + 3).split(" ");
+        bestSource = fsFields.length > 1 ? fsFields[1] : null;
+      }
+    }
+    if (bestNumber == null) {
+      return null;
+    }
+    final Path device = findDevice(bestNumber);
+    if (device != null) {
+      return device;
+    }
+    if (bestSource != null && bestSource.startsWith("/dev/")) {
+      final Path named = Path.of(DEVICE_NAMES_PATH, Path.of(bestSource).getFileName().toString());
+      return Files.exists(named) ? named.toRealPath() : null;
+    }
+    return null;
+  }
+
+  /**
+   * Reads the properties of a device. The queue of a partition is the one of its disk.
+   *
+   * @param device the directory of the device in sysfs
+   * @return the device
+   */
+  protected static BlockDevice read(Path device) throws IOException {
+    if (Files.exists(device.resolve("partition"))) {
+      device = device.getParent();
+    }
+    final Path queue = device.resolve("queue");
+    if (!Files.isDirectory(queue)) {
+      return null;
+    }
+    return new BlockDevice(
+        device.getFileName().toString(),
+        readInt(queue, "logical_block_size"),
+        readInt(queue, "physical_block_size"),
+        readInt(queue, "max_sectors_kb"),
+        readInt(queue, "nr_requests"),
+        readInt(queue, "read_ahead_kb"),
+        readInt(queue, "rotational") == 1);
+  }
+
+  private static int readInt(final Path queue, final String property) throws IOException {
+    return Integer.parseInt(Files.readString(queue.resolve(property)).trim());
+  }
+
+  /**
+   * @param dev a device number, as returned by {@code stat}
+   * @return the major number of the device
+   */
+  static long major(final long dev) {
+    return ((dev >>> 8) & 0xfff) | ((dev >>> 32) & ~0xfffL);
+  }
+
+  /**
+   * @param dev a device number, as returned by {@code stat}
+   * @return the minor number of the device
+   */
+  static long minor(final long dev) {
+    return (dev & 0xff) | ((dev >>> 12) & ~0xffL);
+  }
+
+  /** @return the name of the device */
+  public String getName() {
+    return this.name;
+  }
+
+  /** @return the smallest unit the device can address, in bytes */
+  public int getLogicalBlockSize() {
+    return this.logicalBlockSize;
+  }
+
+  /** @return the smallest unit the device writes without a read-modify-write, in bytes */
+  public int getPhysicalBlockSize() {
+    return this.physicalBlockSize;
+  }
+
+  /** @return the largest request the kernel sends to the device, in bytes */
+  public long getMaxRequestSize() {
+    return this.maxSectorsKb * 1024L;
+  }
+
+  /** @return the number of requests the kernel queues for the device */
+  public int getQueueDepth() {
+    return this.nrRequests;
+  }
+
+  /** @return the readahead of the device, in bytes */
+  public long getReadAhead() {
+    return this.readAheadKb * 1024L;
+  }
+
+  /** @return true if the device is a spinning disk */
+  public boolean isRotational() {
+    return this.rotational;
+  }
+
+  /**
+   * The recommended granularity of the allocations stored on the device: a page, or a physical
+   * block of the device if larger, so that writing back an allocation never reads a block first.
+   *
+   * @param pageSize the size of a page of memory
+   * @return the granularity, a multiple of {@code pageSize}
+   */
+  public long getAllocationGranularity(final long pageSize) {
+    return Math.max(1, (this.physicalBlockSize + pageSize - 1) / pageSize) * pageSize;
+  }
+
+  /**
+   * The advice for memory scanned from start to end. {@link AccessPattern#SEQUENTIAL} doubles the
+   * readahead, which pays off when the readahead does not fill the largest request of the device,
+   * or when each request costs a seek.
+   *
+   * @return the advice for scans
+   */
+  public AccessPattern getScanPattern() {
+    return this.rotational || this.readAheadKb < this.maxSectorsKb
+        ? AccessPattern.SEQUENTIAL
+        : AccessPattern.NORMAL;
+  }
+
+  /**
+   * The advice for memory read at random positions. Reading ahead costs little on a spinning disk,
+   * whose requests are dominated by the seek, but wastes the bandwidth and the cache of a solid
+   * state drive.
+   *
+   * @return the advice for lookups
+   */
+  public AccessPattern getLookupPattern() {
+    return this.rotational ? AccessPattern.NORMAL : AccessPattern.RANDOM;
+  }
+
+  /**
+   * The number of threads worth prefaulting a range of memory mapped on the device: one for a
+   * spinning disk, else enough to keep the queue of the device busy with requests of the largest
+   * size, within the number of processors.
+   *
+   * @param bytes the size of the range
+   * @param processors the number of processors available
+   * @return the parallelism to give to {@code MemoryAllocator#prefault}
+   */
+  public int getPrefaultParallelism(final long bytes, final int processors) {
+    if (this.rotational) {
+      return 1;
+    }
+    final long requests = Math.max(1, (bytes + getMaxRequestSize() - 1) / getMaxRequestSize());
+    return (int) Math.max(1, Math.min(requests, Math.min(this.nrRequests, processors)));
+  }
+
+  /** @return a description of the device and of the settings it recommends */
+  public String report(final long pageSize) {
+    return "Block device "
+        + this.name
+        + (this.rotational ? " (rotational)" : " (solid state)")
+        + ": logical block="
+        + this.logicalBlockSize
+        + "B, physical block="
+        + this.physicalBlockSize
+        + "B, max request="
+        + this.maxSectorsKb
+        + "KB, queue depth="
+        + this.nrRequests
+        + ", readahead="
+        + this.readAheadKb
+        + "KB. Recommended: allocation granularity="
+        + getAllocationGranularity(pageSize)
+        + "B, scans="
+        + getScanPattern()
+        + ", lookups="
+        + getLookupPattern();
+  }
+
+  @Override
+  public String toString() {
+    return this.name;
+  }
+}
@@ -107,6 +107,9 @@ interface CLibrary extends Library {
   static final int MADV_DONTDUMP = 16;
   static final int MADV_DODUMP = 17; /* Clear the MADV_NODUMP flag */
 
+  static final int MADV_COLD = 20; /* deactivate these pages (since Linux 5.4) */
+  static final int MADV_PAGEOUT = 21; /* reclaim these pages (since Linux 5.4) */
+
   /**
    * mmap() creates a new mapping in the virtual address space of the calling process. The starting
    * address for the new mapping is specified in addr. The length argument specifies the length of
@@ -365,6 +368,7 @@ interface CLibrary extends Library {
   static final int OPEN_O_CLOEXEC = 0x02000000; /* set close_on_exec */
   static final int OPEN_O_LARGEFILE = 0x00100000;
   static final int OPEN_O_TMPFILE = 0x020000000;
+  static final int OPEN_O_DIRECT = 0x00004000; /* direct disk access hint */
 
   /**
    * Given a {@code pathName} for a file, this method returns a file descriptor, a small,
@@ -387,10 +391,127 @@ interface CLibrary extends Library {
   // http://man7.org/linux/man-pages/man2/close.2.html
   int close(int fd);
 
+  /**
+   * Transfers all modified in-core data of the file referred to by the file descriptor to the disk
+   * device, so that all changed information can be retrieved even after the system crashed or was
+   * rebooted.
+   *
+   * @param fd a file descriptor
+   * @return 0 on success, -1 on failure.
+   */
+  // http://man7.org/linux/man-pages/man2/fsync.2.html
+  // int fsync(int fd);
+  int fsync(int fd);
+
   static final int FALLOCATE_FALLOC_FL_KEEP_SIZE = 0x01; /* default is extend size */
   static final int FALLOCATE_FALLOC_FL_PUNCH_HOLE = 0x02; /* de-allocates range */
 
   // http://man7.org/linux/man-pages/man2/fallocate.2.html
   // int fallocate(int fd, int mode, off_t offset, off_t len);
   int fallocate(int fd, int mode, long offset, long len);
+
+  /**
+   * Reads up to {@code count} bytes from the file descriptor at the given offset into the buffer.
+   * The file offset is not changed.
+   *
+   * @param fd a file descriptor
+   * @param buf the address of the buffer
+   * @param count the number of bytes to read
+   * @param offset the offset in the file
+   * @return the number of bytes read, 0 at the end of the file, -1 on failure.
+   */
+  // http://man7.org/linux/man-pages/man2/pread.2.html
+  // ssize_t pread(int fd, void *buf, size_t count, off_t offset);
+  long pread(int fd, long buf, long count, long offset);
+
+  /**
+   * Writes up to {@code count} bytes from the buffer to the file descriptor at the given offset.
+   * The file offset is not changed.
+   *
+   * @param fd a file descriptor
+   * @param buf the address of the buffer
+   * @param count the number of bytes to write
+   * @param offset the offset in the file
+   * @return the number of bytes written, -1 on failure.
+   */
+  // http://man7.org/linux/man-pages/man2/pwrite.2.html
+  // ssize_t pwrite(int fd, const void *buf, size_t count, off_t offset);
+  long pwrite(int fd, long buf, long count, long offset);
+
+  /**
+   * Tells whether the pages of a range of memory are resident in RAM, i.e. whether accessing them
+   * would not cause a disk access.
+   *
+   * @param addr the address of the range, aligned on a page
+   * @param length the length of the range
+   * @param vec receives one byte per page of the range, whose least significant bit is set if the
+   *     page is resident
+   * @return 0 on success, -1 on failure.
+   */
+  // http://man7.org/linux/man-pages/man2/mincore.2.html
+  // int mincore(void *addr, size_t length, unsigned char *vec);
+  int mincore(long addr, long length, byte[] vec);
+
+  /**
+   * Locks the pages of a range of memory in RAM, preventing them from being paged out. The pages
+   * that are not resident yet are faulted in.
+   *
+   * @param addr the address of the range
+   * @param len the length of the range
+   * @return 0 on success, -1 on failure.
+   */
+  // http://man7.org/linux/man-pages/man2/mlock.2.html
+  // int mlock(const void *addr, size_t len);
+  int mlock(long addr, long len);
+
+  /**
+   * Unlocks the pages of a range of memory, so that they can be paged out again.
+   *
+   * @param addr the address of the range
+   * @param len the length of the range
+   * @return 0 on success, -1 on failure.
+   */
+  // int munlock(const void *addr, size_t len);
+  int munlock(long addr, long len);
+
+  // From /usr/include/asm-generic/resource.h
+  static final int RLIMIT_MEMLOCK = 8; /* max locked-in-memory address space */
+  static final long RLIM_INFINITY = -1L;
+
+  /**
+   * Gets the soft and hard limits of a resource of the process.
+   *
+   * @param resource the resource, e.g. {@link #RLIMIT_MEMLOCK}
+   * @param rlim receives the soft limit then the hard limit, {@link #RLIM_INFINITY} if unlimited
+   * @return 0 on success, -1 on failure.
+   */
+  // http://man7.org/linux/man-pages/man2/getrlimit.2.html
+  // int getrlimit(int resource, struct rlimit *rlim);
+  int getrlimit(int resource, long[] rlim);
+
+  /** The number of CPUs in a {@code cpu_set_t}, from /usr/include/bits/cpu-set.h */
+  static final int CPU_SETSIZE = 1024;
+
+  /**
+   * Restricts a thread to run on a set of CPUs.
+   *
+   * @param pid the id of the thread, 0 for the calling thread
+   * @param cpusetsize the size of the mask, in bytes
+   * @param mask the set of CPUs, CPU {@code i} being the bit {@code i % 64} of {@code mask[i / 64]}
+   * @return 0 on success, -1 on failure.
+   */
+  // http://man7.org/linux/man-pages/man2/sched_setaffinity.2.html
+  // int sched_setaffinity(pid_t pid, size_t cpusetsize, const cpu_set_t *mask);
+  int sched_setaffinity(int pid, long cpusetsize, long[] mask);
+
+  /**
+   * Gets the set of CPUs a thread can run on.
+   *
+   * @param pid the id of the thread, 0 for the calling thread
+   * @param cpusetsize the size of the mask, in bytes
+   * @param mask receives the set of CPUs, as for {@link #sched_setaffinity(int, long, long[])}
+   * @return 0 on success, -1 on failure.
+   */
+  // int sched_getaffinity(pid_t pid, size_t cpusetsize, cpu_set_t *mask);
+  int sched_getaffinity(int pid, long cpusetsize, long[] mask);
 }
@@ -0,0 +1,147 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.platform;
+
+import com.sun.jna.Native;
+
+/**
+ * {@link CLibrary} calling the C library through JNA direct mapping.
+ *
+ * <p>The methods of an interface library go through a reflection proxy that boxes the arguments
+ * into an {@code Object[]} at each call. The static natives registered with {@link
+ * Native#register(Class, String)} are called like any JNI method instead, which is several times
+ * faster. The errno of the calls is preserved just the same, and read with {@link
+ * SaferNative#getLastError()}.
+ *
+ * <p>Only the calls of the memory and file hot paths are mapped directly. The others go through the
+ * interface library, which does not require all its functions to exist.
+ *
+ * @author ActiveViam
+ */
+// Package private
+final class DirectCLibrary implements CLibrary {
+
+  /** The interface library, serving the calls that are not mapped directly */
+  private final CLibrary fallback;
+
+  private DirectCLibrary(final CLibrary fallback) {
+    this.fallback = fallback;
+  }
+
+  /**
+   * Registers the direct mappings of the C library.
+   *
+   * @param fallback the interface library, serving the calls that are not mapped directly
+   * @return the C library with its hot calls mapped directly
+   * @throws UnsatisfiedLinkError if the C library or one of the functions cannot be found
+   */
+  static CLibrary create(final CLibrary fallback) {
+    Native.register(Natives.class, LIBRARY_NAME);
+    return new DirectCLibrary(fallback);
+  }
+
+  /** The functions mapped directly, with the names of the C library */
+  private static final class Natives {
+
+    private Natives() {}
+
+    static native long mmap(long addr, long length, int prot, int flags, int fd, long offset);
+
+    static native int munmap(long addr, long length);
+
+    static native int madvise(long addr, long length, int advice);
+
+    static native int fallocate(int fd, int mode, long offset, long len);
+
+    static native long pread(int fd, long buf, long count, long offset);
+
+    static native long pwrite(int fd, long buf, long count, long offset);
+
+    static native int mincore(long addr, long length, byte[] vec);
+  }
+
+  @Override
+  public long mmap(long addr, long length, int prot, int flags, int fd, long offset) {
+    return Natives.mmap(addr, length, prot, flags, fd, offset);
+  }
+
+  @Override
+  public int munmap(long addr, long length) {
+    return Natives.munmap(addr, length);
+  }
+
+  @Override
+  public int madvise(long addr, long length, int advice) {
+    return Natives.madvise(addr, length, advice);
+  }
+
+  @Override
+  public int fallocate(int fd, int mode, long offset, long len) {
+    return Natives.fallocate(fd, mode, offset, len);
+  }
+
+  @Override
+  public long pread(int fd, long buf, long count, long offset) {
+    return Natives.pread(fd, buf, count, offset);
+  }
+
+  @Override
+  public long pwrite(int fd, long buf, long count, long offset) {
+    return Natives.pwrite(fd, buf, count, offset);
+  }
+
+  @Override
+  public int mincore(long addr, long length, byte[] vec) {
+    return Natives.mincore(addr, length, vec);
+  }
+
+  @Override
+  public int getpagesizes(long[] pagesize, int nelem) {
+    return this.fallback.getpagesizes(pagesize, nelem);
+  }
+
+  @Override
+  public int open(String pathName, int flags) {
+    return this.fallback.open(pathName, flags);
+  }
+
+  @Override
+  public int close(int fd) {
+    return this.fallback.close(fd);
+  }
+
+  @Override
+  public int fsync(int fd) {
+    return this.fallback.fsync(fd);
+  }
+
+  @Override
+  public int mlock(long addr, long len) {
+    return this.fallback.mlock(addr, len);
+  }
+
+  @Override
+  public int munlock(long addr, long len) {
+    return this.fallback.munlock(addr, len);
+  }
+
+  @Override
+  public int getrlimit(int resource, long[] rlim) {
+    return this.fallback.getrlimit(resource, rlim);
+  }
+
+  @Override
+  public int sched_setaffinity(int pid, long cpusetsize, long[] mask) {
+    return this.fallback.sched_setaffinity(pid, cpusetsize, mask);
+  }
+
+  @Override
+  public int sched_getaffinity(int pid, long cpusetsize, long[] mask) {
+    return this.fallback.sched_getaffinity(pid, cpusetsize, mask);
+  }
+}
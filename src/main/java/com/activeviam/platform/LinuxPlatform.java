@@ -9,15 +9,19 @@ package com.activeviam.platform;
 
 import com.sun.jna.Library;
 import com.sun.jna.Platform;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 import sun.misc.Unsafe;
 
 public class LinuxPlatform {
@@ -64,6 +68,12 @@ public class LinuxPlatform {
   /** The kernel pretends there is always enough memory until it actually runs out. */
   protected static final int OVERCOMMIT_MEMORY_UNLIMITED = 1;
 
+  /**
+   * The property to set to {@code false} to call the C library through its interface library only,
+   * without the direct mappings of {@link DirectCLibrary}.
+   */
+  public static final String DIRECT_MAPPING_PROPERTY = "activeviam.platform.directMapping";
+
   /** Supported page sizes sorted in ascending order */
   protected final long[] pageSizes;
 
@@ -93,6 +103,15 @@ public class LinuxPlatform {
       LOGGER.log(Level.CONFIG, "We were unable to load the C library.", e);
     }
 
+    if (cLib != null && Boolean.parseBoolean(System.getProperty(DIRECT_MAPPING_PROPERTY, "true"))) {
+      try {
+        cLib = DirectCLibrary.create(cLib);
+        LOGGER.config("The hot calls to the C library are directly mapped.");
+      } catch (UnsatisfiedLinkError | IllegalArgumentException e) {
+        LOGGER.log(Level.CONFIG, "Calling the C library through its interface library.", e);
+      }
+    }
+
     try {
       hugetlbfsLib = SaferNative.loadLibrary("hugetlbfs", HugetlbfsLib.class);
       LOGGER.config("The hugetlbfs library was successfully loaded.");
@@ -129,6 +148,91 @@ public class LinuxPlatform {
     return Runtime.getRuntime().availableProcessors();
   }
 
+  /** @return the CPU the calling thread is running on, -1 if unknown */
+  public int getCurrentCpu() {
+    return pthreadLib != null ? pthreadLib.sched_getcpu() : -1;
+  }
+
+  /** @return the CPUs the calling thread is allowed to run on */
+  public BitSet getAffinity() {
+    final long[] mask = new long[CLibrary.CPU_SETSIZE / Long.SIZE];
+    if (cLib.sched_getaffinity(0, mask.length * Long.BYTES, mask) != 0) {
+      Errno.throwLastError("sched_getaffinity", 0);
+    }
+    return BitSet.valueOf(mask);
+  }
+
+  /**
+   * Restricts the calling thread to run on a set of CPUs.
+   *
+   * @param cpus the CPUs, among the ones allowed to the process
+   */
+  public void setAffinity(BitSet cpus) {
+    final long[] mask = Arrays.copyOf(cpus.toLongArray(), CLibrary.CPU_SETSIZE / Long.SIZE);
+    if (cLib.sched_setaffinity(0, mask.length * Long.BYTES, mask) != 0) {
+      Errno.throwLastError("sched_setaffinity", 0, cpus);
+    }
+  }
+
+  /**
+   * Lists the CPUs of each NUMA node of the machine, from {@value #NUMA_NODES_PATH}.
+   *
+   * @return the CPUs of the nodes that have some, by node. A single node with the CPUs of the
+   *     calling thread if the kernel does not expose the NUMA topology.
+   */
+  public List<BitSet> getNumaNodes() {
+    final List<BitSet> nodes = new ArrayList<>();
+    final Path dir = Path.of(NUMA_NODES_PATH);
+    try (final Stream<Path> files = Files.list(dir)) {
+      final int[] ids =
+          files
+              .map(f -> f.getFileName().toString())
+              .filter(name -> name.matches("node\\d+"))
+              .mapToInt(name -> Integer.parseInt(name.substring("node".length())))
+              .sorted()
+              .toArray();
+      for (final int id : ids) {
+        final BitSet cpus = parseCpuList(Files.readString(dir.resolve("node" + id + "/cpulist")));
+        if (!cpus.isEmpty()) {
+          nodes.add(cpus);
+        }
+      }
+    } catch (IOException e) {
+      LOGGER.log(Level.FINE, "Cannot read the NUMA topology from " + dir, e);
+    }
+    if (nodes.isEmpty()) {
+      nodes.add(getAffinity());
+    }
+    return nodes;
+  }
+
+  /** Directory of the NUMA nodes in sysfs */
+  protected static final String NUMA_NODES_PATH = "/sys/devices/system/node";
+
+  /**
+   * Parses a list of CPUs as written by the kernel, like {@code 0-3,8-11}.
+   *
+   * @param cpuList the list
+   * @return the CPUs of the list
+   */
+  public static BitSet parseCpuList(String cpuList) {
+    final BitSet cpus = new BitSet();
+    for (final String range : cpuList.trim().split(",")) {
+      if (range.isEmpty()) {
+        continue;
+      }
+      final int dash = range.indexOf('-');
+      if (dash < 0) {
+        cpus.set(Integer.parseInt(range));
+      } else {
+        cpus.set(
+            Integer.parseInt(range.substring(0, dash)),
+            Integer.parseInt(range.substring(dash + 1)) + 1);
+      }
+    }
+    return cpus;
+  }
+
   public void munmap(long ptr, long size) {
     if (cLib == null) {
       throw new RuntimeException(
@@ -252,6 +356,84 @@ public class LinuxPlatform {
     return cLib.open(path, CLibrary.OPEN_O_RDWR);
   }
 
+  public int openFileReadOnly(String path) {
+    final int fd = cLib.open(path, CLibrary.OPEN_O_RDONLY);
+    if (fd < 0) {
+      Errno.throwLastError("open", path, CLibrary.OPEN_O_RDONLY);
+    }
+    return fd;
+  }
+
+  /**
+   * Opens a file for reading and writing, bypassing the page cache when the file system supports
+   * it.
+   *
+   * <p>With O_DIRECT, the buffers, offsets and lengths of {@link #pread} and {@link #pwrite} must
+   * be aligned on the logical block size of the device. File systems without direct I/O, such as
+   * tmpfs, refuse the flag: the file is then opened with the page cache.
+   *
+   * @param path the path of the file
+   * @return the file descriptor
+   */
+  public int openFileDirect(String path) {
+    int fd = cLib.open(path, CLibrary.OPEN_O_RDWR | CLibrary.OPEN_O_DIRECT);
+    if (fd < 0 && SaferNative.getLastError() == Errno.EINVAL) {
+      LOGGER.warning("Direct I/O is not supported for " + path + ", using the page cache");
+      fd = cLib.open(path, CLibrary.OPEN_O_RDWR);
+    }
+    if (fd < 0) {
+      Errno.throwLastError("open", path, CLibrary.OPEN_O_RDWR | CLibrary.OPEN_O_DIRECT);
+    }
+    return fd;
+  }
+
+  /**
+   * Reads bytes of a file into memory, retrying until all of them are read.
+   *
+   * @param fd the file descriptor
+   * @param address the address of the memory to fill
+   * @param bytes the number of bytes to read
+   * @param offset the offset in the file
+   */
+  public void pread(int fd, long address, long bytes, long offset) {
+    long done = 0;
+    while (done < bytes) {
+      final long result = cLib.pread(fd, address + done, bytes - done, offset + done);
+      if (result < 0) {
+        if (SaferNative.getLastError() == Errno.EINTR) {
+          continue;
+        }
+        Errno.throwLastError("pread", fd, address + done, bytes - done, offset + done);
+      } else if (result == 0) {
+        throw new IllegalStateException(
+            "Unexpected end of file reading " + bytes + " bytes at " + offset + " in " + fd);
+      }
+      done += result;
+    }
+  }
+
+  /**
+   * Writes bytes of memory into a file, retrying until all of them are written.
+   *
+   * @param fd the file descriptor
+   * @param address the address of the memory to write
+   * @param bytes the number of bytes to write
+   * @param offset the offset in the file
+   */
+  public void pwrite(int fd, long address, long bytes, long offset) {
+    long done = 0;
+    while (done < bytes) {
+      final long result = cLib.pwrite(fd, address + done, bytes - done, offset + done);
+      if (result < 0) {
+        if (SaferNative.getLastError() == Errno.EINTR) {
+          continue;
+        }
+        Errno.throwLastError("pwrite", fd, address + done, bytes - done, offset + done);
+      }
+      done += result;
+    }
+  }
+
   public void closeFile(int fd) {
     final int result = cLib.close(fd);
     if (result != 0) {
@@ -259,6 +441,18 @@ public class LinuxPlatform {
     }
   }
 
+  /**
+   * Flushes the modified data of a file to the disk.
+   *
+   * @param fd the file descriptor
+   */
+  public void fsync(int fd) {
+    final int result = cLib.fsync(fd);
+    if (result != 0) {
+      Errno.throwLastError("fsync", fd);
+    }
+  }
+
   public void fallocate(int fd, long offset, long length, boolean deallocate) {
     final int mode =
         deallocate
@@ -271,6 +465,10 @@ public class LinuxPlatform {
   }
 
   public long mmapFile(int fd, long size, boolean useHugePage) {
+    return mmapFile(fd, size, useHugePage, false);
+  }
+
+  public long mmapFile(int fd, long size, boolean useHugePage, boolean readOnly) {
     if (cLib == null) {
       throw new RuntimeException(
           "C Library could not be loaded on your system. Calls to mmap are not available.");
@@ -279,8 +477,8 @@ public class LinuxPlatform {
       throw new IllegalArgumentException("Cannot allocate a negative size, was " + size);
     }
     // All Linux distro should support MAP_ANONYMOUS, so no need to create a mapping in /dev/zero.
-    final long ptr =
-        cLib.mmap(0, size, CLibrary.PROT_READ | CLibrary.PROT_WRITE, CLibrary.MAP_SHARED, fd, 0);
+    final int prot = readOnly ? CLibrary.PROT_READ : CLibrary.PROT_READ | CLibrary.PROT_WRITE;
+    final long ptr = cLib.mmap(0, size, prot, CLibrary.MAP_SHARED, fd, 0);
     if (ptr == CLibrary.MAP_FAILED) {
       final int errno = SaferNative.getLastError();
       switch (errno) {
@@ -294,13 +492,7 @@ public class LinuxPlatform {
           throw new RuntimeException("Your system does not support map anonymous. (" + size + ")");
         default:
           Errno.throwLastError(
-              "mmap",
-              0,
-              size,
-              CLibrary.PROT_READ | CLibrary.PROT_WRITE,
-              CLibrary.MAP_PRIVATE | CLibrary.MAP_ANONYMOUS,
-              -1,
-              0);
+              "mmap", 0, size, prot, CLibrary.MAP_PRIVATE | CLibrary.MAP_ANONYMOUS, -1, 0);
       }
     }
 
@@ -310,6 +502,128 @@ public class LinuxPlatform {
     return ptr;
   }
 
+  /**
+   * Advises the kernel about how a range of mapped memory is going to be accessed.
+   *
+   * @param ptr the address of the range, aligned on a page
+   * @param size the size of the range
+   * @param pattern how the range is going to be accessed
+   * @return true if the advice was given, false if the kernel does not know it
+   */
+  public boolean madvise(long ptr, long size, AccessPattern pattern) {
+    final int result = cLib.madvise(ptr, size, pattern.advice);
+    if (result != 0) {
+      if (SaferNative.getLastError() == Errno.EINVAL) {
+        // Advice unknown to this kernel, e.g. MADV_COLD before Linux 5.4
+        LOGGER.fine("The kernel does not support the advice " + pattern);
+        return false;
+      }
+      Errno.throwLastError("madvise", ptr, size, pattern.advice);
+    }
+    return true;
+  }
+
+  /**
+   * Frees the pages of a range of memory mapped from a file, and punches a hole in the file under
+   * them: the range reads as zeros afterwards, and its pages are only faulted in again when
+   * accessed.
+   *
+   * @param ptr the address of the range, aligned on a page
+   * @param size the size of the range
+   * @return true if the pages were removed, false if the file system cannot punch holes
+   */
+  public boolean removePages(long ptr, long size) {
+    if (cLib.madvise(ptr, size, CLibrary.MADV_REMOVE) != 0) {
+      final int error = SaferNative.getLastError();
+      if (error == Errno.EOPNOTSUPP || error == Errno.EINVAL) {
+        // Not a shared mapping of a file system supporting holes
+        LOGGER.fine("Cannot remove the pages of " + size + " bytes, errno " + error);
+        return false;
+      }
+      Errno.throwLastError("madvise", ptr, size, CLibrary.MADV_REMOVE);
+    }
+    return true;
+  }
+
+  /**
+   * Tells which pages of a range of mapped memory are resident in RAM.
+   *
+   * @param ptr the address of the range
+   * @param size the size of the range
+   * @return the resident pages, the page containing {@code ptr} being the first one
+   */
+  public BitSet residency(long ptr, long size) {
+    final long pageSize = pageSizes[0];
+    final long start = ptr & -pageSize;
+    final long length = ptr + size - start;
+    final byte[] vec = new byte[Math.toIntExact((length + pageSize - 1) / pageSize)];
+    if (cLib.mincore(start, length, vec) != 0) {
+      Errno.throwLastError("mincore", start, length);
+    }
+    final BitSet resident = new BitSet(vec.length);
+    for (int i = 0; i < vec.length; i++) {
+      if ((vec[i] & 1) != 0) {
+        resident.set(i);
+      }
+    }
+    return resident;
+  }
+
+  /**
+   * Counts the bytes of a range of mapped memory that are resident in RAM.
+   *
+   * @param ptr the address of the range, aligned on a page
+   * @param size the size of the range
+   * @return the number of resident bytes, counted by whole pages
+   */
+  public long residentBytes(long ptr, long size) {
+    return Math.min(size, residency(ptr, size).cardinality() * pageSizes[0]);
+  }
+
+  /**
+   * Locks a range of mapped memory in RAM, faulting in the pages that are not resident yet.
+   *
+   * @param ptr the address of the range
+   * @param size the size of the range
+   * @return true if the range is locked, false if the process cannot lock that much memory
+   */
+  public boolean mlock(long ptr, long size) {
+    if (cLib.mlock(ptr, size) != 0) {
+      final int error = SaferNative.getLastError();
+      if (error == Errno.ENOMEM || error == Errno.EAGAIN || error == Errno.EPERM) {
+        // Over RLIMIT_MEMLOCK, or not allowed to lock memory at all
+        LOGGER.fine("Cannot lock " + size + " bytes in memory, errno " + error);
+        return false;
+      }
+      Errno.throwLastError("mlock", ptr, size);
+    }
+    return true;
+  }
+
+  /**
+   * Unlocks a range of memory locked by {@link #mlock(long, long)}.
+   *
+   * @param ptr the address of the range
+   * @param size the size of the range
+   */
+  public void munlock(long ptr, long size) {
+    if (cLib.munlock(ptr, size) != 0) {
+      Errno.throwLastError("munlock", ptr, size);
+    }
+  }
+
+  /**
+   * @return the maximum number of bytes the process can lock in RAM, {@link Long#MAX_VALUE} if
+   *     unlimited
+   */
+  public long getMemlockLimit() {
+    final long[] rlim = new long[2];
+    if (cLib.getrlimit(CLibrary.RLIMIT_MEMLOCK, rlim) != 0) {
+      Errno.throwLastError("getrlimit", CLibrary.RLIMIT_MEMLOCK);
+    }
+    return rlim[0] == CLibrary.RLIM_INFINITY ? Long.MAX_VALUE : rlim[0];
+  }
+
   /** @return array in bytes of available page sizes sorted in ascending order. */
   public long[] getSupportedPageSizes() {
     return pageSizes;
@@ -0,0 +1,141 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.platform;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link ThreadFactory} pinning each thread it creates to a CPU, or to a NUMA node.
+ *
+ * <p>Consecutive threads are spread across the NUMA nodes first, then across the cores of each
+ * node, so that a pool smaller than the machine still uses the memory bandwidth of all the nodes. A
+ * pinned thread keeps its caches warm and allocates its memory on its node, under the default
+ * first-touch policy of the kernel.
+ *
+ * <p>Only the CPUs the process is allowed to run on, e.g. restricted by {@code taskset} or a
+ * cgroup, are used. A thread that cannot be pinned runs unpinned.
+ *
+ * @author ActiveViam
+ */
+public class PinnedThreadFactory implements ThreadFactory {
+
+  /** Class logger. */
+  private static final Logger LOGGER = Logger.getLogger("platform");
+
+  /** The prefix of the names of the threads */
+  protected final String name;
+
+  /** Whether the threads are daemon threads */
+  protected final boolean daemon;
+
+  /** The CPUs of each thread, the thread {@code i} using {@code cpuSets[i % cpuSets.length]} */
+  protected final BitSet[] cpuSets;
+
+  /** The number of threads created so far */
+  protected final AtomicInteger threadCount = new AtomicInteger();
+
+  /**
+   * Constructor of a factory pinning each thread to a single CPU.
+   *
+   * @param name the prefix of the names of the threads
+   * @param daemon whether the threads are daemon threads
+   */
+  public PinnedThreadFactory(final String name, final boolean daemon) {
+    this(name, daemon, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param name the prefix of the names of the threads
+   * @param daemon whether the threads are daemon threads
+   * @param wholeNode true to let each thread run on all the CPUs of its NUMA node, false to pin it
+   *     to a single CPU
+   */
+  public PinnedThreadFactory(final String name, final boolean daemon, final boolean wholeNode) {
+    this.name = name;
+    this.daemon = daemon;
+    this.cpuSets = computeCpuSets(LinuxPlatform.getInstance(), wholeNode);
+  }
+
+  /**
+   * Orders the CPUs so that consecutive threads go to different nodes.
+   *
+   * @param platform the platform
+   * @param wholeNode true to return one set per node, false one set per CPU
+   * @return the CPUs of the consecutive threads
+   */
+  protected static BitSet[] computeCpuSets(final LinuxPlatform platform, final boolean wholeNode) {
+    final BitSet allowed = platform.getAffinity();
+    final List<BitSet> nodes = new ArrayList<>();
+    for (final BitSet node : platform.getNumaNodes()) {
+      node.and(allowed);
+      if (!node.isEmpty()) {
+        nodes.add(node);
+      }
+    }
+    if (nodes.isEmpty()) {
+      nodes.add(allowed);
+    }
+    if (wholeNode) {
+      return nodes.toArray(new BitSet[0]);
+    }
+
+    // Round robin over the nodes, taking the next CPU of each node in turn
+    final List<BitSet> cpus = new ArrayList<>();
+    final int[] next = new int[nodes.size()];
+    boolean added;
+    do {
+      added = false;
+      for (int n = 0; n < nodes.size(); n++) {
+        final int cpu = nodes.get(n).nextSetBit(next[n]);
+        if (cpu >= 0) {
+          final BitSet set = new BitSet();
+          set.set(cpu);
+          cpus.add(set);
+          next[n] = cpu + 1;
+          added = true;
+        }
+      }
+    } while (added);
+    return cpus.toArray(new BitSet[0]);
+  }
+
+  /**
+   * @param index the index of a thread of this factory
+   * @return the CPUs the thread runs on
+   */
+  public BitSet getCpus(final int index) {
+    return (BitSet) this.cpuSets[index % this.cpuSets.length].clone();
+  }
+
+  @Override
+  public Thread newThread(final Runnable r) {
+    final int index = this.threadCount.getAndIncrement();
+    final BitSet cpus = getCpus(index);
+    final Thread thread =
+        new Thread(
+            () -> {
+              try {
+                LinuxPlatform.getInstance().setAffinity(cpus);
+              } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Cannot pin the thread to the CPUs " + cpus, e);
+              }
+              r.run();
+            },
+            this.name + "-" + index);
+    thread.setDaemon(this.daemon);
+    return thread;
+  }
+}
@@ -8,6 +8,7 @@
 package com.activeviam.reference;
 
 import com.activeviam.UnsafeUtil;
+import java.util.function.IntPredicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -45,20 +46,65 @@ public abstract class ABlockAllocator implements IBlockAllocator {
    */
   protected final ConcurrentUniqueIntegerStack items;
 
+  /** Number of {@link #counters stripes} counting the allocations, a power of two. */
+  protected static final int STRIPES =
+      1 << UnsafeUtil.getOrder(Math.min(64, Runtime.getRuntime().availableProcessors()));
+
+  /** Number of ints between two {@link #counters stripes}, so that each has its own cache line. */
+  protected static final int STRIPE_STRIDE = 16;
+
+  /** Value of {@link #state} while allocations are allowed. */
+  protected static final int OPEN = 0;
+
+  /** Value of {@link #state} while {@link #tryRelease()} checks whether the block is empty. */
+  protected static final int CLOSING = 1;
+
+  /** Value of {@link #state} once the block is released. */
+  protected static final int CLOSED = -1;
+
+  /**
+   * Counts to track the number of allocations being made, striped by thread so that threads
+   * allocating concurrently do not contend on the same cache line. A stripe counts the pieces of
+   * memory allocated by the threads using it that are not freed yet: a free decrements the stripe
+   * of the allocation, as recorded in {@link #owners}, so that no stripe is ever negative. The
+   * block can only become empty when a stripe drops to zero, which is the only time the sum of the
+   * stripes is computed.
+   */
+  protected final int[] counters;
+
+  /** The {@link #counters stripe} that counted the allocation of each position of the block. */
+  protected final byte[] owners;
+
+  /** Granularity of {@link #approximateOccupancy}, a power of two. */
+  protected final int approximationStep;
+
+  /**
+   * The sum of the {@link #counters stripes}, each rounded down to a multiple of {@link
+   * #approximationStep}. It is only updated when a stripe crosses such a multiple, so that the
+   * allocations and the frees rarely write it.
+   */
+  protected volatile int approximateOccupancy;
+
   /**
-   * Count to track the number of allocation being made. If this value is negative every subsequent
-   * allocations must failed (it basically means the count has reached zero and the allocated block
-   * of memory is going to be released via {@link #release()}).
+   * Either {@link #OPEN}, {@link #CLOSING} or {@link #CLOSED}. If this value is negative every
+   * subsequent allocations must failed (it basically means the count has reached zero and the
+   * allocated block of memory is going to be released via {@link #release()}).
    *
    * <p>Once it is negative, it should/must never become positive again.
    */
-  protected volatile int count;
+  protected volatile int state;
 
   /**
    * boolean to indicate huge pages (if supported) can be requested when allocating block of memory
    */
   protected final boolean useHugePage;
 
+  /**
+   * The fill ratio bucket of the {@link BlockAllocatorManager} this block currently belongs to, -1
+   * if it is in none. Only read and written by the manager, under the lock of this block.
+   */
+  int bucket = -1;
+
   /**
    * Default constructor.
    *
@@ -73,7 +119,11 @@ public abstract class ABlockAllocator implements IBlockAllocator {
     this.useHugePage = useHugePage;
     this.capacity = (int) (blockSize / size);
     this.items = new ConcurrentUniqueIntegerStack(this.capacity);
-    this.count = 0;
+    this.counters = new int[STRIPES * STRIPE_STRIDE];
+    this.owners = new byte[this.capacity];
+    // Less than a thirty-second of the capacity is missed, whatever the number of stripes
+    this.approximationStep = Integer.highestOneBit(Math.max(1, this.capacity / (32 * STRIPES)));
+    this.state = OPEN;
   }
 
   /** Must be called once before using {@link #allocate()}. */
@@ -88,6 +138,84 @@ public abstract class ABlockAllocator implements IBlockAllocator {
     return this.size;
   }
 
+  /** @return the number of elements of size {@link #size} the block can store. */
+  public int capacity() {
+    return this.capacity;
+  }
+
+  /**
+   * Returns the number of pieces of memory currently allocated within the block. The value is only
+   * a snapshot, that concurrent allocations may already have changed.
+   *
+   * @return the number of allocations, or a negative value if the block has been released.
+   */
+  public int occupancy() {
+    if (this.state == CLOSED) {
+      return CLOSED;
+    }
+    return sumCounters();
+  }
+
+  /**
+   * Returns the number of pieces of memory currently allocated within the block, without reading
+   * all the stripes. It can be lower than the exact {@link #occupancy()} by less than {@link
+   * #STRIPES} times {@link #approximationStep}.
+   *
+   * @return the approximate number of allocations, or a negative value if the block has been
+   *     released.
+   */
+  public int approximateOccupancy() {
+    if (this.state == CLOSED) {
+      return CLOSED;
+    }
+    return this.approximateOccupancy;
+  }
+
+  /**
+   * @return true once {@link #tryRelease()} has released the block. Its address range may then be
+   *     reused by another mapping.
+   */
+  public boolean isReleased() {
+    return this.state == CLOSED;
+  }
+
+  /** @return the sum of all the {@link #counters stripes} */
+  protected int sumCounters() {
+    int sum = 0;
+    for (int i = 0; i < this.counters.length; i += STRIPE_STRIDE) {
+      sum += UnsafeUtil.intArrayReadVolatile(this.counters, i);
+    }
+    return sum;
+  }
+
+  /** @return the {@link #counters stripe} of the current thread */
+  protected static int currentStripe() {
+    return (int) Thread.currentThread().getId() & (STRIPES - 1);
+  }
+
+  /**
+   * Adds one or minus one to a {@link #counters stripe}, and to the {@link #approximateOccupancy}
+   * if the stripe crosses a multiple of the {@link #approximationStep}.
+   *
+   * @param stripe the stripe
+   * @param delta the value to add, 1 or -1
+   * @return the new value of the stripe
+   */
+  protected int addToCounter(final int stripe, final int delta) {
+    final int count =
+        UnsafeUtil.getAndAddInt(
+                this.counters,
+                UnsafeUtil.INT_ARRAY_BASE
+                    + ((long) stripe * STRIPE_STRIDE << UnsafeUtil.INT_ARRAY_SHIFT),
+                delta)
+            + delta;
+    final int mask = this.approximationStep - 1;
+    if ((count & mask) == (delta > 0 ? 0 : mask)) {
+      UnsafeUtil.getAndAddInt(this, approximateOccupancyOffset, delta * this.approximationStep);
+    }
+    return count;
+  }
+
   /**
    * Get the address corresponding to the n-th piece of memory within the block. It is computed
    * using {@link #blockAddress} and {@link #size}.
@@ -112,9 +240,50 @@ public abstract class ABlockAllocator implements IBlockAllocator {
 
   @Override
   public long allocate() {
+    if (this.state == CLOSED) {
+      return NULL_POINTER;
+    }
     long ptr;
 
-    // Otherwise, take a new one
+    // Reuse a piece of memory freed earlier if any
+    final int position = this.items.pop();
+    if (position != ConcurrentUniqueIntegerStack.NULL) {
+      ptr = getAddress(position);
+    } else {
+      ptr = allocateNew();
+      if (ptr == NULL_POINTER) {
+        return NULL_POINTER;
+      }
+    }
+
+    // Increment the counter, then check the block is not being released. tryRelease() changes the
+    // state before summing the counters: either it sees this allocation, or this allocation sees
+    // that the block is closing and waits for the outcome.
+    final int stripe = currentStripe();
+    this.owners[getPosition(ptr)] = (byte) stripe;
+    addToCounter(stripe, 1);
+    int s;
+    while ((s = this.state) == CLOSING) {
+      Thread.onSpinWait();
+    }
+    if (s == CLOSED) {
+      addToCounter(stripe, -1);
+      return NULL_POINTER; // abort allocation
+    }
+
+    doAllocate(ptr, this.size);
+
+    return ptr;
+  }
+
+  /**
+   * Takes a piece of memory that was never allocated, right after the last one.
+   *
+   * @return The pointer to this piece of memory, or {@link #NULL_POINTER} if the whole block has
+   *     already been handed out.
+   */
+  protected long allocateNew() {
+    long ptr;
     do {
       /*
        * Check to avoid unnecessary CASes by checking
@@ -130,20 +299,46 @@ public abstract class ABlockAllocator implements IBlockAllocator {
       }
     } while (!casLastAddress(this, ptr, ptr + this.size));
 
-    // Increment the counter.
-    int newC;
-    do {
-      newC = this.count;
-      if (newC < 0) return NULL_POINTER; // abort allocation
-    } while (!casCount(this, newC, newC + 1));
-
-    doAllocate(ptr, this.size);
-
     return ptr;
   }
 
+  /**
+   * Restores the state of a block whose memory was partially allocated by a previous process.
+   *
+   * <p>Must be called right after {@link #init()}, before any call to {@link #allocate()}.
+   *
+   * @param highWaterMark the number of pieces of memory ever handed out in the block
+   * @param allocated tells whether the piece of memory at a given position is still in use
+   */
+  protected void restore(final int highWaterMark, final IntPredicate allocated) {
+    int used = 0;
+    for (int position = highWaterMark - 1; position >= 0; position--) {
+      if (allocated.test(position)) {
+        used++;
+      } else {
+        this.items.push(position);
+      }
+    }
+    this.lastAddress = getAddress(highWaterMark);
+    // The restored allocations are all counted by the first stripe, as recorded by owners
+    this.counters[0] = used;
+    this.approximateOccupancy = used & -this.approximationStep;
+  }
+
   @Override
   public void free(final long address) {
+    freeAndCheck(address);
+  }
+
+  /**
+   * Frees a piece of memory, as {@link #free(long)}, and tells whether {@link #tryRelease()} may
+   * release the block.
+   *
+   * @param address the address of the piece of memory
+   * @return true if the stripe that counted the allocation of the memory dropped to zero, false if
+   *     the block cannot be empty
+   */
+  protected boolean freeAndCheck(final long address) {
     final boolean cacheUsed;
     final ConcurrentUniqueIntegerStack stack; // the stack to use
     // Decommit before pushing the pointer in the stack to
@@ -153,23 +348,24 @@ public abstract class ABlockAllocator implements IBlockAllocator {
     cacheUsed = false;
     stack = this.items;
 
+    // Read before the push, once pushed the position can be allocated again
+    final int position = getPosition(address);
+    final int owner = this.owners[position];
     // Store address for later usage
-    if (stack.push(getPosition(address))) {
+    if (stack.push(position)) {
       // If the push succeeds, decrements the counter
       // The stack used guarantees that concurrent calls on free()
       // with the same value does not decrement multiple times
       // the counter. Further more, when the counter value reaches 0,
       // the entire block can be released.
-      int newC;
-      do {
-        newC = this.count;
-      } while (!casCount(this, newC, newC - 1));
+      return addToCounter(owner, -1) == 0;
 
     } else {
       // Not suppose to happen...
       LOGGER.log(
           Level.WARNING,
           "Cleaning address twice for chunk of size " + PrintUtil.printDataSize(this.size) + ".");
+      return false;
     }
   }
 
@@ -178,12 +374,33 @@ public abstract class ABlockAllocator implements IBlockAllocator {
    *     Once the memory has been freed, it is not possible to use {@link #allocate()} anymore.
    */
   public boolean tryRelease() {
-    if (casCount(this, 0, -1)) { // set to -1 to turn it off to protect further allocation
-      release();
-      return true;
+    while (true) {
+      final int s = this.state;
+      if (s == CLOSED) {
+        return false;
+      }
+      if (s == CLOSING) {
+        // Another caller is deciding. It may reopen the block after reading the counters while
+        // they were changing, so wait for the outcome and check again.
+        Thread.onSpinWait();
+        continue;
+      }
+      // First check without stopping the allocations
+      if (sumCounters() != 0) {
+        return false;
+      }
+      if (!casState(this, OPEN, CLOSING)) {
+        continue;
+      }
+      // The allocations incrementing the counters from now on wait for the outcome
+      if (sumCounters() == 0) {
+        this.state = CLOSED; // turn it off to protect further allocation
+        release();
+        return true;
+      }
+      // Reopen, then check again in case the counters were read while they were changing
+      this.state = OPEN;
     }
-
-    return false;
   }
 
   @Override
@@ -241,33 +458,35 @@ public abstract class ABlockAllocator implements IBlockAllocator {
         .append(", stack=")
         .append(this.items)
         .append(", allocationCounter=")
-        .append(this.count)
+        .append(occupancy())
         .append("]");
     return sb.toString();
   }
 
-  protected static final long countOffset =
-      UnsafeUtil.getFieldOffset(ABlockAllocator.class, "count");
+  protected static final long stateOffset =
+      UnsafeUtil.getFieldOffset(ABlockAllocator.class, "state");
   protected static final long lastAddressOffset =
       UnsafeUtil.getFieldOffset(ABlockAllocator.class, "lastAddress");
+  protected static final long approximateOccupancyOffset =
+      UnsafeUtil.getFieldOffset(ABlockAllocator.class, "approximateOccupancy");
 
   /**
    * Static wrappers for UNSAFE methods {@link UnsafeUtil#compareAndSwapInt(Object, long, int, int)}
-   * with <code>offset = </code>{@link #countOffset}.
+   * with <code>offset = </code>{@link #stateOffset}.
    *
    * <p>Hopefully it will be in-lined ...
    *
    * @return true if successful. false return indicates that the actual value was not equal to the
    *     expected value.
    */
-  protected static final boolean casCount(
+  protected static final boolean casState(
       final ABlockAllocator blockAllocator, final int expected, final int updated) {
-    return UnsafeUtil.compareAndSwapInt(blockAllocator, countOffset, expected, updated);
+    return UnsafeUtil.compareAndSwapInt(blockAllocator, stateOffset, expected, updated);
   }
 
   /**
    * Static wrappers for UNSAFE methods {@link UnsafeUtil#compareAndSwapLong(Object, long, long,
-   * long)} with <code>offset = </code>{@link #countOffset}.
+   * long)} with <code>offset = </code>{@link #lastAddressOffset}.
    *
    * <p>Hopefully it will be in-lined ...
    *
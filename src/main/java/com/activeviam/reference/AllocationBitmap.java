@@ -0,0 +1,169 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.reference;
+
+import com.activeviam.MemoryAllocator;
+import com.activeviam.UnsafeUtil;
+import com.activeviam.platform.LinuxPlatform;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+/**
+ * A bitmap stored in a memory mapped file, telling which pieces of memory of a block are in use.
+ *
+ * <p>Bits are updated atomically so that concurrent allocations and frees within the same block do
+ * not lose updates. As the mapping is shared, the content survives the process and can be read back
+ * by {@link #open(Path, int)}.
+ *
+ * @author ActiveViam
+ */
+class AllocationBitmap {
+
+  protected static final LinuxPlatform PLATFORM = LinuxPlatform.getInstance();
+
+  /** The file storing the bits. */
+  protected final Path path;
+
+  /** The number of bits in this bitmap. */
+  protected final int capacity;
+
+  /** The size of the mapping, a multiple of {@link MemoryAllocator#PAGE_SIZE}. */
+  protected final long mappedSize;
+
+  /** File descriptor */
+  protected final int fd;
+
+  /** Address of the mapped bits */
+  protected final long address;
+
+  private AllocationBitmap(
+      final Path path, final int capacity, final boolean create, final boolean readOnly) {
+    this.path = path;
+    this.capacity = capacity;
+    final long bytes = (((long) capacity + Long.SIZE - 1) / Long.SIZE) * Long.BYTES;
+    this.mappedSize =
+        ((bytes + MemoryAllocator.PAGE_SIZE - 1) / MemoryAllocator.PAGE_SIZE)
+            * MemoryAllocator.PAGE_SIZE;
+    if (create) {
+      try (RandomAccessFile f = new RandomAccessFile(path.toFile(), "rw")) {
+        f.setLength(0); // Forget any previous content
+        f.setLength(this.mappedSize);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    } else if (path.toFile().length() != this.mappedSize) {
+      throw new IllegalStateException(
+          "Expected " + path + " to have " + this.mappedSize + " bytes.");
+    }
+    final String file = path.toFile().getAbsolutePath();
+    this.fd = readOnly ? PLATFORM.openFileReadOnly(file) : PLATFORM.openFile(file);
+    this.address = PLATFORM.mmapFile(this.fd, this.mappedSize, false, readOnly);
+  }
+
+  /**
+   * Creates a new bitmap, with all its bits cleared.
+   *
+   * @param path the file to store the bits
+   * @param capacity the number of bits
+   * @return the bitmap
+   */
+  public static AllocationBitmap create(final Path path, final int capacity) {
+    return new AllocationBitmap(path, capacity, true, false);
+  }
+
+  /**
+   * Maps a bitmap written by a previous process.
+   *
+   * @param path the file storing the bits
+   * @param capacity the number of bits
+   * @return the bitmap
+   */
+  public static AllocationBitmap open(final Path path, final int capacity) {
+    return new AllocationBitmap(path, capacity, false, false);
+  }
+
+  /**
+   * Maps a bitmap written by another process, to read it as it is updated.
+   *
+   * <p>The bits of the returned bitmap cannot be changed.
+   *
+   * @param path the file storing the bits
+   * @param capacity the number of bits
+   * @return the bitmap
+   */
+  public static AllocationBitmap openReadOnly(final Path path, final int capacity) {
+    return new AllocationBitmap(path, capacity, false, true);
+  }
+
+  /** @return the number of bits in this bitmap. */
+  public int capacity() {
+    return this.capacity;
+  }
+
+  private long wordAddress(final int position) {
+    assert 0 <= position && position < this.capacity;
+    return this.address + ((long) (position >>> 6) << 3);
+  }
+
+  /**
+   * @param position the position of a piece of memory within the block
+   * @return true if the piece of memory is in use
+   */
+  public boolean get(final int position) {
+    return (UnsafeUtil.getLongVolatile(null, wordAddress(position)) & (1L << position)) != 0;
+  }
+
+  /** @param position the position of the piece of memory to mark in use */
+  public void set(final int position) {
+    final long address = wordAddress(position);
+    final long mask = 1L << position;
+    long word;
+    do {
+      word = UnsafeUtil.getLongVolatile(null, address);
+    } while (!UnsafeUtil.compareAndSwapLong(null, address, word, word | mask));
+  }
+
+  /** @param position the position of the piece of memory to mark free */
+  public void clear(final int position) {
+    final long address = wordAddress(position);
+    final long mask = 1L << position;
+    long word;
+    do {
+      word = UnsafeUtil.getLongVolatile(null, address);
+    } while (!UnsafeUtil.compareAndSwapLong(null, address, word, word & ~mask));
+  }
+
+  /** @return one more than the position of the last piece of memory in use, 0 if none is in use. */
+  public int highWaterMark() {
+    for (int w = (this.capacity - 1) >>> 6; w >= 0; w--) {
+      final long word = UnsafeUtil.getLongVolatile(null, this.address + ((long) w << 3));
+      if (word != 0) {
+        return (w << 6) + Long.SIZE - Long.numberOfLeadingZeros(word);
+      }
+    }
+    return 0;
+  }
+
+  /** Flushes the bits to the disk. */
+  public void sync() {
+    PLATFORM.fsync(this.fd);
+  }
+
+  /** Unmaps the bitmap, keeping its file. */
+  public void close() {
+    PLATFORM.munmap(this.address, this.mappedSize);
+    PLATFORM.closeFile(this.fd);
+  }
+
+  /** Unmaps the bitmap and deletes its file. */
+  public void delete() {
+    close();
+    this.path.toFile().delete();
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.reference;
+
+import java.nio.file.Path;
+import java.util.logging.Logger;
+
+/**
+ * A region of memory whose allocations are all freed at once.
+ *
+ * <p>An arena serves its allocations from its own blocks, in its own directory. Its memory can be
+ * freed piece by piece as with any other allocator, but {@link #close() closing} the arena unmaps
+ * and deletes its block files without visiting the allocations: dropping the data owned by an arena
+ * costs a few system calls per block rather than a few per allocation.
+ *
+ * <p>Arenas are created with {@link MemoryAllocatorOnFile#createArena()}.
+ *
+ * @author ActiveViam
+ */
+public class Arena extends MemoryAllocatorOnFile {
+
+  /** Class logger. */
+  private static final Logger logger = Logger.getLogger("allocator");
+
+  /** The allocator that created this arena */
+  protected final MemoryAllocatorOnFile parent;
+
+  /**
+   * Constructor.
+   *
+   * @param parent the allocator creating the arena
+   * @param dir the directory of the files of the arena
+   */
+  Arena(final MemoryAllocatorOnFile parent, final Path dir) {
+    // The directory of the arena is in the one of its parent, on the same device
+    super(dir, false, parent);
+    this.parent = parent;
+  }
+
+  @Override
+  public long allocateMemory(final long bytes) {
+    if (this.closed) {
+      throw new IllegalStateException("Cannot allocate in a closed arena " + this.dir);
+    }
+    return super.allocateMemory(bytes);
+  }
+
+  /**
+   * Frees all the memory of this arena, deleting its files.
+   *
+   * <p>The memory allocated from this arena must not be used after this call. Closing an arena
+   * twice has no effect.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (this.closed) {
+        return;
+      }
+      this.closed = true;
+    }
+    final int blockCount = getBlockCount();
+    super.close();
+    this.dir.toFile().delete();
+    this.parent.arenas.remove(this);
+    logger.fine("Released " + blockCount + " blocks of the arena " + this.dir);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName()
+        + " [dir="
+        + this.dir
+        + ", blocks="
+        + getBlockCount()
+        + ", closed="
+        + this.closed
+        + "]";
+  }
+}
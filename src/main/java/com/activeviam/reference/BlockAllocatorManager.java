@@ -10,6 +10,8 @@ package com.activeviam.reference;
 import com.activeviam.UnsafeUtil;
 import com.activeviam.platform.LinuxPlatform;
 import com.activeviam.reference.MemoryAllocatorOnFile.IBlockAllocatorFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -43,6 +45,20 @@ public class BlockAllocatorManager implements IBlockAllocator {
 
   private final IBlockAllocatorFactory allocatorFactory;
 
+  /** The number of buckets sorting the blocks that are not full by fill ratio. */
+  protected static final int BUCKET_COUNT = 8;
+
+  /** How the block serving an allocation is chosen */
+  private final PlacementPolicy placement;
+
+  /**
+   * Blocks sorted by fill ratio, only maintained for {@link PlacementPolicy#FULLEST_FIRST}. The
+   * bucket {@code i < }{@link #BUCKET_COUNT} holds the blocks whose fill ratio is within {@code [i
+   * / BUCKET_COUNT, (i + 1) / BUCKET_COUNT[}, the last bucket holds the full blocks. The blocks of
+   * a bucket are not ordered, so that moving a block between buckets costs two hash updates.
+   */
+  private final Set<ABlockAllocator>[] buckets;
+
   /**
    * Default constructor.
    *
@@ -52,11 +68,33 @@ public class BlockAllocatorManager implements IBlockAllocator {
    */
   public BlockAllocatorManager(
       final IBlockAllocatorFactory factory, final long size, final long virtualBlockSize) {
+    this(factory, size, virtualBlockSize, PlacementPolicy.FIRST_FIT);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param size of memory (in bytes) that will be allocated when calling {@link #allocate()}.
+   * @param virtualBlockSize minimum size of memory to reserve for the entire block. Each subsequent
+   *     call to {@link #allocate()} will take a portion of it.
+   * @param placement how the block serving an allocation is chosen
+   */
+  @SuppressWarnings("unchecked")
+  public BlockAllocatorManager(
+      final IBlockAllocatorFactory factory,
+      final long size,
+      final long virtualBlockSize,
+      final PlacementPolicy placement) {
     this.allocatorFactory = factory;
     this.size = size;
     this.virtualBlockSize = computeBlockSizeAsMultipleOfSize(this.size, virtualBlockSize);
     this.blocks = new CopyOnWriteArrayList<>(); // Lazily add elements to the list
     this.useHugePage = canUseHugePage();
+    this.placement = placement;
+    this.buckets = new Set[BUCKET_COUNT + 1];
+    for (int i = 0; i < this.buckets.length; i++) {
+      this.buckets[i] = ConcurrentHashMap.newKeySet();
+    }
   }
 
   @Override
@@ -82,6 +120,11 @@ public class BlockAllocatorManager implements IBlockAllocator {
     return false;
   }
 
+  /** @return true if huge pages can be requested when allocating blocks of memory. */
+  boolean useHugePage() {
+    return this.useHugePage;
+  }
+
   /** @return a new {@link ABlockAllocator} that can be used immediately. */
   private ABlockAllocator createBlockAllocator() {
     return this.allocatorFactory.create(this.size, this.virtualBlockSize, this.useHugePage);
@@ -126,6 +169,7 @@ public class BlockAllocatorManager implements IBlockAllocator {
           // to the block list to make sure this allocation will succeed.
           ptr = newBlock.allocate();
           this.blocks.add(newBlock); // From that point, the new block is visible by other threads
+          updateBucket(newBlock);
         } finally {
           this.ongoingCreationProcess = 0; // restore the value
         }
@@ -144,21 +188,110 @@ public class BlockAllocatorManager implements IBlockAllocator {
    */
   private long tryAllocate() {
     long ptr;
-    for (final var block : this.blocks) {
-      if ((ptr = block.allocate()) != NULL_POINTER) return ptr;
+    if (this.placement == PlacementPolicy.FIRST_FIT) {
+      for (final var block : this.blocks) {
+        if ((ptr = block.allocate()) != NULL_POINTER) return ptr;
+      }
+      return NULL_POINTER;
+    }
+
+    // From the fullest blocks to the emptiest ones, and only then the blocks seen as full, in case
+    // memory was freed while their bucket is being updated.
+    for (int b = BUCKET_COUNT - 1; b >= 0; b--) {
+      if ((ptr = tryAllocate(this.buckets[b])) != NULL_POINTER) return ptr;
+    }
+    return tryAllocate(this.buckets[BUCKET_COUNT]);
+  }
+
+  /**
+   * Try to allocate a piece of memory in one of the given blocks.
+   *
+   * @param blocks the blocks to try, in order
+   * @return The pointer to this allocated memory, or {@link IBlockAllocator#NULL_POINTER}.
+   */
+  private long tryAllocate(final Iterable<ABlockAllocator> blocks) {
+    long ptr;
+    for (final var block : blocks) {
+      if ((ptr = block.allocate()) != NULL_POINTER) {
+        updateBucket(block);
+        return ptr;
+      }
     }
     return NULL_POINTER;
   }
 
+  /**
+   * Computes the bucket of a block from its current fill ratio.
+   *
+   * @param block the block
+   * @return the index of the bucket, -1 if the block is released
+   */
+  private static int computeBucket(final ABlockAllocator block) {
+    final int occupancy = block.approximateOccupancy();
+    if (occupancy < 0) {
+      return -1;
+    } else if (occupancy >= block.capacity()) {
+      return BUCKET_COUNT;
+    } else {
+      return (int) ((long) occupancy * BUCKET_COUNT / block.capacity());
+    }
+  }
+
+  /**
+   * Moves a block to the bucket matching its fill ratio, if it changed.
+   *
+   * @param block the block
+   */
+  private void updateBucket(final ABlockAllocator block) {
+    if (this.placement != PlacementPolicy.FULLEST_FIRST) {
+      return;
+    }
+    // Cheap unsynchronized check first, the allocation only rarely changes the bucket
+    if (block.bucket == computeBucket(block)) {
+      return;
+    }
+    synchronized (block) {
+      final int current = block.bucket;
+      final int target = computeBucket(block);
+      if (current != target) {
+        if (current >= 0) {
+          this.buckets[current].remove(block);
+        }
+        if (target >= 0) {
+          this.buckets[target].add(block);
+        }
+        block.bucket = target;
+      }
+    }
+  }
+
+  /**
+   * Removes a block from its bucket, once it has been released.
+   *
+   * @param block the block
+   */
+  private void removeFromBucket(final ABlockAllocator block) {
+    synchronized (block) {
+      if (block.bucket >= 0) {
+        this.buckets[block.bucket].remove(block);
+        block.bucket = -1;
+      }
+    }
+  }
+
   @Override
   public void free(final long address) {
     for (final var b : this.blocks) {
-      // Need to find the block an address belongs to
-      if (b.blockAddress <= address && address < b.blockAddress + b.blockSize) {
-        b.free(address);
-        if (b.tryRelease()) {
+      // Need to find the block an address belongs to. A block released but not removed from the
+      // list yet may have left its address range to a new block.
+      if (b.blockAddress <= address && address < b.blockAddress + b.blockSize && !b.isReleased()) {
+        // Only the free emptying a stripe can empty the block, and sum the stripes to check it
+        if (b.freeAndCheck(address) && b.tryRelease()) {
           // If tryRelease succeed, remove b from the block list
           this.blocks.remove(b);
+          removeFromBucket(b);
+        } else {
+          updateBucket(b);
         }
         return;
       }
@@ -170,9 +303,43 @@ public class BlockAllocatorManager implements IBlockAllocator {
     for (final var b : this.blocks) {
       b.release();
       this.blocks.remove(b);
+      removeFromBucket(b);
     }
   }
 
+  @Override
+  public void close() {
+    for (final var b : this.blocks) {
+      b.close();
+      this.blocks.remove(b);
+      removeFromBucket(b);
+    }
+  }
+
+  /**
+   * Manages a block that was created outside of this manager, e.g. a block whose content was
+   * written by a previous process.
+   *
+   * @param block the block, ready to use
+   */
+  void adopt(final ABlockAllocator block) {
+    if (block.size() != this.size) {
+      throw new IllegalArgumentException(
+          "Cannot manage a block of " + block.size() + " bytes in " + this);
+    }
+    this.blocks.add(block);
+    updateBucket(block);
+  }
+
+  /**
+   * Returns the number of blocks currently reserved by this manager.
+   *
+   * @return the number of blocks
+   */
+  public int getBlockCount() {
+    return this.blocks.size();
+  }
+
   @Override
   public String toString() {
     return BlockAllocatorManager.class.getSimpleName()
@@ -182,6 +349,8 @@ public class BlockAllocatorManager implements IBlockAllocator {
         + this.virtualBlockSize
         + ", useHugePage="
         + this.useHugePage
+        + ", placement="
+        + this.placement
         + "]";
   }
 
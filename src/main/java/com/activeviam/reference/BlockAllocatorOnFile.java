@@ -31,21 +31,48 @@ class BlockAllocatorOnFile extends ABlockAllocator {
    *     them).
    */
   public BlockAllocatorOnFile(Path dir, long size, long blockSize, boolean useHugePage) {
+    this(
+        dir.resolve("hugefile_" + size + "_" + ID_GENERATOR.getAsLong()),
+        size,
+        blockSize,
+        useHugePage,
+        false);
+    this.path.toFile().deleteOnExit();
+  }
+
+  /**
+   * Constructor working on a given file.
+   *
+   * @param path the file backing the block
+   * @param size Size of memory (in bytes) that will be allocated when calling {@link #allocate()}.
+   * @param blockSize amount of virtual memory to reserve for an entire block
+   * @param useHugePage true to indicate to the system that it should use huge pages (if it supports
+   *     them).
+   * @param reopen true to map an existing file and keep its content, false to create a new file
+   */
+  protected BlockAllocatorOnFile(
+      Path path, long size, long blockSize, boolean useHugePage, boolean reopen) {
     super(size, blockSize, useHugePage);
     if ((size % MemoryAllocator.PAGE_SIZE) != 0) {
       throw new IllegalArgumentException(size + " " + MemoryAllocator.PAGE_SIZE);
     }
-    this.path = dir.resolve("hugefile_" + size + "_" + ID_GENERATOR.getAsLong());
+    this.path = path;
     try {
       File file = this.path.toFile();
-      // Just in case the file already exists
-      file.delete();
-
-      checkCanWriteFile();
-      setFileLength(blockSize);
+      if (reopen) {
+        if (file.length() != blockSize) {
+          throw new IllegalStateException(
+              "Expected " + path + " to have " + blockSize + " bytes, was " + file.length());
+        }
+      } else {
+        // Just in case the file already exists
+        file.delete();
+
+        checkCanWriteFile();
+        setFileLength(blockSize);
+      }
 
       file = path.toFile();
-      file.deleteOnExit();
       this.fd = PLATFORM.openFile(file.getAbsolutePath());
 
     } catch (IOException e) {
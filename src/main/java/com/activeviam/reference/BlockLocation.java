@@ -0,0 +1,68 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.reference;
+
+/**
+ * The location of a piece of memory within the files of a persistent {@link MemoryAllocatorOnFile}.
+ *
+ * <p>Contrary to an address, a location remains valid when the files are mapped again by another
+ * process.
+ *
+ * @author ActiveViam
+ */
+public final class BlockLocation {
+
+  /** The id of the block containing the memory */
+  private final int blockId;
+
+  /** The offset of the memory within the block */
+  private final long offset;
+
+  /**
+   * Constructor.
+   *
+   * @param blockId the id of the block containing the memory
+   * @param offset the offset of the memory within the block
+   */
+  public BlockLocation(final int blockId, final long offset) {
+    this.blockId = blockId;
+    this.offset = offset;
+  }
+
+  /** @return the id of the block containing the memory. */
+  public int getBlockId() {
+    return this.blockId;
+  }
+
+  /** @return the offset of the memory within the block. */
+  public long getOffset() {
+    return this.offset;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * this.blockId + Long.hashCode(this.offset);
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof BlockLocation)) {
+      return false;
+    }
+    final BlockLocation other = (BlockLocation) obj;
+    return this.blockId == other.blockId && this.offset == other.offset;
+  }
+
+  @Override
+  public String toString() {
+    return "BlockLocation [blockId=" + this.blockId + ", offset=" + this.offset + "]";
+  }
+}
@@ -0,0 +1,297 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.reference;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The on-disk layout of a persistent {@link MemoryAllocatorOnFile}.
+ *
+ * <p>The directory of the allocator contains one file per block, named after the id of the block,
+ * next to its {@link AllocationBitmap allocation bitmap}. The manifest lists those blocks with the
+ * size of the pieces of memory they contain, and the id of the next block to create. It is
+ * rewritten atomically every time a block is created or released.
+ *
+ * <p>Block ids are never reused, even across restarts: a {@link BlockLocation} names the same block
+ * file for the lifetime of the directory, so that a location of a released block cannot resolve to
+ * the memory of another block.
+ *
+ * @author ActiveViam
+ */
+class BlockManifest {
+
+  /** Name of the manifest file within the directory of the allocator. */
+  public static final String FILE_NAME = "blocks.manifest";
+
+  /** Header of the manifest file, giving the version of the layout. */
+  protected static final String HEADER = "version=2";
+
+  /** Header of the manifests written before the id of the next block was persisted. */
+  protected static final String HEADER_V1 = "version=1";
+
+  /** Prefix of the line of the manifest giving the id of the next block to create. */
+  protected static final String NEXT_ID = "nextId=";
+
+  /** Directory of the allocator */
+  protected final Path dir;
+
+  /** The manifest file */
+  protected final Path file;
+
+  /** Blocks listed in the manifest, by id */
+  protected final Map<Integer, Entry> entries;
+
+  /** Blocks currently mapped by this process, by id */
+  protected final Map<Integer, PersistentBlockAllocatorOnFile> blocks;
+
+  /** Id of the next block to create, greater than the id of all the blocks ever created */
+  protected int nextId;
+
+  /**
+   * Reads the manifest of the given directory, if any.
+   *
+   * @param dir the directory of the allocator
+   */
+  public BlockManifest(final Path dir) {
+    this.dir = dir;
+    this.file = dir.resolve(FILE_NAME);
+    this.entries = new TreeMap<>();
+    this.blocks = new ConcurrentHashMap<>();
+    if (Files.exists(this.file)) {
+      final Snapshot snapshot = load(this.file);
+      for (final Entry entry : snapshot.entries) {
+        this.entries.put(entry.id, entry);
+      }
+      this.nextId = snapshot.nextId;
+    } else {
+      write();
+    }
+  }
+
+  /**
+   * Parses a manifest file.
+   *
+   * @param file the manifest file
+   * @return the blocks it lists
+   */
+  public static List<Entry> read(final Path file) {
+    return load(file).entries;
+  }
+
+  /**
+   * Parses a manifest file.
+   *
+   * @param file the manifest file
+   * @return its content
+   */
+  public static Snapshot load(final Path file) {
+    final List<String> lines;
+    try {
+      lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    final int first;
+    if (!lines.isEmpty() && HEADER.equals(lines.get(0))) {
+      if (lines.size() < 2 || !lines.get(1).startsWith(NEXT_ID)) {
+        throw new IllegalStateException("Missing next block id in " + file + ": " + lines);
+      }
+      first = 2;
+    } else if (!lines.isEmpty() && HEADER_V1.equals(lines.get(0))) {
+      first = 1;
+    } else {
+      throw new IllegalStateException("Unsupported manifest " + file + ": " + lines);
+    }
+    final List<Entry> entries = new ArrayList<>(lines.size() - first);
+    int nextId = first == 2 ? Integer.parseInt(lines.get(1).substring(NEXT_ID.length())) : 0;
+    for (final String line : lines.subList(first, lines.size())) {
+      final String[] fields = line.split(" ");
+      final Entry entry =
+          new Entry(
+              Integer.parseInt(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+      entries.add(entry);
+      // The best a version 1 manifest can tell
+      nextId = Math.max(nextId, entry.id + 1);
+    }
+    return new Snapshot(nextId, entries);
+  }
+
+  /** @return the blocks listed in the manifest. */
+  public synchronized Collection<Entry> entries() {
+    return new ArrayList<>(this.entries.values());
+  }
+
+  /**
+   * Returns a new id, that was never used by any block. The manifest is rewritten before the id is
+   * used, so that a process restarting after a crash does not reuse it either.
+   *
+   * @return the id
+   */
+  public synchronized int nextId() {
+    final int id = this.nextId++;
+    write();
+    return id;
+  }
+
+  /**
+   * @param id the id of a block
+   * @return the file containing the memory of the block
+   */
+  public Path blockFile(final int id) {
+    return blockFile(this.dir, id);
+  }
+
+  /**
+   * @param id the id of a block
+   * @return the file containing the allocation bitmap of the block
+   */
+  public Path bitmapFile(final int id) {
+    return bitmapFile(this.dir, id);
+  }
+
+  /**
+   * @param dir the directory of the allocator
+   * @param id the id of a block
+   * @return the file containing the memory of the block
+   */
+  public static Path blockFile(final Path dir, final int id) {
+    return dir.resolve("block_" + id);
+  }
+
+  /**
+   * @param dir the directory of the allocator
+   * @param id the id of a block
+   * @return the file containing the allocation bitmap of the block
+   */
+  public static Path bitmapFile(final Path dir, final int id) {
+    return dir.resolve("block_" + id + ".bitmap");
+  }
+
+  /**
+   * Records a block in the manifest, once its files are ready.
+   *
+   * @param block the block
+   * @param persist true to rewrite the manifest, false if the block is already listed
+   */
+  public synchronized void register(final PersistentBlockAllocatorOnFile block, boolean persist) {
+    this.blocks.put(block.id, block);
+    if (persist) {
+      this.entries.put(block.id, new Entry(block.id, block.size, block.blockSize));
+      write();
+    }
+  }
+
+  /**
+   * Removes a released block from the manifest.
+   *
+   * @param block the block
+   */
+  public synchronized void unregister(final PersistentBlockAllocatorOnFile block) {
+    this.blocks.remove(block.id);
+    this.entries.remove(block.id);
+    write();
+  }
+
+  /**
+   * Forgets a block that is no longer mapped by this process, keeping it in the manifest.
+   *
+   * @param block the block
+   */
+  public void forget(final PersistentBlockAllocatorOnFile block) {
+    this.blocks.remove(block.id);
+  }
+
+  /**
+   * @param id the id of a block
+   * @return the block with that id, mapped by this process, or null if there is none.
+   */
+  public PersistentBlockAllocatorOnFile getBlock(final int id) {
+    return this.blocks.get(id);
+  }
+
+  /** @return the blocks mapped by this process. */
+  public Collection<PersistentBlockAllocatorOnFile> blocks() {
+    return this.blocks.values();
+  }
+
+  /** Rewrites the manifest file. */
+  protected void write() {
+    final List<String> lines = new ArrayList<>(this.entries.size() + 2);
+    lines.add(HEADER);
+    lines.add(NEXT_ID + this.nextId);
+    for (final Entry entry : this.entries.values()) {
+      lines.add(entry.id + " " + entry.size + " " + entry.blockSize);
+    }
+    final Path tmp = this.dir.resolve(FILE_NAME + ".tmp");
+    try {
+      Files.write(tmp, lines, StandardCharsets.UTF_8);
+      Files.move(
+          tmp, this.file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** The content of a manifest file. */
+  public static class Snapshot {
+
+    /** The id of the next block to create */
+    public final int nextId;
+
+    /** The blocks listed in the manifest */
+    public final List<Entry> entries;
+
+    /**
+     * Constructor.
+     *
+     * @param nextId the id of the next block to create
+     * @param entries the blocks listed in the manifest
+     */
+    public Snapshot(final int nextId, final List<Entry> entries) {
+      this.nextId = nextId;
+      this.entries = entries;
+    }
+  }
+
+  /** A block, as listed in the manifest. */
+  public static class Entry {
+
+    /** The id of the block */
+    public final int id;
+
+    /** Size of the pieces of memory allocated within the block */
+    public final long size;
+
+    /** Size of the block */
+    public final long blockSize;
+
+    /**
+     * Constructor.
+     *
+     * @param id the id of the block
+     * @param size size of the pieces of memory allocated within the block
+     * @param blockSize size of the block
+     */
+    public Entry(final int id, final long size, final long blockSize) {
+      this.id = id;
+      this.size = size;
+      this.blockSize = blockSize;
+    }
+  }
+}
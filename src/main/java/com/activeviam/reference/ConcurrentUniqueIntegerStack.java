@@ -8,6 +8,9 @@ import java.util.Arrays;
  * A stack that accepts an element only if the element is not already in the stack i.e if two
  * concurrent calls try to insert the same element in the stack, only one will succeed.
  *
+ * <p>To relieve the contention on the {@link #head}, several elements can be pushed or popped with
+ * a single update of the head with {@link #pushAll(int[])} and {@link #popN(int, int[])}.
+ *
  * @author ActiveViam
  */
 public class ConcurrentUniqueIntegerStack {
@@ -137,7 +140,8 @@ public class ConcurrentUniqueIntegerStack {
     } while (!casHead(
         this,
         h /* Use the tagged value for CAS (ABA protection) */,
-        newh /* Don't need to tag the head when popping */));
+        tagHead(
+            h, newh) /* Tag on pop too, or a pop/push sequence could restore the read value */));
 
     // At this point, the element at index uh is not anymore accessible from the
     // linked list so we can safely change the value (no Free can occur).
@@ -151,6 +155,82 @@ public class ConcurrentUniqueIntegerStack {
     return uh;
   }
 
+  /**
+   * Pushes several elements at once, with a single update of the head.
+   *
+   * @param elems the elements to push, between 0 (inclusive) and the capacity of the stack
+   *     (exclusive)
+   * @return the number of elements that have been added to the stack, the others being already in
+   *     it
+   */
+  public int pushAll(final int[] elems) {
+    // Claim the elements, and chain them in the order of the array
+    int first = tail;
+    int last = tail;
+    int pushed = 0;
+    for (final int elem : elems) {
+      if (compareAndSet(table, elem, free, tail)) {
+        if (last == tail) {
+          first = elem;
+        } else {
+          table[last] = elem;
+        }
+        last = elem;
+        pushed++;
+      }
+    }
+    if (pushed == 0) {
+      return 0;
+    }
+
+    long h;
+    do {
+      h = head;
+      // Visible once the CAS on the head succeeds, as for push
+      table[last] = untagHead(h);
+    } while (!casHead(this, h, tagHead(h, first)));
+
+    return pushed;
+  }
+
+  /**
+   * Pops up to {@code n} elements at once, with a single update of the head.
+   *
+   * @param n the maximum number of elements to pop
+   * @param out the array receiving the popped elements, from its first index
+   * @return the number of popped elements, 0 if the stack is empty
+   */
+  public int popN(final int n, final int[] out) {
+    final int max = Math.min(n, out.length);
+    if (max <= 0) {
+      return 0;
+    }
+    retry:
+    while (true) {
+      final long h = head;
+      int next = untagHead(h);
+      int popped = 0;
+      while (popped < max && next != tail) {
+        out[popped++] = next;
+        next = getNewHead(next);
+        if (next == free) {
+          // The element was popped in the meantime, the head has changed
+          continue retry;
+        }
+      }
+      if (popped == 0) {
+        return 0;
+      }
+      if (casHead(this, h, tagHead(h, next))) {
+        // Same as pop: the elements are not accessible from the head anymore
+        for (int i = 0; i < popped; i++) {
+          table[out[i]] = free;
+        }
+        return popped;
+      }
+    }
+  }
+
   // For testing purpose
 
   /**
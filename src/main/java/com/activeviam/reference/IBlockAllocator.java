@@ -43,4 +43,14 @@ public interface IBlockAllocator {
    * to create a <b>new one</b>.
    */
   void release();
+
+  /**
+   * Releases the resources held by this allocator in the current process.
+   *
+   * <p>Contrary to {@link #release()}, the memory of allocators whose content outlives the process
+   * is kept, so that it can be used again by another process.
+   */
+  default void close() {
+    release();
+  }
 }
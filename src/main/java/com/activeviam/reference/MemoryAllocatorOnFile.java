@@ -1,13 +1,25 @@
 package com.activeviam.reference;
 
 import com.activeviam.MemoryAllocator;
+import com.activeviam.platform.BlockDevice;
 import com.activeviam.platform.LinuxPlatform;
 import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /** @author ActiveViam */
 public class MemoryAllocatorOnFile implements MemoryAllocator, Closeable {
@@ -32,14 +44,24 @@ public class MemoryAllocatorOnFile implements MemoryAllocator, Closeable {
    */
   protected static final double RATIO;
 
+  /** Name of the system property choosing the {@link #PLACEMENT placement policy}. */
+  public static final String PLACEMENT_PROPERTY = "activeviam.allocator.placement";
+
+  /** How the blocks serving allocations are chosen. */
+  protected static final PlacementPolicy PLACEMENT;
+
   static {
     MAX_MAP_COUNT = 65536; // = 1 << 16
     RATIO = DEFAULT_NATIVE_MEMORY_CACHE_RATIO;
+    PLACEMENT =
+        PlacementPolicy.valueOf(
+            System.getProperty(PLACEMENT_PROPERTY, PlacementPolicy.FIRST_FIT.name()));
   }
 
   private final LinuxPlatform platform;
 
-  private final Path dir;
+  /** The directory where the memory mapped files are allocated */
+  protected final Path dir;
 
   /** {@link IBlockAllocator Allocators} currently available (one per size of chunks). */
   protected volatile Map<Long, IBlockAllocator> allocators;
@@ -49,18 +71,277 @@ public class MemoryAllocatorOnFile implements MemoryAllocator, Closeable {
    */
   protected final long virtualBlockSize;
 
+  /**
+   * The layout of the files of the allocator, when its content outlives the process. null if the
+   * files are deleted with the process.
+   */
+  protected final BlockManifest manifest;
+
+  /** The block device storing the files of this allocator, null if unknown */
+  protected final BlockDevice device;
+
+  /** {@link Arena Arenas} created by this allocator and not closed yet. */
+  protected final Set<Arena> arenas;
+
+  /** Generator of the ids of the arenas, naming their directories */
+  protected final AtomicInteger arenaIds;
+
+  /** Prefix of the directories of the arenas, within the directory of their allocator */
+  protected static final String ARENA_PREFIX = "arena_";
+
+  /** true once the allocator is closed, guarded by {@link #arenas} */
+  protected volatile boolean closed;
+
   /** @param dir the directory where to allocate the memory mapped files */
   public MemoryAllocatorOnFile(final Path dir) {
+    this(dir, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * <p>A persistent allocator keeps its files when it is {@link #close() closed}. A new persistent
+   * allocator on the same directory maps them again, so that all the memory that was not freed is
+   * available at the same {@link BlockLocation locations}.
+   *
+   * @param dir the directory where to allocate the memory mapped files
+   * @param persistent true to keep the files after the process, false to delete them
+   */
+  public MemoryAllocatorOnFile(final Path dir, final boolean persistent) {
+    this(dir, persistent, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param dir the directory where to allocate the memory mapped files
+   * @param persistent true to keep the files after the process, false to delete them
+   * @param parent the allocator whose {@link #getDevice() device} also stores {@code dir}, null to
+   *     probe the device of {@code dir}
+   */
+  protected MemoryAllocatorOnFile(
+      final Path dir, final boolean persistent, final MemoryAllocatorOnFile parent) {
     this.platform = LinuxPlatform.getInstance();
     this.dir = dir;
     this.dir.toFile().mkdirs();
     this.allocators = Collections.synchronizedMap(new HashMap<>());
     this.virtualBlockSize = computeMinimumBlockSize();
+    if (parent != null) {
+      this.device = parent.device;
+    } else {
+      this.device = BlockDevice.probe(dir);
+      if (this.device != null) {
+        logger.info(this.device.report(MemoryAllocator.PAGE_SIZE));
+      } else {
+        logger.info("No block device found for " + dir.toAbsolutePath() + ", using the defaults");
+      }
+    }
+    this.arenas = ConcurrentHashMap.newKeySet();
+    this.arenaIds = new AtomicInteger();
+    if (persistent) {
+      this.manifest = new BlockManifest(dir);
+      deleteStaleArenas();
+      reopenBlocks();
+    } else {
+      this.manifest = null;
+    }
+  }
+
+  /** Maps again all the blocks listed in the manifest. */
+  protected void reopenBlocks() {
+    final var entries = this.manifest.entries();
+    if (entries.isEmpty()) {
+      return;
+    }
+    for (final BlockManifest.Entry entry : entries) {
+      final var manager = (BlockAllocatorManager) getOrCreateAllocator(entry.size);
+      manager.adopt(
+          PersistentBlockAllocatorOnFile.reopen(this.manifest, entry, manager.useHugePage()));
+    }
+    logger.info(
+        "Reopened " + this.manifest.blocks().size() + " blocks from " + this.dir.toAbsolutePath());
+  }
+
+  /**
+   * Deletes the directories of the arenas left by a previous process that did not close them, e.g.
+   * because it crashed: the memory of an arena never outlives its process.
+   */
+  protected void deleteStaleArenas() {
+    final File[] stale = this.dir.toFile().listFiles((d, name) -> name.startsWith(ARENA_PREFIX));
+    if (stale == null || stale.length == 0) {
+      return;
+    }
+    for (final File arenaDir : stale) {
+      try (final Stream<Path> files = Files.walk(arenaDir.toPath())) {
+        files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      } catch (IOException e) {
+        logger.warning("Cannot delete the stale arena " + arenaDir + ": " + e);
+      }
+    }
+    logger.info("Deleted " + stale.length + " stale arenas from " + this.dir.toAbsolutePath());
   }
 
+  /** @return true if the content of this allocator outlives the process. */
+  public boolean isPersistent() {
+    return this.manifest != null;
+  }
+
+  /** @return the number of blocks currently reserved by this allocator, arenas excluded */
+  public int getBlockCount() {
+    synchronized (this.allocators) {
+      int count = 0;
+      for (final var allocator : this.allocators.values()) {
+        count += ((BlockAllocatorManager) allocator).getBlockCount();
+      }
+      return count;
+    }
+  }
+
+  /** @return the block device storing the files of this allocator, null if unknown */
+  public BlockDevice getDevice() {
+    return this.device;
+  }
+
+  /**
+   * Prefaults memory of this allocator with the parallelism recommended for its {@link #getDevice()
+   * device}.
+   *
+   * @param address the address of the memory
+   * @param bytes the number of bytes to prefault
+   * @return the task prefaulting the memory, already submitted
+   * @see #prefault(long, long, int)
+   */
+  public ForkJoinTask<Void> prefault(final long address, final long bytes) {
+    final int processors = this.platform.getProcessorCount();
+    final int parallelism =
+        this.device != null ? this.device.getPrefaultParallelism(bytes, processors) : processors;
+    return prefault(address, bytes, parallelism);
+  }
+
+  /**
+   * Releases all the memory of this allocator.
+   *
+   * <p>The allocated memory must not be used after this call. For a persistent allocator, the files
+   * are kept so that another allocator can map them again. The {@link Arena arenas} created by this
+   * allocator are closed as well.
+   */
   @Override
   public void close() {
-    // TODO
+    synchronized (this.arenas) {
+      // No arena can be created from now on
+      this.closed = true;
+    }
+    for (final Arena arena : this.arenas) {
+      arena.close();
+    }
+    synchronized (this.allocators) {
+      for (final var allocator : this.allocators.values()) {
+        allocator.close();
+      }
+      this.allocators.clear();
+    }
+  }
+
+  /**
+   * Creates an arena, whose memory is freed all at once when it is {@link Arena#close() closed}.
+   *
+   * <p>The memory of an arena is always deleted with the process, even if this allocator is
+   * persistent.
+   *
+   * @return the new arena
+   * @throws IllegalStateException if this allocator is closed
+   */
+  public Arena createArena() {
+    synchronized (this.arenas) {
+      if (this.closed) {
+        throw new IllegalStateException("Cannot create an arena in a closed allocator " + this.dir);
+      }
+      Path arenaDir;
+      while (true) {
+        arenaDir = this.dir.resolve(ARENA_PREFIX + this.arenaIds.getAndIncrement());
+        try {
+          Files.createDirectory(arenaDir);
+          break;
+        } catch (FileAlreadyExistsException e) {
+          // Used by another allocator on the same directory, try the next id
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      final Arena arena = new Arena(this, arenaDir);
+      this.arenas.add(arena);
+      return arena;
+    }
+  }
+
+  /**
+   * Gets the location of a piece of memory, that can be {@link #resolve(BlockLocation) resolved}
+   * after the files of this allocator are mapped again.
+   *
+   * @param address the address of memory obtained from {@link #allocateMemory(long)}
+   * @return the location of the memory
+   * @throws IllegalStateException if the allocator is not persistent
+   */
+  public BlockLocation locate(final long address) {
+    checkPersistent();
+    for (final var block : this.manifest.blocks()) {
+      if (block.contains(address)) {
+        return new BlockLocation(block.id, block.getOffset(address));
+      }
+    }
+    throw new IllegalArgumentException("No block contains the address " + address);
+  }
+
+  /**
+   * Gets the address of a piece of memory from its location.
+   *
+   * @param location the location, as given by {@link #locate(long)}
+   * @return the address of the memory in this process
+   * @throws IllegalStateException if the allocator is not persistent
+   */
+  public long resolve(final BlockLocation location) {
+    checkPersistent();
+    final var block = this.manifest.getBlock(location.getBlockId());
+    if (block == null || location.getOffset() < 0 || location.getOffset() >= block.blockSize) {
+      throw new IllegalArgumentException("Unknown location " + location);
+    }
+    return block.blockAddress + location.getOffset();
+  }
+
+  /**
+   * Publishes the memory of this allocator, so that other processes can read it with zero copy.
+   *
+   * <p>The blocks and their allocations are flushed to their files. Other processes {@link
+   * #attach(Path) attach} to the returned directory and read the memory at the {@link #locate(long)
+   * locations} this process gives them.
+   *
+   * @return the directory to attach to
+   * @throws IllegalStateException if the allocator is not persistent
+   */
+  public Path export() {
+    checkPersistent();
+    for (final var block : this.manifest.blocks()) {
+      block.sync();
+    }
+    return this.dir;
+  }
+
+  /**
+   * Attaches to the memory {@link #export() exported} by a persistent allocator, possibly living in
+   * another process.
+   *
+   * @param dir the directory of the exported allocator
+   * @return a reader resolving the {@link #locate(long) locations} of the exported memory
+   */
+  public static SharedBlockReader attach(final Path dir) {
+    return new SharedBlockReader(dir);
+  }
+
+  private void checkPersistent() {
+    if (this.manifest == null) {
+      throw new IllegalStateException(
+          "Locations are only available for persistent allocators, " + this.dir);
+    }
   }
 
   /** @return the minimum size of block memory that should be allocated. */
@@ -144,11 +425,15 @@ public class MemoryAllocatorOnFile implements MemoryAllocator, Closeable {
     }
 
     return new BlockAllocatorManager(
-        createBlockAllocatorFactory(), mappedSize, this.virtualBlockSize);
+        createBlockAllocatorFactory(), mappedSize, this.virtualBlockSize, PLACEMENT);
   }
 
   private IBlockAllocatorFactory createBlockAllocatorFactory() {
     // Ignore the nodeId as the threads that allocate the memory are already bound to this node
+    if (this.manifest != null) {
+      return (size, blockSize, useHugePage) ->
+          PersistentBlockAllocatorOnFile.create(this.manifest, size, blockSize, useHugePage);
+    }
     return (size, blockSize, useHugePage) -> {
       final var ba = new BlockAllocatorOnFile(this.dir, size, blockSize, useHugePage);
       ba.init();
@@ -0,0 +1,159 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.reference;
+
+/**
+ * {@link BlockAllocatorOnFile} whose content survives the process.
+ *
+ * <p>The block is stored in a file named after its id, and keeps track of its allocations in an
+ * {@link AllocationBitmap}. A new process can map the file again and find the same allocations at
+ * the same offsets.
+ *
+ * @author ActiveViam
+ */
+class PersistentBlockAllocatorOnFile extends BlockAllocatorOnFile {
+
+  /** The manifest listing this block */
+  protected final BlockManifest manifest;
+
+  /** The id of the block */
+  protected final int id;
+
+  /** Tracks which pieces of memory are in use */
+  protected final AllocationBitmap bitmap;
+
+  /**
+   * Constructor.
+   *
+   * @param manifest the manifest listing this block
+   * @param id the id of the block
+   * @param size Size of memory (in bytes) that will be allocated when calling {@link #allocate()}.
+   * @param blockSize amount of virtual memory to reserve for an entire block
+   * @param useHugePage true to indicate to the system that it should use huge pages (if it supports
+   *     them).
+   * @param reopen true to map the files written by a previous process, false to create them
+   */
+  protected PersistentBlockAllocatorOnFile(
+      final BlockManifest manifest,
+      final int id,
+      final long size,
+      final long blockSize,
+      final boolean useHugePage,
+      final boolean reopen) {
+    super(manifest.blockFile(id), size, blockSize, useHugePage, reopen);
+    this.manifest = manifest;
+    this.id = id;
+    final int capacity = (int) (blockSize / size);
+    this.bitmap =
+        reopen
+            ? AllocationBitmap.open(manifest.bitmapFile(id), capacity)
+            : AllocationBitmap.create(manifest.bitmapFile(id), capacity);
+  }
+
+  /**
+   * Creates a new block, and lists it in the manifest.
+   *
+   * @param manifest the manifest listing the blocks
+   * @param size Size of memory (in bytes) that will be allocated when calling {@link #allocate()}.
+   * @param blockSize amount of virtual memory to reserve for an entire block
+   * @param useHugePage true to indicate to the system that it should use huge pages
+   * @return the block, ready to use
+   */
+  public static PersistentBlockAllocatorOnFile create(
+      final BlockManifest manifest,
+      final long size,
+      final long blockSize,
+      final boolean useHugePage) {
+    final var block =
+        new PersistentBlockAllocatorOnFile(
+            manifest, manifest.nextId(), size, blockSize, useHugePage, false);
+    block.init();
+    manifest.register(block, true);
+    return block;
+  }
+
+  /**
+   * Maps a block written by a previous process, with all its allocations.
+   *
+   * @param manifest the manifest listing the blocks
+   * @param entry the block to map
+   * @param useHugePage true to indicate to the system that it should use huge pages
+   * @return the block, ready to use
+   */
+  public static PersistentBlockAllocatorOnFile reopen(
+      final BlockManifest manifest, final BlockManifest.Entry entry, final boolean useHugePage) {
+    final var block =
+        new PersistentBlockAllocatorOnFile(
+            manifest, entry.id, entry.size, entry.blockSize, useHugePage, true);
+    block.init();
+    final AllocationBitmap bitmap = block.bitmap;
+    block.restore(bitmap.highWaterMark(), bitmap::get);
+    manifest.register(block, false);
+    return block;
+  }
+
+  /**
+   * Gets the offset of a piece of memory within the block file, that does not depend on where the
+   * block is mapped.
+   *
+   * @param address the address of the piece of memory
+   * @return its offset within the block
+   */
+  public long getOffset(final long address) {
+    return address - this.blockAddress;
+  }
+
+  /**
+   * @param address an address
+   * @return true if the address belongs to this block.
+   */
+  public boolean contains(final long address) {
+    return this.blockAddress <= address && address < this.blockAddress + this.blockSize;
+  }
+
+  @Override
+  protected void doAllocate(long ptr, long size) {
+    super.doAllocate(ptr, size);
+    this.bitmap.set(getPosition(ptr));
+  }
+
+  @Override
+  protected void doFree(long ptr, long size) {
+    super.doFree(ptr, size);
+    this.bitmap.clear(getPosition(ptr));
+  }
+
+  @Override
+  protected void doRelease(long ptr, long size) {
+    // The block is empty, there is nothing worth keeping
+    this.manifest.unregister(this);
+    super.doRelease(ptr, size);
+    this.bitmap.delete();
+  }
+
+  /** Flushes the content of the block and its allocations to the disk. */
+  public void sync() {
+    PLATFORM.fsync(this.fd);
+    this.bitmap.sync();
+  }
+
+  /** Unmaps the block, keeping its files and its allocations for another process. */
+  @Override
+  public void close() {
+    this.manifest.forget(this);
+    sync();
+    PLATFORM.munmap(this.blockAddress, this.blockSize);
+    PLATFORM.closeFile(this.fd);
+    this.bitmap.close();
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " [id=" + this.id + ", path=" + this.path + "]";
+  }
+}
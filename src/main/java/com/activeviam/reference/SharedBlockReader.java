@@ -0,0 +1,201 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.reference;
+
+import com.activeviam.platform.LinuxPlatform;
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Read-only view, from another process, on the blocks {@link MemoryAllocatorOnFile#export()
+ * exported} by a persistent {@link MemoryAllocatorOnFile}.
+ *
+ * <p>The block files are mapped read-only and shared with the writing process: the data is not
+ * copied, and the reader sees it as soon as the writer has written it, at the cost of a page cache
+ * hit. Blocks are mapped lazily, the first time a location within them is {@link
+ * #resolve(BlockLocation) resolved}.
+ *
+ * @author ActiveViam
+ */
+public class SharedBlockReader implements Closeable {
+
+  /** Class logger. */
+  private static final Logger logger = Logger.getLogger("allocator");
+
+  protected static final LinuxPlatform PLATFORM = LinuxPlatform.getInstance();
+
+  /** Directory of the exported allocator */
+  protected final Path dir;
+
+  /** Blocks listed by the manifest the last time it was read, by id */
+  protected volatile Map<Integer, BlockManifest.Entry> entries;
+
+  /**
+   * Id of the next block the writer creates, as of the last time the manifest was read. The blocks
+   * with a lower id that are not listed have been released, and their ids are never reused.
+   */
+  protected volatile int nextId;
+
+  /** Blocks mapped by this reader, by id */
+  protected final Map<Integer, MappedBlock> mappedBlocks;
+
+  /**
+   * Attaches to the blocks of an allocator.
+   *
+   * @param dir the directory of a persistent {@link MemoryAllocatorOnFile}
+   */
+  public SharedBlockReader(final Path dir) {
+    this.dir = dir;
+    this.mappedBlocks = new ConcurrentHashMap<>();
+    refresh();
+  }
+
+  /**
+   * Reads the manifest again, to see the blocks created by the writer since the last call.
+   *
+   * <p>Blocks released by the writer are unmapped: the memory resolved within them must not be read
+   * anymore.
+   */
+  public synchronized void refresh() {
+    final BlockManifest.Snapshot snapshot =
+        BlockManifest.load(this.dir.resolve(BlockManifest.FILE_NAME));
+    final Map<Integer, BlockManifest.Entry> entries = new ConcurrentHashMap<>();
+    for (final BlockManifest.Entry entry : snapshot.entries) {
+      entries.put(entry.id, entry);
+    }
+    this.entries = entries;
+    this.nextId = snapshot.nextId;
+
+    final Set<Integer> released = new HashSet<>(this.mappedBlocks.keySet());
+    released.removeAll(entries.keySet());
+    for (final Integer id : released) {
+      this.mappedBlocks.remove(id).close();
+    }
+  }
+
+  /**
+   * Gets the address of exported memory in this process.
+   *
+   * @param location the location of the memory, as given by {@link
+   *     MemoryAllocatorOnFile#locate(long)} in the writing process
+   * @return the address of the memory, that can only be read
+   */
+  public long resolve(final BlockLocation location) {
+    final MappedBlock block = getBlock(location);
+    return block.address + location.getOffset();
+  }
+
+  /**
+   * @param location the location of memory, as given by {@link MemoryAllocatorOnFile#locate(long)}
+   *     in the writing process
+   * @return true if the writing process currently has this memory allocated
+   */
+  public boolean isAllocated(final BlockLocation location) {
+    final MappedBlock block = getBlock(location);
+    return block.bitmap.get((int) (location.getOffset() / block.entry.size));
+  }
+
+  /**
+   * @param location a location
+   * @return the mapped block containing the location
+   */
+  protected MappedBlock getBlock(final BlockLocation location) {
+    final int id = location.getBlockId();
+    MappedBlock block = this.mappedBlocks.get(id);
+    if (block == null) {
+      synchronized (this) {
+        block = this.mappedBlocks.get(id);
+        if (block == null) {
+          BlockManifest.Entry entry = this.entries.get(id);
+          if (entry == null && id >= this.nextId) {
+            // Created by the writer since the last refresh
+            refresh();
+            entry = this.entries.get(id);
+          }
+          if (entry == null) {
+            throw new IllegalArgumentException(
+                (id < this.nextId
+                        ? "Block " + id + " was released in "
+                        : "Block " + id + " is not exported in ")
+                    + this.dir
+                    + ": "
+                    + location);
+          }
+          block = new MappedBlock(entry);
+          this.mappedBlocks.put(id, block);
+        }
+      }
+    }
+    if (location.getOffset() < 0 || location.getOffset() >= block.entry.blockSize) {
+      throw new IllegalArgumentException("Unknown location " + location);
+    }
+    return block;
+  }
+
+  /** Unmaps all the blocks. The memory resolved by this reader must not be read anymore. */
+  @Override
+  public synchronized void close() {
+    for (final MappedBlock block : this.mappedBlocks.values()) {
+      block.close();
+    }
+    this.mappedBlocks.clear();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName()
+        + " [dir="
+        + this.dir
+        + ", exportedBlocks="
+        + this.entries.size()
+        + ", mappedBlocks="
+        + this.mappedBlocks.size()
+        + "]";
+  }
+
+  /** A block file mapped read-only, with its allocation bitmap. */
+  protected class MappedBlock {
+
+    /** The block, as listed in the manifest */
+    protected final BlockManifest.Entry entry;
+
+    /** File descriptor */
+    protected final int fd;
+
+    /** Address of the mapped block */
+    protected final long address;
+
+    /** Allocations of the block */
+    protected final AllocationBitmap bitmap;
+
+    /** @param entry the block to map */
+    protected MappedBlock(final BlockManifest.Entry entry) {
+      this.entry = entry;
+      final Path path = BlockManifest.blockFile(SharedBlockReader.this.dir, entry.id);
+      this.fd = PLATFORM.openFileReadOnly(path.toFile().getAbsolutePath());
+      this.address = PLATFORM.mmapFile(this.fd, entry.blockSize, false, true);
+      this.bitmap =
+          AllocationBitmap.openReadOnly(
+              BlockManifest.bitmapFile(SharedBlockReader.this.dir, entry.id),
+              (int) (entry.blockSize / entry.size));
+      logger.fine("Attached to " + path);
+    }
+
+    /** Unmaps the block. */
+    protected void close() {
+      PLATFORM.munmap(this.address, this.entry.blockSize);
+      PLATFORM.closeFile(this.fd);
+      this.bitmap.close();
+    }
+  }
+}
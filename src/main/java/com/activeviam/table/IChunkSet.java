@@ -1,5 +1,7 @@
 package com.activeviam.table;
 
+import com.activeviam.platform.AccessPattern;
+import java.io.Closeable;
 import java.util.BitSet;
 
 /**
@@ -7,7 +9,7 @@ import java.util.BitSet;
  *
  * @author ActiveViam
  */
-public interface IChunkSet {
+public interface IChunkSet extends Closeable {
 
 	/**
 	 * Returns the value of an attribute column at a given row.
@@ -57,4 +59,40 @@ public interface IChunkSet {
 	 * @return the rows matching the given predicate
 	 */
 	BitSet findRows(int[] predicate, int limit);
+
+	/**
+	 * Finds the rows whose attributes match the given predicate, and writes them into the words of a
+	 * bitmap owned by the caller, without allocating.
+	 *
+	 * <p>Row {@code i} of the set is bit {@code i % 64} of word {@code wordOffset + i / 64}. The bits
+	 * of the rows after the limit are left unchanged.
+	 *
+	 * @param predicate the predicate, as for {@link #findRows(int[], int)}
+	 * @param limit the rows after this limit will be ignored
+	 * @param words the words of the bitmap
+	 * @param wordOffset the word of the first row of the set
+	 * @return true if any row matches the predicate
+	 */
+	boolean findRows(int[] predicate, int limit, long[] words, int wordOffset);
+
+	/**
+	 * Tells how an attribute column is going to be accessed.
+	 *
+	 * @param column The attribute column
+	 * @param pattern how the column is going to be accessed
+	 */
+	void adviseAttribute(int column, AccessPattern pattern);
+
+	/**
+	 * Tells how all the columns are going to be accessed.
+	 *
+	 * @param pattern how the columns are going to be accessed
+	 */
+	void advise(AccessPattern pattern);
+
+	/**
+	 * Releases the chunks of this set. The set must not be used afterwards.
+	 */
+	@Override
+	void close();
 }
@@ -1,10 +1,17 @@
 package com.activeviam.table.impl;
 
+import com.activeviam.chunk.ChunkPinner;
+import com.activeviam.chunk.ChunkSealer;
+import com.activeviam.chunk.ColdChunkManager;
 import com.activeviam.chunk.DoubleChunk;
 import com.activeviam.chunk.IChunkAllocator;
 import com.activeviam.chunk.IntegerChunk;
+import com.activeviam.chunk.IntegerChunk.Op;
+import com.activeviam.platform.AccessPattern;
 import com.activeviam.table.IChunkSet;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author ActiveViam
@@ -23,6 +30,21 @@ public class ChunkSet implements IChunkSet {
 	/** The values of the value columns */
 	protected final DoubleChunk[] values;
 
+	/** The allocator of the chunks, releasing them */
+	protected final IChunkAllocator allocator;
+
+	/** The sealer of the sealed columns, null if the set is not sealed */
+	protected ChunkSealer sealer;
+
+	/** The attribute columns replaced by sealed chunks, released by the {@link #sealer} */
+	protected final BitSet sealedAttributes = new BitSet();
+
+	/** The value columns replaced by sealed chunks, released by the {@link #sealer} */
+	protected final BitSet sealedValues = new BitSet();
+
+	/** The number of scans currently reading this set */
+	protected final AtomicInteger scans = new AtomicInteger();
+
 	/**
 	 * Constructor
 	 *
@@ -40,6 +62,7 @@ public class ChunkSet implements IChunkSet {
 			this.values[i] = allocator.allocateDoubleChunk(chunkSize);
 		}
 		this.chunkSize = chunkSize;
+		this.allocator = allocator;
 	}
 
 	@Override
@@ -62,6 +85,122 @@ public class ChunkSet implements IChunkSet {
 		this.values[column].writeDouble(row, value);
 	}
 
+	@Override
+	public void adviseAttribute(final int column, final AccessPattern pattern) {
+		this.attributes[column].advise(pattern);
+	}
+
+	@Override
+	public void advise(final AccessPattern pattern) {
+		for (final IntegerChunk attribute : this.attributes) {
+			attribute.advise(pattern);
+		}
+		for (final DoubleChunk value : this.values) {
+			value.advise(pattern);
+		}
+	}
+
+	/**
+	 * Starts a scan of this set, reading the filtered attribute columns from start to end.
+	 *
+	 * <p>Each call must be followed by {@link #endScan()}.
+	 *
+	 * @param predicate The predicate of the scan, the attribute columns with a negative value being
+	 *        not read
+	 */
+	public void beginScan(final int[] predicate) {
+		this.scans.incrementAndGet();
+		for (int p = 0; p < predicate.length; p++) {
+			if (predicate[p] >= 0) {
+				this.attributes[p].advise(AccessPattern.SEQUENTIAL);
+			}
+		}
+	}
+
+	/** Ends a scan started by {@link #beginScan(int[])}. */
+	public void endScan() {
+		this.scans.decrementAndGet();
+	}
+
+	/**
+	 * Advises all the columns of this set for random lookups, unless a scan is reading it: the
+	 * read-ahead of the scan is worth more than the pages a lookup would spare.
+	 */
+	public void adviseLookup() {
+		if (this.scans.get() == 0) {
+			advise(AccessPattern.RANDOM);
+		}
+	}
+
+	/**
+	 * Lets a manager demote the columns of this set that are not accessed anymore.
+	 *
+	 * @param manager The manager watching the chunks
+	 */
+	public void register(final ColdChunkManager manager) {
+		for (final IntegerChunk attribute : this.attributes) {
+			manager.register(attribute);
+		}
+		for (final DoubleChunk value : this.values) {
+			manager.register(value);
+		}
+	}
+
+	/**
+	 * Locks an attribute column of this set in RAM.
+	 *
+	 * @param column The attribute column
+	 * @param pinner The pinner locking the column
+	 * @return true if the column is pinned, false if it does not fit in the budget of the pinner
+	 */
+	public boolean pinAttribute(final int column, final ChunkPinner pinner) {
+		return pinner.pin(this.attributes[column]);
+	}
+
+	/**
+	 * Unlocks an attribute column of this set.
+	 *
+	 * @param column The attribute column
+	 * @param pinner The pinner that locked the column
+	 */
+	public void unpinAttribute(final int column, final ChunkPinner pinner) {
+		pinner.unpin(this.attributes[column]);
+	}
+
+	/**
+	 * @param column The attribute column
+	 * @return the fraction of the column currently in RAM
+	 */
+	public double attributeResidency(final int column) {
+		return this.attributes[column].residency();
+	}
+
+	/**
+	 * @param column The value column
+	 * @return the fraction of the column currently in RAM
+	 */
+	public double valueResidency(final int column) {
+		return this.values[column].residency();
+	}
+
+	/**
+	 * @return the fraction of all the columns currently in RAM, each column having the same weight
+	 */
+	public double residency() {
+		final int columns = this.attributes.length + this.values.length;
+		if (columns == 0) {
+			return 1d;
+		}
+		double sum = 0;
+		for (final IntegerChunk attribute : this.attributes) {
+			sum += attribute.residency();
+		}
+		for (final DoubleChunk value : this.values) {
+			sum += value.residency();
+		}
+		return sum / columns;
+	}
+
 	@Override
 	public BitSet findRows(int[] predicate, int limit) {
 		BitSet result = null;
@@ -97,4 +236,94 @@ public class ChunkSet implements IChunkSet {
 		return result;
 	}
 
+	@Override
+	public boolean findRows(int[] predicate, int limit, long[] words, int wordOffset) {
+		if (limit == 0) {
+			return false;
+		}
+		final int fullWords = limit >>> 6;
+		final long lastRows = (1L << (limit & 63)) - 1;
+		boolean filtered = false;
+		for (int p = 0; p < predicate.length; p++) {
+			final int value = predicate[p];
+			if (value < 0) {
+				// no condition
+				continue;
+			}
+			if (!filtered) {
+				// The first column is OR-ed into empty words
+				Arrays.fill(words, wordOffset, wordOffset + fullWords, 0L);
+				if (lastRows != 0) {
+					words[wordOffset + fullWords] &= ~lastRows;
+				}
+			}
+			final Op op = filtered ? Op.AND : Op.OR;
+			if (!this.attributes[p].findRows(value, limit, words, wordOffset, op)) {
+				return false;
+			}
+			filtered = true;
+		}
+
+		if (!filtered) {
+			Arrays.fill(words, wordOffset, wordOffset + fullWords, -1L);
+			if (lastRows != 0) {
+				words[wordOffset + fullWords] |= lastRows;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Seals the columns of this set, that must not be written anymore.
+	 *
+	 * <p>The pinned attribute columns are left as they are: sealing would move them to memory that
+	 * is not locked.
+	 *
+	 * @param sealer The sealer re-encoding the columns
+	 * @param pinnedAttributes The attribute columns pinned in RAM
+	 */
+	public void seal(final ChunkSealer sealer, final BitSet pinnedAttributes) {
+		if (this.sealer != null) {
+			return;
+		}
+		this.sealer = sealer;
+		for (int i = 0; i < this.attributes.length; i++) {
+			if (pinnedAttributes.get(i)) {
+				continue;
+			}
+			final IntegerChunk sealed = sealer.seal(this.attributes[i]);
+			if (sealed != this.attributes[i]) {
+				this.allocator.release(this.attributes[i]);
+				this.attributes[i] = sealed;
+				this.sealedAttributes.set(i);
+			}
+		}
+		for (int i = 0; i < this.values.length; i++) {
+			final DoubleChunk sealed = sealer.seal(this.values[i]);
+			if (sealed != this.values[i]) {
+				this.allocator.release(this.values[i]);
+				this.values[i] = sealed;
+				this.sealedValues.set(i);
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		for (int i = 0; i < this.attributes.length; i++) {
+			if (this.sealedAttributes.get(i)) {
+				this.sealer.release(this.attributes[i]);
+			} else {
+				this.allocator.release(this.attributes[i]);
+			}
+		}
+		for (int i = 0; i < this.values.length; i++) {
+			if (this.sealedValues.get(i)) {
+				this.sealer.release(this.values[i]);
+			} else {
+				this.allocator.release(this.values[i]);
+			}
+		}
+	}
+
 }
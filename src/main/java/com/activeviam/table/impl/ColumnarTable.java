@@ -1,12 +1,17 @@
 package com.activeviam.table.impl;
 
 import static java.lang.Math.min;
+import com.activeviam.chunk.ChunkPinner;
+import com.activeviam.chunk.ChunkSealer;
+import com.activeviam.chunk.ColdChunkManager;
 import com.activeviam.chunk.IChunkAllocator;
 import com.activeviam.chunk.OnHeapAllocator;
 import com.activeviam.table.IRecord;
 import com.activeviam.table.IWritableTable;
+import java.io.Closeable;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -16,7 +21,10 @@ import java.util.stream.Stream;
  *
  * @author ActiveViam
  */
-public class ColumnarTable implements IWritableTable {
+public class ColumnarTable implements IWritableTable, Closeable {
+
+	/** Class logger */
+	private static final Logger logger = Logger.getLogger("table");
 
 	/**
 	 * The size of {@link IRecord#getAttributes()}
@@ -45,6 +53,18 @@ public class ColumnarTable implements IWritableTable {
 
 	protected final ITableWriter writer;
 
+	/** Demotes the chunks that are not accessed anymore, null if none */
+	protected ColdChunkManager coldChunkManager;
+
+	/** Locks the {@link #pinnedAttributes} in RAM, null if none */
+	protected ChunkPinner pinner;
+
+	/** The attribute columns kept in RAM, in all the chunks */
+	protected final BitSet pinnedAttributes = new BitSet();
+
+	/** Seals the chunks once they are full, null to keep them as allocated */
+	protected ChunkSealer sealer;
+
 	public ColumnarTable(TableFormat format) {
 		this(format, new OnHeapAllocator());
 	}
@@ -130,13 +150,104 @@ public class ColumnarTable implements IWritableTable {
 			return;
 		}
 
+		// Release the chunks that are dropped
+		for (int i = numChunks; i < numOldChunks; ++i) {
+			oldChunks[i].close();
+		}
 		final ChunkSet[] newChunks = Arrays.copyOf(oldChunks, numChunks);
 		for (int i = numOldChunks; i < numChunks; ++i) {
 			newChunks[i] = new ChunkSet(attributeCount, valueCount, 1 << chunkOrder, allocator);
+			if (this.coldChunkManager != null) {
+				newChunks[i].register(this.coldChunkManager);
+			}
+			for (int p = this.pinnedAttributes.nextSetBit(0); p >= 0;
+					p = this.pinnedAttributes.nextSetBit(p + 1)) {
+				if (!newChunks[i].pinAttribute(p, this.pinner)) {
+					logger.warning("Attribute " + p + " of chunk " + i + " exceeds the pinning budget");
+				}
+			}
 		}
 		this.chunks = newChunks;
 	}
 
+	/**
+	 * Lets a manager demote the chunks of this table that are not accessed anymore, including the
+	 * chunks allocated later.
+	 *
+	 * @param manager The manager watching the chunks
+	 */
+	public void setColdChunkManager(final ColdChunkManager manager) {
+		this.coldChunkManager = manager;
+		for (final ChunkSet chunk : this.chunks) {
+			chunk.register(manager);
+		}
+	}
+
+	/**
+	 * Locks an attribute column in RAM, in all the chunks of this table including the chunks
+	 * allocated later, so that filtering on it never waits for the disk.
+	 *
+	 * @param column The attribute column
+	 * @param pinner The pinner locking the column, the same for all the columns of this table
+	 * @return true if the column is pinned in all the chunks, false if the budget of the pinner was
+	 *         exhausted before
+	 */
+	public boolean pinAttribute(final int column, final ChunkPinner pinner) {
+		if (this.pinner != null && this.pinner != pinner) {
+			throw new IllegalStateException("The table already pins its columns with another pinner");
+		}
+		this.pinner = pinner;
+		this.pinnedAttributes.set(column);
+		boolean pinned = true;
+		for (final ChunkSet chunk : this.chunks) {
+			pinned &= chunk.pinAttribute(column, pinner);
+		}
+		return pinned;
+	}
+
+	/**
+	 * Unlocks an attribute column locked by {@link #pinAttribute(int, ChunkPinner)}.
+	 *
+	 * @param column The attribute column
+	 */
+	public void unpinAttribute(final int column) {
+		if (this.pinnedAttributes.get(column)) {
+			this.pinnedAttributes.clear(column);
+			for (final ChunkSet chunk : this.chunks) {
+				chunk.unpinAttribute(column, this.pinner);
+			}
+		}
+	}
+
+	/**
+	 * Re-encodes the chunks of this table once they are full, as this table only appends
+	 * rows. The chunks already full are sealed right away.
+	 *
+	 * @param sealer The sealer re-encoding the chunks, null to stop sealing the next chunks
+	 */
+	public void setChunkSealer(final ChunkSealer sealer) {
+		this.sealer = sealer;
+		if (sealer != null) {
+			final int fullChunks = this.size >>> this.chunkOrder;
+			for (int c = 0; c < fullChunks; c++) {
+				this.chunks[c].seal(sealer, this.pinnedAttributes);
+			}
+		}
+	}
+
+	/**
+	 * Releases all the chunks of this table, which becomes empty.
+	 *
+	 * <p>
+	 *   This method is not thread-safe.
+	 * </p>
+	 */
+	@Override
+	public void close() {
+		setChunkCount(0);
+		this.size = 0;
+	}
+
 	/**
 	 * Returns the smallest integer k such as 2^k &ge; value.
 	 * @param value A positive integer
@@ -165,6 +276,7 @@ public class ColumnarTable implements IWritableTable {
 		final int chunkId = row >>> this.chunkOrder;
 		final int chunkRow = row & this.chunkMask;
 		final ChunkSet chunk = this.chunks[chunkId];
+		chunk.adviseLookup();
 
 		final int[] attributes = new int[attributeCount];
 		final double[] values = new double[valueCount];
@@ -198,16 +310,32 @@ public class ColumnarTable implements IWritableTable {
 		}
 
 		this.size = currentSize + 1;
+		if (this.sealer != null && (currentSize & this.chunkMask) == this.chunkMask) {
+			// The chunk is full, and rows are only appended
+			this.chunks[currentSize >>> this.chunkOrder].seal(this.sealer, this.pinnedAttributes);
+		}
 		return currentSize;
 	}
 
 	@Override
 	public BitSet findRows(int[] predicate) {
+		if ((this.chunkSize & (Long.SIZE - 1)) == 0) {
+			final long[] words = new long[(this.size + Long.SIZE - 1) >>> 6];
+			return findRows(predicate, words) ? BitSet.valueOf(words) : new BitSet();
+		}
+
+		// The chunks do not start at a word of the bitmap
 		final BitSet result = new BitSet();
 		int rowsToScan = size;
 		int c = 0;
 		while (rowsToScan > 0) {
-			final BitSet localRows = chunks[c].findRows(predicate, min(rowsToScan, chunkSize));
+			final BitSet localRows;
+			chunks[c].beginScan(predicate);
+			try {
+				localRows = chunks[c].findRows(predicate, min(rowsToScan, chunkSize));
+			} finally {
+				chunks[c].endScan();
+			}
 			final int offset = c * chunkSize;
 			localRows.stream().forEach(localRow -> result.set(localRow + offset));
 			++c;
@@ -216,6 +344,111 @@ public class ColumnarTable implements IWritableTable {
 		return result;
 	}
 
+	/**
+	 * Finds the rows whose attributes match the given predicate, and writes them into the words of a
+	 * bitmap owned by the caller. The chunks combine their matches into the words directly, so that
+	 * the scan allocates nothing and copies no bit.
+	 *
+	 * <p>Only available when the chunk size is a multiple of 64, so that each chunk starts at a word.
+	 *
+	 * @param predicate the predicate, as for {@link #findRows(int[])}
+	 * @param words receives the rows, row {@code i} being bit {@code i % 64} of word {@code i / 64}.
+	 *        It must hold at least {@link #size()} bits.
+	 * @return true if any row matches the predicate
+	 */
+	public boolean findRows(final int[] predicate, final long[] words) {
+		if ((this.chunkSize & (Long.SIZE - 1)) != 0) {
+			throw new IllegalStateException(
+					"Cannot scan chunks of " + this.chunkSize + " rows into words of 64 rows");
+		}
+		boolean any = false;
+		int rowsToScan = this.size;
+		int c = 0;
+		while (rowsToScan > 0) {
+			final int limit = min(rowsToScan, this.chunkSize);
+			this.chunks[c].beginScan(predicate);
+			try {
+				any |= this.chunks[c].findRows(predicate, limit, words, (c << this.chunkOrder) >>> 6);
+			} finally {
+				this.chunks[c].endScan();
+			}
+			++c;
+			rowsToScan -= this.chunkSize;
+		}
+		return any;
+	}
+
+	/**
+	 * Returns, for each chunk, the fraction of an attribute column currently in RAM.
+	 *
+	 * @param column The attribute column
+	 * @return the residency of the column, by chunk
+	 */
+	public double[] getAttributeResidency(final int column) {
+		final ChunkSet[] chunks = this.chunks;
+		final double[] residency = new double[chunks.length];
+		for (int c = 0; c < chunks.length; c++) {
+			residency[c] = chunks[c].attributeResidency(column);
+		}
+		return residency;
+	}
+
+	/**
+	 * Returns, for each chunk, the fraction of a value column currently in RAM.
+	 *
+	 * @param column The value column
+	 * @return the residency of the column, by chunk
+	 */
+	public double[] getValueResidency(final int column) {
+		final ChunkSet[] chunks = this.chunks;
+		final double[] residency = new double[chunks.length];
+		for (int c = 0; c < chunks.length; c++) {
+			residency[c] = chunks[c].valueResidency(column);
+		}
+		return residency;
+	}
+
+	/**
+	 * Returns, for each chunk, the fraction of all its columns currently in RAM.
+	 *
+	 * @return the residency of the chunks
+	 */
+	public double[] getChunkResidency() {
+		final ChunkSet[] chunks = this.chunks;
+		final double[] residency = new double[chunks.length];
+		for (int c = 0; c < chunks.length; c++) {
+			residency[c] = chunks[c].residency();
+		}
+		return residency;
+	}
+
+	/**
+	 * Orders the chunks so that a scan with the given predicate starts with the chunks whose
+	 * filtered columns are the most in RAM, and hits the disk last.
+	 *
+	 * @param predicate the predicate of the scan, as given to {@link #findRows(int[])}
+	 * @return the ids of the chunks, from the most resident to the least resident
+	 */
+	public int[] getChunksByResidency(final int[] predicate) {
+		final ChunkSet[] chunks = this.chunks;
+		final double[] residency = new double[chunks.length];
+		for (int c = 0; c < chunks.length; c++) {
+			int columns = 0;
+			for (int p = 0; p < predicate.length; p++) {
+				if (predicate[p] >= 0) {
+					residency[c] += chunks[c].attributeResidency(p);
+					columns++;
+				}
+			}
+			residency[c] = columns == 0 ? chunks[c].residency() : residency[c] / columns;
+		}
+		return IntStream.range(0, chunks.length)
+				.boxed()
+				.sorted((c1, c2) -> Double.compare(residency[c2], residency[c1]))
+				.mapToInt(Integer::intValue)
+				.toArray();
+	}
+
 	/**
 	 * Writer to efficiently add a new row in the table.
 	 *
@@ -0,0 +1,100 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import com.activeviam.chunk.IntegerChunk.Op;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link RowFinder} comparing as many ints per instruction as the preferred vector size of the
+ * processor holds, 8 with AVX2 or 16 with AVX-512. The mask of each comparison is shifted into the
+ * word of its rows, the number of lanes dividing 64. Off-heap memory is left to the scalar loop.
+ *
+ * <p>Loaded by {@link RowFinder#getInstance()} only when the {@code jdk.incubator.vector} module is
+ * available.
+ *
+ * @author ActiveViam
+ */
+class VectorRowFinder extends RowFinder {
+
+  private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+  /** Lane {@code i} holds {@code 1 << i}, the bit of the lane in the mask of a comparison */
+  private static final IntVector LANE_BITS =
+      IntVector.broadcast(SPECIES, 1)
+          .lanewise(VectorOperators.LSHL, IntVector.zero(SPECIES).addIndex(1));
+
+  private static final IntVector ZERO = IntVector.zero(SPECIES);
+
+  private static final ScalarRowFinder SCALAR = new ScalarRowFinder();
+
+  /**
+   * @param vector the values of a few rows
+   * @param value the searched value
+   * @return the bits of the rows equal to the value
+   */
+  private static long matches(final IntVector vector, final int value) {
+    // VectorMask.toLong is not an intrinsic before JDK 19, unlike a blend and a reduction
+    return ZERO.blend(LANE_BITS, vector.eq(value)).reduceLanes(VectorOperators.OR) & 0xFFFFFFFFL;
+  }
+
+  @Override
+  public boolean findRows(
+      final int[] array,
+      final int value,
+      final int limit,
+      final long[] words,
+      final int wordOffset,
+      final Op op) {
+    final int lanes = SPECIES.length();
+    boolean any = false;
+    for (int start = 0; start < limit; start += Long.SIZE) {
+      final int word = wordOffset + (start >>> 6);
+      if (op == Op.AND && words[word] == 0) {
+        // No row left to keep
+        continue;
+      }
+      final int count = Math.min(Long.SIZE, limit - start);
+      long matches = 0;
+      int i = 0;
+      for (; i + lanes <= count; i += lanes) {
+        matches |= matches(IntVector.fromArray(SPECIES, array, start + i), value) << i;
+      }
+      for (; i < count; i++) {
+        matches |= ScalarRowFinder.equal(array[start + i], value) << i;
+      }
+      any |= store(words, word, matches, count, op);
+    }
+    return any;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The Vector API of this JDK only loads from arrays and byte buffers, and wrapping the memory
+   * in a buffer would allocate on each call: off-heap memory is searched by the SWAR loop of {@link
+   * ScalarRowFinder}, which compares two ints per 64-bit load.
+   */
+  @Override
+  public boolean findRows(
+      final long address,
+      final int value,
+      final int limit,
+      final long[] words,
+      final int wordOffset,
+      final Op op) {
+    return SCALAR.findRows(address, value, limit, words, wordOffset, op);
+  }
+
+  @Override
+  public String toString() {
+    return "vector" + SPECIES.length();
+  }
+}
@@ -5,7 +5,12 @@
  * reproduction or transfer of this material is strictly prohibited
  */
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 import com.activeviam.MemoryAllocator;
+import com.activeviam.UnsafeUtil;
+import com.activeviam.platform.AccessPattern;
+import com.activeviam.platform.LinuxPlatform;
 import com.activeviam.reference.MemoryAllocatorOnFile;
 import java.nio.file.Path;
 import org.junit.jupiter.api.Test;
@@ -24,4 +29,24 @@ public class TestMemoryAllocatorOnFile {
     allocator.freeMemory(ptr1, alloc1);
     allocator.freeMemory(ptr2, alloc2);
   }
+
+  @Test
+  void testPrefault(@TempDir Path tempDir) {
+    try (final var allocator = new MemoryAllocatorOnFile(tempDir)) {
+      final var bytes = 64 * MemoryAllocator.PAGE_SIZE;
+      final var ptr = allocator.allocateMemory(bytes);
+      final var platform = LinuxPlatform.getInstance();
+      // No readahead, so that the write only faults in its own page
+      platform.madvise(ptr, bytes, AccessPattern.RANDOM);
+      UnsafeUtil.putLong(ptr + 3 * MemoryAllocator.PAGE_SIZE, 42L);
+      assertThat(platform.residentBytes(ptr, bytes)).isLessThan(bytes);
+      allocator.prefault(ptr, bytes, 4).join();
+      // All the pages were faulted in
+      assertThat(platform.residentBytes(ptr, bytes)).isEqualTo(bytes);
+      // The content is kept
+      assertThat(UnsafeUtil.getLong(ptr + 3 * MemoryAllocator.PAGE_SIZE)).isEqualTo(42L);
+      assertThat(UnsafeUtil.getLong(ptr + 4 * MemoryAllocator.PAGE_SIZE)).isEqualTo(0L);
+      allocator.freeMemory(ptr, bytes);
+    }
+  }
 }
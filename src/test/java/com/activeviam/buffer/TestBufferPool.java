@@ -0,0 +1,124 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.buffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.activeviam.MemoryAllocator;
+import com.activeviam.UnsafeUtil;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestBufferPool {
+
+  private static final int PAGE_SIZE = (int) MemoryAllocator.PAGE_SIZE;
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testPagesSurviveEviction() {
+    try (final var pool = new BufferPool(this.tempDir, 3, PAGE_SIZE)) {
+      final long[] pages = new long[10];
+      for (int i = 0; i < pages.length; i++) {
+        pages[i] = pool.allocatePage();
+        final long address = pool.pin(pages[i]);
+        assertThat(UnsafeUtil.getLong(address + 8)).isEqualTo(0L);
+        UnsafeUtil.putLong(address + 8, i + 1);
+        pool.unpin(pages[i], true);
+      }
+      assertThat(pool.getEvictionCount()).isGreaterThanOrEqualTo(7L);
+
+      for (int i = 0; i < pages.length; i++) {
+        final long address = pool.pin(pages[i]);
+        assertThat(UnsafeUtil.getLong(address + 8)).isEqualTo(i + 1L);
+        pool.unpin(pages[i], false);
+      }
+      assertThat(pool.getWriteCount()).isGreaterThanOrEqualTo(7L);
+    }
+  }
+
+  @Test
+  void testPinnedPagesAreNotEvicted() {
+    try (final var pool = new BufferPool(this.tempDir, 2, PAGE_SIZE)) {
+      final long first = pool.allocatePage();
+      final long second = pool.allocatePage();
+      final long third = pool.allocatePage();
+      final long address = pool.pin(first);
+      pool.pin(second);
+      assertThatThrownBy(() -> pool.pin(third)).isInstanceOf(IllegalStateException.class);
+
+      pool.unpin(second, false);
+      pool.pin(third);
+      // The first page stayed in its frame
+      assertThat(pool.pin(first)).isEqualTo(address);
+      assertThat(pool.getHitCount()).isEqualTo(1L);
+    }
+  }
+
+  @Test
+  void testFreedPagesAreReused() {
+    try (final var pool = new BufferPool(this.tempDir, 2, PAGE_SIZE)) {
+      final long page = pool.allocatePage();
+      UnsafeUtil.putLong(pool.pin(page), 42L);
+      pool.unpin(page, true);
+      pool.freePage(page);
+
+      assertThat(pool.allocatePage()).isEqualTo(page);
+      assertThat(UnsafeUtil.getLong(pool.pin(page))).isEqualTo(0L);
+    }
+  }
+
+  @Test
+  void testConcurrentPinsKeepTheWrites() throws Exception {
+    final int threads = 4;
+    final int pagesPerThread = 4;
+    final int increments = 2_000;
+    try (final var pool = new BufferPool(this.tempDir, 2 * threads, PAGE_SIZE, 1)) {
+      final long[] pages = new long[threads * pagesPerThread];
+      for (int i = 0; i < pages.length; i++) {
+        pages[i] = pool.allocatePage();
+      }
+      final ExecutorService executor = Executors.newFixedThreadPool(threads);
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        final int first = t * pagesPerThread;
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < increments; i++) {
+                    // Writes its own pages, and reads the pages of the others
+                    final long page = pages[first + i % pagesPerThread];
+                    final long address = pool.pin(page);
+                    UnsafeUtil.putLong(address, UnsafeUtil.getLong(address) + 1);
+                    pool.unpin(page, true);
+                    final long other = pages[(first + pagesPerThread + i) % pages.length];
+                    UnsafeUtil.getLong(pool.pin(other));
+                    pool.unpin(other, false);
+                  }
+                }));
+      }
+      for (final Future<?> future : futures) {
+        future.get();
+      }
+      executor.shutdown();
+
+      for (final long page : pages) {
+        assertThat(UnsafeUtil.getLong(pool.pin(page))).isEqualTo(increments / pagesPerThread);
+        pool.unpin(page, false);
+      }
+      assertThat(pool.getEvictionCount()).isPositive();
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import com.activeviam.UnsafeUtil;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to find the rows of a chunk of ints equal to a value, at several selectivities: setting the
+ * bits one by one, the {@link ScalarRowFinder scalar loop} filling whole words, and the {@link
+ * RowFinder#getInstance() default finder}, using the Vector API when available.
+ *
+ * <p>The off-heap benchmarks compare the former loop of {@link FileIntegerChunk}, branching on each
+ * int, with the SWAR loop of {@link ScalarRowFinder} comparing two ints per 64-bit load.
+ *
+ * <pre>
+ * mvn test-compile
+ * java --add-modules jdk.incubator.vector -cp ... org.openjdk.jmh.Main FindRowsBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FindRowsBenchmark {
+
+  private static final sun.misc.Unsafe UNSAFE = UnsafeUtil.getUnsafe();
+
+  private static final int CAPACITY = 1 << 16;
+
+  /** The fraction of the rows matching the searched value */
+  @Param({"0.001", "0.01", "0.1", "0.5"})
+  public double selectivity;
+
+  private int[] array;
+  private long address;
+  private RowFinder scalar;
+  private RowFinder finder;
+
+  @Setup
+  public void setUp() {
+    final SplittableRandom random = new SplittableRandom(0);
+    this.array = new int[CAPACITY];
+    for (int i = 0; i < CAPACITY; i++) {
+      this.array[i] = random.nextDouble() < this.selectivity ? 0 : 1 + random.nextInt(100);
+    }
+    this.address = UNSAFE.allocateMemory((long) CAPACITY * Integer.BYTES);
+    for (int i = 0; i < CAPACITY; i++) {
+      UNSAFE.putInt(this.address + (long) i * Integer.BYTES, this.array[i]);
+    }
+    this.scalar = new ScalarRowFinder();
+    this.finder = RowFinder.getInstance();
+  }
+
+  @Benchmark
+  public BitSet bitByBit() {
+    BitSet result = null;
+    final int[] array = this.array;
+    for (int i = 0; i < CAPACITY; i++) {
+      if (array[i] == 0) {
+        if (result == null) {
+          result = new BitSet();
+        }
+        result.set(i);
+      }
+    }
+    return result;
+  }
+
+  @Benchmark
+  public BitSet scalar() {
+    return this.scalar.findRows(this.array, 0, CAPACITY);
+  }
+
+  @Benchmark
+  public BitSet vector() {
+    return this.finder.findRows(this.array, 0, CAPACITY);
+  }
+
+  @Benchmark
+  public BitSet offHeapBitByBit() {
+    BitSet result = null;
+    long addr = this.address;
+    for (int i = 0; i < CAPACITY; i++) {
+      if (UNSAFE.getInt(addr) == 0) {
+        if (result == null) {
+          result = new BitSet();
+        }
+        result.set(i);
+      }
+      addr += Integer.BYTES;
+    }
+    return result;
+  }
+
+  @Benchmark
+  public BitSet offHeapSwar() {
+    return this.scalar.findRows(this.address, 0, CAPACITY);
+  }
+
+  @TearDown
+  public void tearDown() {
+    UNSAFE.freeMemory(this.address);
+  }
+}
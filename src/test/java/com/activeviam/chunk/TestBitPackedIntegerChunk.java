@@ -0,0 +1,111 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+public class TestBitPackedIntegerChunk implements SpecTestIntegerChunk {
+
+  @Override
+  public IntegerChunk createChunk(int capacity) {
+    return new BitPackedIntegerChunk(capacity);
+  }
+
+  @Test
+  void testWidthOf() {
+    assertThat(BitPackedIntegerChunk.widthOf(0)).isEqualTo(0);
+    assertThat(BitPackedIntegerChunk.widthOf(1)).isEqualTo(1);
+    assertThat(BitPackedIntegerChunk.widthOf(3)).isEqualTo(2);
+    assertThat(BitPackedIntegerChunk.widthOf(4)).isEqualTo(4);
+    assertThat(BitPackedIntegerChunk.widthOf(255)).isEqualTo(8);
+    assertThat(BitPackedIntegerChunk.widthOf(65_535)).isEqualTo(16);
+    assertThat(BitPackedIntegerChunk.widthOf(65_536)).isEqualTo(32);
+    assertThat(BitPackedIntegerChunk.widthOf(Integer.MAX_VALUE)).isEqualTo(32);
+  }
+
+  @Test
+  void testWidenKeepsTheValues() {
+    final var chunk = new BitPackedIntegerChunk(100);
+    assertThat(chunk.getBitWidth()).isEqualTo(0);
+    assertThat(chunk.sizeInBytes()).isEqualTo(0L);
+    chunk.writeInt(7, 1);
+    assertThat(chunk.getBitWidth()).isEqualTo(1);
+    chunk.writeInt(8, 200);
+    assertThat(chunk.getBitWidth()).isEqualTo(8);
+    chunk.writeInt(9, 40_000);
+    assertThat(chunk.getBitWidth()).isEqualTo(16);
+    assertThat(chunk.sizeInBytes()).isEqualTo(200L);
+    assertThat(chunk.readInt(7)).isEqualTo(1);
+    assertThat(chunk.readInt(8)).isEqualTo(200);
+    assertThat(chunk.readInt(9)).isEqualTo(40_000);
+    assertThat(chunk.readInt(10)).isEqualTo(0);
+
+    assertThatThrownBy(() -> chunk.writeInt(0, -1)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void testFindRowsForAllWidths() {
+    final SplittableRandom random = new SplittableRandom(7);
+    for (final int max : new int[] {0, 1, 3, 15, 255, 65_535, Integer.MAX_VALUE}) {
+      final int capacity = 1000;
+      final var chunk = new BitPackedIntegerChunk(capacity);
+      final var reference = new HeapIntegerChunk(capacity);
+      for (int i = 0; i < capacity; i++) {
+        // Few distinct values, so that they match
+        final int value = max == 0 ? 0 : max - random.nextInt(Math.min(max, 4) + 1);
+        chunk.writeInt(i, value);
+        reference.writeInt(i, value);
+      }
+      for (int value = max; value >= Math.max(0, max - 5); value--) {
+        for (final int limit : new int[] {0, 1, 63, 999, capacity}) {
+          final BitSet expected = reference.findRows(value, limit);
+          assertThat(chunk.findRows(value, limit))
+              .as("max=%d, value=%d, limit=%d", max, value, limit)
+              .isEqualTo(expected);
+        }
+      }
+      assertThat(chunk.findRows(-1, capacity)).isNull();
+    }
+  }
+
+  @Test
+  void testFindRowsIntoWordsForAllWidths() {
+    final SplittableRandom random = new SplittableRandom(11);
+    for (final int max : new int[] {0, 1, 3, 15, 255, 65_535, Integer.MAX_VALUE}) {
+      final int capacity = 1000;
+      final var chunk = new BitPackedIntegerChunk(capacity);
+      final var reference = new HeapIntegerChunk(capacity);
+      for (int i = 0; i < capacity; i++) {
+        final int value = max == 0 ? 0 : max - random.nextInt(Math.min(max, 4) + 1);
+        chunk.writeInt(i, value);
+        reference.writeInt(i, value);
+      }
+      for (final IntegerChunk.Op op : IntegerChunk.Op.values()) {
+        for (final int limit : new int[] {0, 1, 63, 999, capacity}) {
+          final long[] words = new long[18];
+          for (int w = 0; w < words.length; w++) {
+            words[w] = random.nextLong();
+          }
+          final long[] expected = words.clone();
+          final boolean any = reference.findRows(max, limit, expected, 1, op);
+          assertThat(chunk.findRows(max, limit, words, 1, op))
+              .as("max=%d, op=%s, limit=%d", max, op, limit)
+              .isEqualTo(any);
+          assertThat(BitSet.valueOf(words))
+              .as("max=%d, op=%s, limit=%d", max, op, limit)
+              .isEqualTo(BitSet.valueOf(expected));
+        }
+      }
+    }
+  }
+}
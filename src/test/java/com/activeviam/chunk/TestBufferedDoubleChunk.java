@@ -0,0 +1,39 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import com.activeviam.MemoryAllocator;
+import com.activeviam.buffer.BufferPool;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestBufferedDoubleChunk implements SpecTestDoubleChunk {
+
+  private BufferPool pool;
+
+  @TempDir static Path tempDir;
+
+  @BeforeEach
+  void createPool() {
+    // Fewer frames than the pages of the largest chunks, to go through evictions
+    this.pool = new BufferPool(tempDir, 2, (int) MemoryAllocator.PAGE_SIZE);
+  }
+
+  @AfterEach
+  void closePool() {
+    this.pool.close();
+    this.pool = null;
+  }
+
+  @Override
+  public DoubleChunk createChunk(int capacity) {
+    return new BufferedDoubleChunk(this.pool, capacity);
+  }
+}
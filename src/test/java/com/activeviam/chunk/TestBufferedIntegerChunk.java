@@ -0,0 +1,66 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.MemoryAllocator;
+import com.activeviam.buffer.BufferPool;
+import com.activeviam.chunk.IntegerChunk.Op;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestBufferedIntegerChunk implements SpecTestIntegerChunk {
+
+  private BufferPool pool;
+
+  @TempDir static Path tempDir;
+
+  @BeforeEach
+  void createPool() {
+    // Fewer frames than the pages of the largest chunks, to go through evictions
+    this.pool = new BufferPool(tempDir, 2, (int) MemoryAllocator.PAGE_SIZE);
+  }
+
+  @AfterEach
+  void closePool() {
+    this.pool.close();
+    this.pool = null;
+  }
+
+  @Override
+  public IntegerChunk createChunk(int capacity) {
+    return new BufferedIntegerChunk(this.pool, capacity);
+  }
+
+  @Test
+  void testFindRowsIntoWordsAcrossPages() {
+    // Four pages, with two frames
+    final int capacity = 4 * (int) MemoryAllocator.PAGE_SIZE / Integer.BYTES;
+    final IntegerChunk chunk = createChunk(capacity);
+    final IntegerChunk expected = new HeapIntegerChunk(capacity);
+    for (int i = 0; i < capacity; i++) {
+      chunk.writeInt(i, i % 5);
+      expected.writeInt(i, i % 5);
+    }
+    final int limit = capacity - 100;
+    final long[] words = new long[1 + capacity / Long.SIZE];
+    final long[] expectedWords = new long[words.length];
+    assertThat(chunk.findRows(3, limit, words, 1, Op.OR)).isTrue();
+    assertThat(expected.findRows(3, limit, expectedWords, 1, Op.OR)).isTrue();
+    assertThat(Arrays.equals(words, expectedWords)).isTrue();
+
+    assertThat(chunk.findRows(2, limit, words, 1, Op.AND)).isFalse();
+    assertThat(expected.findRows(2, limit, expectedWords, 1, Op.AND)).isFalse();
+    assertThat(Arrays.equals(words, expectedWords)).isTrue();
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.MemoryAllocator;
+import com.activeviam.reference.MemoryAllocatorOnFile;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestChunkPinner {
+
+  private static final int CAPACITY = (int) (4 * MemoryAllocator.PAGE_SIZE / Integer.BYTES);
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testPinWithinBudget() {
+    final long chunkBytes = 4 * MemoryAllocator.PAGE_SIZE;
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir);
+        final var pinner = new ChunkPinner(2 * chunkBytes)) {
+      final var first = new FileIntegerChunk(allocator, CAPACITY);
+      final var second = new FileIntegerChunk(allocator, CAPACITY);
+      final var third = new FileIntegerChunk(allocator, CAPACITY);
+
+      assertThat(pinner.pin(first)).isTrue();
+      // Locking the chunk brings all its pages in RAM
+      assertThat(first.residency()).isEqualTo(1d);
+      assertThat(pinner.pin(second)).isTrue();
+      assertThat(pinner.pin(third)).isFalse();
+      assertThat(pinner.getPinnedBytes()).isEqualTo(2 * chunkBytes);
+      assertThat(pinner.isPinned(third)).isFalse();
+
+      // Closing a chunk gives its memory back to the budget
+      first.close();
+      assertThat(pinner.getPinnedBytes()).isEqualTo(chunkBytes);
+      assertThat(pinner.pin(third)).isTrue();
+
+      pinner.unpin(second);
+      assertThat(pinner.getPinnedChunkCount()).isEqualTo(1);
+      second.close();
+      third.close();
+      assertThat(pinner.getPinnedBytes()).isEqualTo(0L);
+    }
+  }
+
+  @Test
+  void testBudgetBoundedByTheLimit() {
+    try (final var pinner = new ChunkPinner()) {
+      assertThat(pinner.getBudget()).isGreaterThan(0);
+      assertThat(pinner.pin(new HeapIntegerChunk(16))).isTrue();
+      assertThat(pinner.getPinnedBytes()).isEqualTo(0L);
+    }
+  }
+
+  @Test
+  void testOnePinnerPerChunk() {
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir);
+        final var first = new ChunkPinner();
+        final var second = new ChunkPinner()) {
+      final var chunk = new FileIntegerChunk(allocator, CAPACITY);
+      assertThat(first.pin(chunk)).isTrue();
+      // The first unpin would unlock the chunk for both pinners
+      assertThat(second.pin(chunk)).isFalse();
+      assertThat(second.getPinnedBytes()).isEqualTo(0L);
+
+      first.unpin(chunk);
+      assertThat(second.pin(chunk)).isTrue();
+      chunk.close();
+      assertThat(second.getPinnedChunkCount()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  void testPinSparseChunksThroughTheirDenseChunk() {
+    final long chunkBytes = 4 * MemoryAllocator.PAGE_SIZE;
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir);
+        final var pinner = new ChunkPinner()) {
+      final var sparse = new SparseIntegerChunk(CAPACITY, 0, 0, new FileChunkAllocator(allocator));
+      assertThat(pinner.pin(sparse)).isTrue();
+      assertThat(pinner.isPinned(sparse)).isTrue();
+      assertThat(pinner.getPinnedBytes()).isEqualTo(0L);
+
+      // Becoming dense pins the dense chunk
+      sparse.writeInt(1, 2);
+      assertThat(sparse.isDense()).isTrue();
+      assertThat(pinner.getPinnedBytes()).isEqualTo(chunkBytes);
+
+      pinner.unpin(sparse);
+      assertThat(pinner.isPinned(sparse)).isFalse();
+      assertThat(pinner.getPinnedBytes()).isEqualTo(0L);
+      assertThat(pinner.pin(sparse)).isTrue();
+      assertThat(pinner.getPinnedBytes()).isEqualTo(chunkBytes);
+      sparse.close();
+      assertThat(pinner.getPinnedBytes()).isEqualTo(0L);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.activeviam.platform.AccessPattern;
+import com.activeviam.reference.MemoryAllocatorOnFile;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestColdChunkManager {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testColdChunksAreDemotedOnce() {
+    // Long enough for the background clock of other managers to never make the chunk cold
+    final int coldEpochs = (int) (TimeUnit.HOURS.toMillis(1) / ColdChunkManager.EPOCH_MILLIS);
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir);
+        final var manager = new ColdChunkManager(1, TimeUnit.HOURS, AccessPattern.PAGEOUT, false)) {
+      final var chunk = new FileIntegerChunk(allocator, 1024);
+      chunk.writeInt(12, 34);
+      chunk.findRows(34, 1024);
+      manager.register(chunk);
+      manager.register(new HeapIntegerChunk(1024));
+      assertThat(manager.getChunkCount()).isEqualTo(1);
+
+      manager.demoteColdChunks();
+      assertThat(manager.getDemotionCount()).isEqualTo(0L);
+      ColdChunkManager.advanceEpochs(coldEpochs);
+      manager.demoteColdChunks();
+      assertThat(manager.getDemotionCount()).isEqualTo(1L);
+      ColdChunkManager.advanceEpochs(coldEpochs);
+      manager.demoteColdChunks();
+      assertThat(manager.getDemotionCount()).isEqualTo(1L);
+
+      // Scanning the chunk makes it hot again
+      assertThat(chunk.findRows(34, 1024).get(12)).isTrue();
+      manager.demoteColdChunks();
+      assertThat(manager.getDemotionCount()).isEqualTo(1L);
+      ColdChunkManager.advanceEpochs(coldEpochs);
+      manager.demoteColdChunks();
+      assertThat(manager.getDemotionCount()).isEqualTo(2L);
+
+      // Closing the chunk stops watching it
+      chunk.close();
+      assertThat(manager.getChunkCount()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  void testSampledReadsOfSingleValues() {
+    final int coldEpochs = (int) (TimeUnit.HOURS.toMillis(1) / ColdChunkManager.EPOCH_MILLIS);
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir);
+        final var manager = new ColdChunkManager(1, TimeUnit.HOURS, AccessPattern.PAGEOUT, false)) {
+      final var chunk = new FileDoubleChunk(allocator, 1024);
+      manager.register(chunk);
+      ColdChunkManager.advanceEpochs(coldEpochs);
+
+      // One read in 64 records an access
+      for (int i = 1; i < 64; i++) {
+        chunk.readDouble(i);
+      }
+      manager.demoteColdChunks();
+      assertThat(manager.getDemotionCount()).isEqualTo(1L);
+      ColdChunkManager.advanceEpochs(coldEpochs);
+      for (int i = 0; i < 1024; i++) {
+        chunk.readDouble(i);
+      }
+      manager.demoteColdChunks();
+      assertThat(manager.getDemotionCount()).isEqualTo(1L);
+      chunk.close();
+    }
+  }
+
+  @Test
+  void testFailingChunksDoNotStopTheDemotions() {
+    final int coldEpochs = (int) (TimeUnit.HOURS.toMillis(1) / ColdChunkManager.EPOCH_MILLIS);
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir);
+        final var manager = new ColdChunkManager(1, TimeUnit.HOURS, AccessPattern.PAGEOUT, false)) {
+      final var failing =
+          new FileIntegerChunk(allocator, 1024) {
+            @Override
+            public void advise(final AccessPattern pattern) {
+              throw new IllegalStateException("Cannot advise " + pattern);
+            }
+          };
+      final var chunk = new FileIntegerChunk(allocator, 1024);
+      manager.register(failing);
+      manager.register(chunk);
+      ColdChunkManager.advanceEpochs(coldEpochs);
+
+      manager.demoteColdChunks();
+      assertThat(manager.getDemotionCount()).isEqualTo(1L);
+      assertThat(manager.getChunkCount()).isEqualTo(2);
+      failing.close();
+      chunk.close();
+    }
+  }
+
+  @Test
+  void testOnlyDemotingPatterns() {
+    assertThatThrownBy(() -> new ColdChunkManager(1, TimeUnit.SECONDS, AccessPattern.RANDOM))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -7,10 +7,15 @@
 
 package com.activeviam.chunk;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.MemoryAllocator;
+import com.activeviam.platform.AccessPattern;
 import com.activeviam.reference.MemoryAllocatorOnFile;
 import java.nio.file.Path;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 public class TestFileIntegerChunk implements SpecTestIntegerChunk {
@@ -34,4 +39,28 @@ public class TestFileIntegerChunk implements SpecTestIntegerChunk {
   public IntegerChunk createChunk(int capacity) {
     return new FileIntegerChunk(this.allocator, capacity);
   }
+
+  @Test
+  void testAdviseKeepsTheContent() {
+    final var chunk = createChunk(1024);
+    chunk.writeInt(12, 34);
+    for (final AccessPattern pattern : AccessPattern.values()) {
+      chunk.advise(pattern);
+      assertThat(chunk.readInt(12)).isEqualTo(34);
+    }
+  }
+
+  @Test
+  void testResidency() {
+    final int perPage = (int) (MemoryAllocator.PAGE_SIZE / Integer.BYTES);
+    final var chunk = (FileIntegerChunk) createChunk(4 * perPage);
+    assertThat(chunk.residentBytes()).isEqualTo(0L);
+
+    // No readahead of the neighbour pages
+    chunk.advise(AccessPattern.RANDOM);
+    chunk.writeInt(2 * perPage + 5, 1);
+    assertThat(chunk.residencyBitmap().stream().toArray()).containsExactly(2);
+    assertThat(chunk.residentBytes()).isEqualTo(MemoryAllocator.PAGE_SIZE);
+    assertThat(chunk.residency()).isEqualTo(0.25);
+  }
 }
@@ -0,0 +1,127 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.activeviam.reference.MemoryAllocatorOnFile;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestFrameOfReferenceIntegerChunk {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testNarrowRangeOnHeap() {
+    final var chunk = new HeapIntegerChunk(1000);
+    for (int i = 0; i < 1000; i++) {
+      chunk.writeInt(i, 1_000_000 + i % 10);
+    }
+    final var sealed = FrameOfReferenceIntegerChunk.encode(chunk, null);
+    // 4 bits per value, instead of 32
+    assertThat(sealed.sizeInBytes()).isLessThan(1000L * Integer.BYTES / 4);
+    assertMatches(chunk, sealed);
+    assertThatThrownBy(() -> sealed.writeInt(0, 1))
+        .isInstanceOf(UnsupportedOperationException.class);
+  }
+
+  @Test
+  void testRandomWidthsOffHeap() {
+    final SplittableRandom random = new SplittableRandom(7);
+    final int capacity = 1000;
+    final var chunk = new HeapIntegerChunk(capacity);
+    int row = 0;
+    while (row < capacity) {
+      // Runs of values with various ranges, negative ones and full 32 bits included
+      final int width = random.nextInt(33);
+      final int base = random.nextInt();
+      final int length = Math.min(capacity - row, 1 + random.nextInt(300));
+      for (int i = 0; i < length; i++) {
+        final int delta = width == 32 ? random.nextInt() : random.nextInt(1 << width);
+        chunk.writeInt(row++, base + delta);
+      }
+    }
+    try (final MemoryAllocatorOnFile allocator = new MemoryAllocatorOnFile(this.tempDir)) {
+      final var sealed = FrameOfReferenceIntegerChunk.encode(chunk, allocator);
+      assertMatches(chunk, sealed);
+      sealed.close();
+      sealed.close();
+    }
+  }
+
+  @Test
+  void testConstantBlocks() {
+    final var chunk = new HeapIntegerChunk(300);
+    for (int i = 0; i < 300; i++) {
+      chunk.writeInt(i, i < 200 ? -5 : 5);
+    }
+    final var sealed = FrameOfReferenceIntegerChunk.encode(chunk, null);
+    assertMatches(chunk, sealed);
+    assertThat(sealed.findRows(-5, 300).cardinality()).isEqualTo(200);
+    assertThat(sealed.findRows(0, 300)).isNull();
+  }
+
+  @Test
+  void testSealerKeepsSmallerChunk() {
+    final ChunkSealer sealer = new ChunkSealer();
+    final var narrow = new HeapIntegerChunk(256);
+    final var wide = new HeapIntegerChunk(256);
+    final SplittableRandom random = new SplittableRandom(1);
+    for (int i = 0; i < 256; i++) {
+      narrow.writeInt(i, 42 + (i & 1));
+      wide.writeInt(i, random.nextInt());
+    }
+    assertThat(sealer.seal(narrow)).isInstanceOf(FrameOfReferenceIntegerChunk.class);
+    assertThat(sealer.seal(wide)).isSameAs(wide);
+  }
+
+  @Test
+  void testSealerKeepsSparseChunks() {
+    final ChunkSealer sealer = new ChunkSealer();
+    final var allocator = new OnHeapAllocator();
+    final var sparse = new SparseIntegerChunk(256, 7, 0.1, allocator);
+    sparse.writeInt(3, 8);
+    final var constant = new ConstantIntegerChunk(256, 7, allocator);
+    final var sparseDoubles = new SparseDoubleChunk(256, 1.5, 0.1, allocator);
+    final var constantDoubles = new ConstantDoubleChunk(256, 1.5, allocator);
+    assertThat(sealer.seal(sparse)).isSameAs(sparse);
+    assertThat(sealer.seal(constant)).isSameAs(constant);
+    assertThat(sealer.seal(sparseDoubles)).isSameAs(sparseDoubles);
+    assertThat(sealer.seal(constantDoubles)).isSameAs(constantDoubles);
+
+    // Once dense, they are as large as any other chunk
+    constant.writeInt(3, 8);
+    assertThat(sealer.seal(constant)).isInstanceOf(FrameOfReferenceIntegerChunk.class);
+  }
+
+  private static void assertMatches(
+      final IntegerChunk expected, final FrameOfReferenceIntegerChunk actual) {
+    final int capacity = expected.capacity();
+    for (int i = 0; i < capacity; i++) {
+      assertThat(actual.readInt(i)).isEqualTo(expected.readInt(i));
+    }
+    for (final int limit : new int[] {0, 1, 127, 128, 129, capacity / 2, capacity}) {
+      for (final int row : new int[] {0, capacity / 3, capacity - 1}) {
+        final int value = expected.readInt(row);
+        final BitSet rows = actual.findRows(value, limit);
+        final BitSet expectedRows = new BitSet();
+        for (int i = 0; i < limit; i++) {
+          if (expected.readInt(i) == value) {
+            expectedRows.set(i);
+          }
+        }
+        assertThat(rows == null ? new BitSet() : rows).isEqualTo(expectedRows);
+      }
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.MemoryAllocator;
+import com.activeviam.platform.AccessPattern;
+import com.activeviam.reference.MemoryAllocatorOnFile;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestPooledChunkAllocator {
+
+  private static final int CAPACITY = (int) (MemoryAllocator.PAGE_SIZE / Integer.BYTES);
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testReuseZeroedChunks() {
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir);
+        final var pool =
+            new PooledChunkAllocator(
+                new FileChunkAllocator(allocator), MemoryAllocator.PAGE_SIZE)) {
+      final IntegerChunk chunk = pool.allocateIntergerChunk(CAPACITY);
+      chunk.writeInt(3, 42);
+      pool.release(chunk);
+      assertThat(pool.getPooledBytes()).isEqualTo(MemoryAllocator.PAGE_SIZE);
+      // The pages of the released chunk were given back rather than overwritten
+      assertThat(((AbstractFileChunk<?>) chunk).residentBytes()).isEqualTo(0L);
+
+      // Another capacity is not served by the pool
+      final IntegerChunk other = pool.allocateIntergerChunk(2 * CAPACITY);
+      final IntegerChunk reused = pool.allocateIntergerChunk(CAPACITY);
+      assertThat(reused).isSameAs(chunk);
+      assertThat(reused.readInt(3)).isEqualTo(0);
+      assertThat(pool.getHitCount()).isEqualTo(1L);
+      assertThat(pool.getMissCount()).isEqualTo(2L);
+      assertThat(pool.getPooledBytes()).isEqualTo(0L);
+
+      // Over the budget, the chunk is freed
+      pool.release(other);
+      assertThat(pool.getPooledBytes()).isEqualTo(0L);
+      pool.release(reused);
+      pool.clear();
+      assertThat(allocator.getBlockCount()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  void testReuseZeroedHeapChunks() {
+    try (final var pool = new PooledChunkAllocator(new OnHeapAllocator(), 1 << 20)) {
+      final IntegerChunk chunk = pool.allocateIntergerChunk(16);
+      chunk.writeInt(5, 7);
+      pool.release(chunk);
+      final IntegerChunk reused = pool.allocateIntergerChunk(16);
+      assertThat(reused).isSameAs(chunk);
+      assertThat(reused.readInt(5)).isEqualTo(0);
+
+      final DoubleChunk values = pool.allocateDoubleChunk(16);
+      values.writeDouble(15, 1.5);
+      pool.release(values);
+      assertThat(pool.allocateDoubleChunk(16).readDouble(15)).isEqualTo(0d);
+    }
+  }
+
+  @Test
+  void testReuseWithoutZeroing() {
+    try (final var pool = new PooledChunkAllocator(new OnHeapAllocator(), 1 << 20, false)) {
+      final DoubleChunk chunk = pool.allocateDoubleChunk(16);
+      chunk.writeDouble(5, 1.5);
+      pool.release(chunk);
+      final DoubleChunk reused = pool.allocateDoubleChunk(16);
+      assertThat(reused).isSameAs(chunk);
+      assertThat(reused.readDouble(5)).isEqualTo(1.5);
+      assertThat(pool.allocateIntergerChunk(16)).isNotSameAs(chunk);
+    }
+  }
+
+  @Test
+  void testPooledChunksAreForgotten() {
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir);
+        final var pool =
+            new PooledChunkAllocator(new FileChunkAllocator(allocator), MemoryAllocator.PAGE_SIZE);
+        final var manager = new ColdChunkManager(1, TimeUnit.HOURS, AccessPattern.PAGEOUT, false)) {
+      final IntegerChunk chunk = pool.allocateIntergerChunk(CAPACITY);
+      manager.register(chunk);
+      chunk.advise(AccessPattern.RANDOM);
+      pool.release(chunk);
+      assertThat(manager.getChunkCount()).isEqualTo(0);
+      assertThat(((AbstractFileChunk<?>) chunk).manager).isNull();
+      assertThat(((AbstractFileChunk<?>) chunk).getPattern()).isEqualTo(AccessPattern.NORMAL);
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.UnsafeUtil;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+public class TestRowFinder {
+
+  private static final sun.misc.Unsafe UNSAFE = UnsafeUtil.getUnsafe();
+
+  @Test
+  void testFindersMatchNaiveLoop() {
+    final SplittableRandom random = new SplittableRandom(13);
+    final int capacity = 1000;
+    final int[] array = new int[capacity];
+    final long address = UNSAFE.allocateMemory((long) capacity * Integer.BYTES);
+    try {
+      final RowFinder[] finders = {RowFinder.getInstance(), new ScalarRowFinder()};
+      for (final RowFinder finder : finders) {
+        for (final int distinct : new int[] {1, 2, 10, 1000}) {
+          for (int i = 0; i < capacity; i++) {
+            array[i] = random.nextInt(distinct);
+            UNSAFE.putInt(address + (long) i * Integer.BYTES, array[i]);
+          }
+          for (final int limit : new int[] {0, 1, 7, 64, 65, 500, capacity}) {
+            for (final int value : new int[] {0, distinct - 1, -1}) {
+              final BitSet expected = naive(array, value, limit);
+              assertThat(finder.findRows(array, value, limit))
+                  .as(finder.toString())
+                  .isEqualTo(expected);
+              assertThat(finder.findRows(address, value, limit))
+                  .as(finder.toString())
+                  .isEqualTo(expected);
+            }
+          }
+        }
+      }
+    } finally {
+      UNSAFE.freeMemory(address);
+    }
+  }
+
+  @Test
+  void testCombineIntoWords() {
+    final int[] array = new int[200];
+    final long address = UNSAFE.allocateMemory((long) array.length * Integer.BYTES);
+    try {
+      for (int i = 0; i < array.length; i++) {
+        array[i] = i % 3;
+        UNSAFE.putInt(address + (long) i * Integer.BYTES, array[i]);
+      }
+      final RowFinder[] finders = {RowFinder.getInstance(), new ScalarRowFinder()};
+      for (final RowFinder finder : finders) {
+        for (final boolean offHeap : new boolean[] {false, true}) {
+          // The rows start at the second word, the first and the bits after the rows are kept
+          final long[] words = {-1L, 0, 0, 0, 0, -1L};
+          final int limit = 190;
+          assertThat(find(finder, offHeap, array, address, 0, limit, words, IntegerChunk.Op.OR))
+              .isTrue();
+          assertThat(find(finder, offHeap, array, address, 1, limit, words, IntegerChunk.Op.OR))
+              .isTrue();
+          assertThat(find(finder, offHeap, array, address, 1, limit, words, IntegerChunk.Op.AND))
+              .isTrue();
+          final BitSet expected = new BitSet();
+          expected.set(0, 64);
+          for (int i = 0; i < limit; i++) {
+            if (array[i] == 1) {
+              expected.set(64 + i);
+            }
+          }
+          expected.set(5 * 64, 6 * 64);
+          assertThat(BitSet.valueOf(words)).as(finder + " " + offHeap).isEqualTo(expected);
+
+          assertThat(find(finder, offHeap, array, address, 2, limit, words, IntegerChunk.Op.AND))
+              .isFalse();
+          assertThat(words[0]).isEqualTo(-1L);
+          assertThat(words[5]).isEqualTo(-1L);
+        }
+      }
+    } finally {
+      UNSAFE.freeMemory(address);
+    }
+  }
+
+  private static boolean find(
+      final RowFinder finder,
+      final boolean offHeap,
+      final int[] array,
+      final long address,
+      final int value,
+      final int limit,
+      final long[] words,
+      final IntegerChunk.Op op) {
+    return offHeap
+        ? finder.findRows(address, value, limit, words, 1, op)
+        : finder.findRows(array, value, limit, words, 1, op);
+  }
+
+  @Test
+  void testSwarLanes() {
+    final int[] values = {0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE, 1 << 16};
+    for (final int low : values) {
+      for (final int high : values) {
+        final long x = ((long) high << 32) | (low & 0xFFFFFFFFL);
+        assertThat(ScalarRowFinder.equalLanes(x))
+            .isEqualTo((low == 0 ? 1L : 0L) | (high == 0 ? 2L : 0L));
+      }
+    }
+  }
+
+  private static BitSet naive(final int[] array, final int value, final int limit) {
+    final BitSet result = new BitSet();
+    for (int i = 0; i < limit; i++) {
+      if (array[i] == value) {
+        result.set(i);
+      }
+    }
+    return result.isEmpty() ? null : result;
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+public class TestRunLengthIntegerChunk implements SpecTestIntegerChunk {
+
+  @Override
+  public IntegerChunk createChunk(int capacity) {
+    return new RunLengthIntegerChunk(capacity);
+  }
+
+  @Test
+  void testSortedAppends() {
+    final var chunk = new RunLengthIntegerChunk(1000);
+    for (int i = 0; i < 1000; i++) {
+      chunk.writeInt(i, i / 100);
+    }
+    assertThat(chunk.getRunCount()).isEqualTo(10);
+    assertThat(chunk.readInt(250)).isEqualTo(2);
+    assertThat(chunk.findRows(3, 1000)).isEqualTo(chunk.findRows(3, 400));
+    assertThat(chunk.findRows(3, 350).cardinality()).isEqualTo(50);
+    assertThat(chunk.findRows(42, 1000)).isNull();
+  }
+
+  @Test
+  void testOverwritesSplitAndMergeRuns() {
+    final var chunk = new RunLengthIntegerChunk(10);
+    for (int i = 0; i < 9; i++) {
+      chunk.writeInt(i, 1);
+    }
+    chunk.writeInt(4, 2);
+    assertThat(chunk.getRunCount()).isEqualTo(3);
+    chunk.writeInt(4, 1);
+    assertThat(chunk.getRunCount()).isEqualTo(1);
+    chunk.writeInt(0, 0);
+    chunk.writeInt(8, 0);
+    assertThat(chunk.getRunCount()).isEqualTo(3);
+    // The row that was never written is 0 as well
+    assertThat(chunk.findRows(0, 10).stream().toArray()).containsExactly(0, 8, 9);
+  }
+
+  @Test
+  void testRandomWritesMatchHeapChunk() {
+    final SplittableRandom random = new SplittableRandom(3);
+    final int capacity = 500;
+    final var chunk = new RunLengthIntegerChunk(capacity);
+    final var reference = new HeapIntegerChunk(capacity);
+    for (int i = 0; i < 5_000; i++) {
+      final int position = random.nextInt(capacity);
+      final int value = random.nextInt(3);
+      chunk.writeInt(position, value);
+      reference.writeInt(position, value);
+    }
+    for (int i = 0; i < capacity; i++) {
+      assertThat(chunk.readInt(i)).as("Chunk[%d]", i).isEqualTo(reference.readInt(i));
+    }
+    for (int value = 0; value < 4; value++) {
+      assertThat(chunk.findRows(value, 321)).isEqualTo(reference.findRows(value, 321));
+    }
+  }
+}
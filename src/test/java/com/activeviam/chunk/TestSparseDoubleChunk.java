@@ -0,0 +1,60 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class TestSparseDoubleChunk implements SpecTestDoubleChunk {
+
+  @Override
+  public DoubleChunk createChunk(int capacity) {
+    return new SparseDoubleChunk(capacity, 0d, 0.1, new OnHeapAllocator());
+  }
+
+  @Test
+  void testNegativeZeroIsAnException() {
+    final var chunk = new SparseDoubleChunk(10, 0d, 0.5, new OnHeapAllocator());
+    chunk.writeDouble(2, -0d);
+    chunk.writeDouble(4, Double.NaN);
+    assertThat(chunk.getExceptionCount()).isEqualTo(2);
+    assertThat(Double.doubleToRawLongBits(chunk.readDouble(2)))
+        .isEqualTo(Double.doubleToRawLongBits(-0d));
+    assertThat(Double.isNaN(chunk.readDouble(4))).isTrue();
+    chunk.writeDouble(2, 0d);
+    assertThat(chunk.getExceptionCount()).isEqualTo(1);
+  }
+
+  @Test
+  void testConstant() {
+    final var chunk = new ConstantDoubleChunk(100, 1.5, new OnHeapAllocator());
+    assertThat(chunk.readDouble(99)).isEqualTo(1.5);
+    chunk.writeDouble(10, 2.5);
+    assertThat(chunk.isConstant()).isFalse();
+    assertThat(chunk.readDouble(10)).isEqualTo(2.5);
+    assertThat(chunk.readDouble(11)).isEqualTo(1.5);
+    chunk.close();
+  }
+
+  @Test
+  void testConstantAdoptsTheFirstValue() {
+    final IChunkAllocator allocator = new ConstantChunkAllocator(new OnHeapAllocator());
+    final var chunk = (ConstantDoubleChunk) allocator.allocateDoubleChunk(100);
+    chunk.writeDouble(0, 2.5);
+    chunk.writeDouble(1, 2.5);
+    assertThat(chunk.isConstant()).isTrue();
+    assertThat(chunk.getDefaultValue()).isEqualTo(2.5);
+
+    chunk.writeDouble(2, -1d);
+    assertThat(chunk.isConstant()).isFalse();
+    assertThat(chunk.readDouble(1)).isEqualTo(2.5);
+    assertThat(chunk.readDouble(2)).isEqualTo(-1d);
+    allocator.release(chunk);
+  }
+}
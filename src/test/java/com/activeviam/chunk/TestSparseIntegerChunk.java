@@ -0,0 +1,116 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+public class TestSparseIntegerChunk implements SpecTestIntegerChunk {
+
+  @Override
+  public IntegerChunk createChunk(int capacity) {
+    return new SparseIntegerChunk(capacity, 0, 0.1, new OnHeapAllocator());
+  }
+
+  @Test
+  void testExceptions() {
+    final var chunk = new SparseIntegerChunk(100, 7, 0.1, new OnHeapAllocator());
+    chunk.writeInt(50, 1);
+    chunk.writeInt(10, 2);
+    chunk.writeInt(90, 1);
+    chunk.writeInt(30, 7);
+    assertThat(chunk.getExceptionCount()).isEqualTo(3);
+    assertThat(chunk.readInt(10)).isEqualTo(2);
+    assertThat(chunk.readInt(11)).isEqualTo(7);
+    assertThat(chunk.findRows(1, 100).stream().toArray()).containsExactly(50, 90);
+    assertThat(chunk.findRows(1, 60).stream().toArray()).containsExactly(50);
+    assertThat(chunk.findRows(7, 100).cardinality()).isEqualTo(97);
+    assertThat(chunk.findRows(3, 100)).isNull();
+
+    chunk.writeInt(50, 7);
+    assertThat(chunk.getExceptionCount()).isEqualTo(2);
+    assertThat(chunk.isDense()).isFalse();
+  }
+
+  @Test
+  void testPromotion() {
+    final SplittableRandom random = new SplittableRandom(5);
+    final var chunk = new SparseIntegerChunk(1000, 0, 0.05, new OnHeapAllocator());
+    final var reference = new HeapIntegerChunk(1000);
+    for (int i = 0; i < 300; i++) {
+      final int position = random.nextInt(1000);
+      final int value = random.nextInt(4);
+      chunk.writeInt(position, value);
+      reference.writeInt(position, value);
+    }
+    assertThat(chunk.isDense()).isTrue();
+    for (int i = 0; i < 1000; i++) {
+      assertThat(chunk.readInt(i)).isEqualTo(reference.readInt(i));
+    }
+    for (int value = 0; value < 4; value++) {
+      assertThat(chunk.findRows(value, 1000)).isEqualTo(reference.findRows(value, 1000));
+    }
+  }
+
+  @Test
+  void testConstant() {
+    final var chunk = new ConstantIntegerChunk(1000, 42, new OnHeapAllocator());
+    final BitSet all = new BitSet();
+    all.set(0, 500);
+    assertThat(chunk.findRows(42, 500)).isEqualTo(all);
+    assertThat(chunk.findRows(1, 1000)).isNull();
+    chunk.writeInt(3, 42);
+    assertThat(chunk.isConstant()).isTrue();
+
+    chunk.writeInt(3, 1);
+    assertThat(chunk.isConstant()).isFalse();
+    assertThat(chunk.readInt(3)).isEqualTo(1);
+    assertThat(chunk.readInt(4)).isEqualTo(42);
+    assertThat(chunk.findRows(42, 1000).cardinality()).isEqualTo(999);
+  }
+
+  @Test
+  void testConstantAdoptsTheFirstValue() {
+    final IChunkAllocator allocator = new ConstantChunkAllocator(new OnHeapAllocator());
+    final var chunk = (ConstantIntegerChunk) allocator.allocateIntergerChunk(1000);
+    chunk.writeInt(0, 42);
+    chunk.writeInt(1, 42);
+    assertThat(chunk.isConstant()).isTrue();
+    assertThat(chunk.getDefaultValue()).isEqualTo(42);
+    assertThat(chunk.findRows(42, 2).cardinality()).isEqualTo(2);
+
+    chunk.writeInt(2, 7);
+    assertThat(chunk.isConstant()).isFalse();
+    assertThat(chunk.readInt(1)).isEqualTo(42);
+    assertThat(chunk.readInt(2)).isEqualTo(7);
+    allocator.release(chunk);
+  }
+
+  @Test
+  void testFindRowsIntoWords() {
+    final var sparse = new SparseIntegerChunk(300, 5, 0.1, new OnHeapAllocator());
+    final var runs = new RunLengthIntegerChunk(300);
+    for (int i = 0; i < 300; i++) {
+      final int value = i % 37 == 0 ? i % 2 : 5;
+      sparse.writeInt(i, value);
+      runs.writeInt(i, value);
+    }
+    for (final IntegerChunk chunk : new IntegerChunk[] {sparse, runs}) {
+      for (final int value : new int[] {5, 1, 2}) {
+        final long[] words = new long[5];
+        final boolean any = chunk.findRows(value, 250, words, 0, IntegerChunk.Op.OR);
+        final BitSet expected = chunk.findRows(value, 250);
+        assertThat(any).isEqualTo(expected != null);
+        assertThat(BitSet.valueOf(words)).isEqualTo(expected == null ? new BitSet() : expected);
+      }
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.chunk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.activeviam.reference.MemoryAllocatorOnFile;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestXorDoubleChunk {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testCorrelatedValues() {
+    final int capacity = 1000;
+    final var chunk = new HeapDoubleChunk(capacity);
+    double price = 100;
+    for (int i = 0; i < capacity; i++) {
+      // Prices moving by cents, repeated half of the time
+      if (i % 2 == 0) {
+        price += 0.25;
+      }
+      chunk.writeDouble(i, price);
+    }
+    final var sealed = XorDoubleChunk.encode(chunk, null);
+    assertThat(sealed.sizeInBytes()).isLessThan((long) capacity * Double.BYTES / 2);
+    assertMatches(chunk, sealed);
+    assertThatThrownBy(() -> sealed.writeDouble(0, 1d))
+        .isInstanceOf(UnsupportedOperationException.class);
+  }
+
+  @Test
+  void testRandomValuesOffHeap() {
+    final SplittableRandom random = new SplittableRandom(11);
+    final int capacity = 777;
+    final var chunk = new HeapDoubleChunk(capacity);
+    final double[] specials = {
+      0d, -0d, Double.NaN, Double.POSITIVE_INFINITY, Double.MIN_VALUE, -Double.MAX_VALUE
+    };
+    for (int i = 0; i < capacity; i++) {
+      final int kind = random.nextInt(4);
+      final double value;
+      if (kind == 0) {
+        value = specials[random.nextInt(specials.length)];
+      } else if (kind == 1) {
+        value = Double.longBitsToDouble(random.nextLong());
+      } else if (kind == 2) {
+        value = i > 0 ? chunk.readDouble(i - 1) : 1d;
+      } else {
+        value = random.nextInt(100) / 8d;
+      }
+      chunk.writeDouble(i, value);
+    }
+    try (final MemoryAllocatorOnFile allocator = new MemoryAllocatorOnFile(this.tempDir)) {
+      final var sealed = XorDoubleChunk.encode(chunk, allocator);
+      assertMatches(chunk, sealed);
+      sealed.close();
+    }
+  }
+
+  @Test
+  void testSum() {
+    final var chunk = new HeapDoubleChunk(200);
+    for (int i = 0; i < 200; i++) {
+      chunk.writeDouble(i, i);
+    }
+    final var sealed = XorDoubleChunk.encode(chunk, null);
+    assertThat(sealed.getBlockCount()).isEqualTo(4);
+    assertThat(sealed.sum(200)).isEqualTo(199 * 200 / 2d);
+    assertThat(sealed.sum(65)).isEqualTo(64 * 65 / 2d);
+    assertThat(sealed.sum(0)).isEqualTo(0d);
+  }
+
+  private static void assertMatches(final DoubleChunk expected, final XorDoubleChunk actual) {
+    for (int i = 0; i < expected.capacity(); i++) {
+      assertThat(Double.doubleToRawLongBits(actual.readDouble(i)))
+          .isEqualTo(Double.doubleToRawLongBits(expected.readDouble(i)));
+    }
+    final double[] buffer = new double[XorDoubleChunk.BLOCK_SIZE];
+    for (int b = 0; b < actual.getBlockCount(); b++) {
+      final int count = actual.decode(b, buffer);
+      for (int i = 0; i < count; i++) {
+        final int row = b * XorDoubleChunk.BLOCK_SIZE + i;
+        assertThat(Double.doubleToRawLongBits(buffer[i]))
+            .isEqualTo(Double.doubleToRawLongBits(expected.readDouble(row)));
+      }
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.platform;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Overhead of a call to the C library through the JNA interface library, compared to the direct
+ * mapping of {@link DirectCLibrary}.
+ *
+ * <p>{@code madvise(MADV_NORMAL)} on a single page is about the cheapest system call the platform
+ * makes, so that the difference between the two is mostly the cost of the binding.
+ *
+ * <pre>
+ * java -cp target/test-classes:... org.openjdk.jmh.Main NativeCallBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NativeCallBenchmark {
+
+  private CLibrary proxy;
+  private CLibrary direct;
+  private long ptr;
+  private long size;
+
+  @Setup
+  public void setUp() {
+    this.proxy = SaferNative.loadLibrary(CLibrary.LIBRARY_NAME, CLibrary.class);
+    this.direct = DirectCLibrary.create(this.proxy);
+    this.size = LinuxPlatform.getInstance().getSupportedPageSizes()[0];
+    this.ptr =
+        this.direct.mmap(
+            0,
+            this.size,
+            CLibrary.PROT_READ | CLibrary.PROT_WRITE,
+            CLibrary.MAP_PRIVATE | CLibrary.MAP_ANONYMOUS,
+            -1,
+            0);
+  }
+
+  @Benchmark
+  public int interfaceLibrary() {
+    return this.proxy.madvise(this.ptr, this.size, CLibrary.MADV_NORMAL);
+  }
+
+  @Benchmark
+  public int directMapping() {
+    return this.direct.madvise(this.ptr, this.size, CLibrary.MADV_NORMAL);
+  }
+
+  @TearDown
+  public void tearDown() {
+    this.direct.munmap(this.ptr, this.size);
+  }
+}
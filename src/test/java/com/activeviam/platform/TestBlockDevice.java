@@ -0,0 +1,58 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.platform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestBlockDevice {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testDeviceNumbers() {
+    // makedev(259, 1), the first partition of an NVMe drive
+    final long dev = (259L << 8) | 1L;
+    assertThat(BlockDevice.major(dev)).isEqualTo(259L);
+    assertThat(BlockDevice.minor(dev)).isEqualTo(1L);
+    // makedev(8, 300) spills the minor number in the high bits
+    final long large = (8L << 8) | (300L & 0xff) | ((300L & ~0xffL) << 12);
+    assertThat(BlockDevice.major(large)).isEqualTo(8L);
+    assertThat(BlockDevice.minor(large)).isEqualTo(300L);
+  }
+
+  @Test
+  void testRecommendations() {
+    final var nvme = new BlockDevice("nvme0n1", 512, 4096, 128, 1023, 128, false);
+    assertThat(nvme.getAllocationGranularity(4096)).isEqualTo(4096L);
+    assertThat(nvme.getScanPattern()).isEqualTo(AccessPattern.NORMAL);
+    assertThat(nvme.getLookupPattern()).isEqualTo(AccessPattern.RANDOM);
+    assertThat(nvme.getPrefaultParallelism(1 << 20, 16)).isEqualTo(8);
+    assertThat(nvme.getPrefaultParallelism(1 << 30, 16)).isEqualTo(16);
+
+    final var disk = new BlockDevice("sda", 512, 16384, 1280, 64, 128, true);
+    assertThat(disk.getAllocationGranularity(4096)).isEqualTo(16384L);
+    assertThat(disk.getScanPattern()).isEqualTo(AccessPattern.SEQUENTIAL);
+    assertThat(disk.getLookupPattern()).isEqualTo(AccessPattern.NORMAL);
+    assertThat(disk.getPrefaultParallelism(1 << 30, 16)).isEqualTo(1);
+  }
+
+  @Test
+  void testProbe() {
+    final BlockDevice device = BlockDevice.probe(this.tempDir);
+    // Temporary directories may be on a tmpfs, without any device
+    if (device != null) {
+      assertThat(device.getLogicalBlockSize()).isGreaterThan(0);
+      assertThat(device.getPhysicalBlockSize() % device.getLogicalBlockSize()).isEqualTo(0);
+      assertThat(device.getMaxRequestSize()).isGreaterThan(0);
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.platform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class TestDirectCLibrary {
+
+  private static final int INVALID_ADVICE = 0xbad;
+
+  @Test
+  void testHotCallsAreDirectlyMapped() {
+    assertThat(LinuxPlatform.getInstance().cLib).isInstanceOf(DirectCLibrary.class);
+  }
+
+  @Test
+  void testErrnoIsPreserved() {
+    final CLibrary proxy = SaferNative.loadLibrary(CLibrary.LIBRARY_NAME, CLibrary.class);
+    final CLibrary direct = DirectCLibrary.create(proxy);
+    final long size = LinuxPlatform.getInstance().getSupportedPageSizes()[0];
+    final long ptr =
+        direct.mmap(
+            0,
+            size,
+            CLibrary.PROT_READ | CLibrary.PROT_WRITE,
+            CLibrary.MAP_PRIVATE | CLibrary.MAP_ANONYMOUS,
+            -1,
+            0);
+    assertThat(ptr).isNotEqualTo((long) CLibrary.MAP_FAILED);
+
+    for (final CLibrary library : new CLibrary[] {proxy, direct}) {
+      assertThat(library.madvise(ptr, size, CLibrary.MADV_NORMAL)).isEqualTo(0);
+      assertThat(library.madvise(ptr, size, INVALID_ADVICE)).isEqualTo(-1);
+      assertThat(SaferNative.getLastError()).isEqualTo(Errno.EINVAL);
+    }
+    assertThat(direct.munmap(ptr, size)).isEqualTo(0);
+  }
+}
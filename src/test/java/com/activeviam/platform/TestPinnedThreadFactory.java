@@ -0,0 +1,64 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.platform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+public class TestPinnedThreadFactory {
+
+  @Test
+  void testParseCpuList() {
+    final BitSet cpus = LinuxPlatform.parseCpuList("0-2,5,8-9\n");
+    assertThat(cpus.stream().toArray()).containsExactly(0, 1, 2, 5, 8, 9);
+    assertThat(LinuxPlatform.parseCpuList("").isEmpty()).isTrue();
+  }
+
+  @Test
+  void testThreadsArePinned() throws InterruptedException {
+    final LinuxPlatform platform = LinuxPlatform.getInstance();
+    final BitSet allowed = platform.getAffinity();
+    final var factory = new PinnedThreadFactory("pinned", true);
+
+    final AtomicReference<BitSet> affinity = new AtomicReference<>();
+    final AtomicReference<Integer> cpu = new AtomicReference<>();
+    final Thread thread =
+        factory.newThread(
+            () -> {
+              affinity.set(platform.getAffinity());
+              cpu.set(platform.getCurrentCpu());
+            });
+    thread.start();
+    thread.join();
+
+    assertThat(affinity.get()).isEqualTo(factory.getCpus(0));
+    assertThat(affinity.get().cardinality()).isEqualTo(1);
+    assertThat(allowed.get(cpu.get())).isTrue();
+    assertThat(affinity.get().get(cpu.get())).isTrue();
+    // The thread creating the pool is not pinned
+    assertThat(platform.getAffinity()).isEqualTo(allowed);
+  }
+
+  @Test
+  void testThreadsSpreadOverAllTheCpus() {
+    final LinuxPlatform platform = LinuxPlatform.getInstance();
+    final BitSet allowed = platform.getAffinity();
+    final var factory = new PinnedThreadFactory("pinned", true);
+    final BitSet used = new BitSet();
+    for (int i = 0; i < allowed.cardinality(); i++) {
+      used.or(factory.getCpus(i));
+    }
+    assertThat(used).isEqualTo(allowed);
+
+    final var nodeFactory = new PinnedThreadFactory("node", true, true);
+    assertThat(nodeFactory.getCpus(0).cardinality()).isGreaterThan(0);
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.reference;
+
+import com.activeviam.MemoryAllocator;
+import com.activeviam.UnsafeUtil;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Long random churn of allocations and frees, comparing the {@link PlacementPolicy placement
+ * policies} of {@link BlockAllocatorManager}.
+ *
+ * <p>Besides the throughput, each iteration prints the disk space used by the block files next to
+ * the memory actually allocated: the closer the two, the better the policy drains blocks.
+ *
+ * <pre>
+ * java -cp target/test-classes:... org.openjdk.jmh.Main AllocatorChurnBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AllocatorChurnBenchmark {
+
+  /** The number of pieces of memory the benchmark plays with. */
+  private static final int SLOTS = 1 << 16;
+
+  /** The size of a piece of memory. */
+  private static final long SIZE = MemoryAllocator.PAGE_SIZE;
+
+  /** Small blocks, so that the benchmark works on many of them. */
+  private static final long BLOCK_SIZE = 256 * SIZE;
+
+  @Param({"FIRST_FIT", "FULLEST_FIRST"})
+  public PlacementPolicy placement;
+
+  private Path dir;
+  private BlockAllocatorManager manager;
+  private long[] ptrs;
+  private int live;
+  private SplittableRandom random;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    this.dir = Files.createTempDirectory("churn");
+    this.manager =
+        new BlockAllocatorManager(
+            (size, blockSize, useHugePage) -> {
+              final var block = new BlockAllocatorOnFile(this.dir, size, blockSize, useHugePage);
+              block.init();
+              return block;
+            },
+            SIZE,
+            BLOCK_SIZE,
+            this.placement);
+    this.ptrs = new long[SLOTS];
+    this.random = new SplittableRandom(42);
+    // Start full, and let the churn bring the allocations down to half of it
+    for (int i = 0; i < SLOTS; i++) {
+      this.ptrs[i] = allocate();
+    }
+    this.live = SLOTS;
+  }
+
+  private long allocate() {
+    final long ptr = this.manager.allocate();
+    // Touch the memory so that it uses disk space
+    UnsafeUtil.putLong(ptr, ptr);
+    return ptr;
+  }
+
+  @Benchmark
+  public int churn() {
+    final int slot = this.random.nextInt(SLOTS);
+    if (this.ptrs[slot] != 0) {
+      this.manager.free(this.ptrs[slot]);
+      this.ptrs[slot] = 0;
+      this.live--;
+    } else if (this.random.nextInt(4) == 0) {
+      // Allocate less than we free to slowly shrink the working set
+      this.ptrs[slot] = allocate();
+      this.live++;
+    }
+    return this.live;
+  }
+
+  @TearDown(Level.Iteration)
+  public void printFootprint() throws IOException, InterruptedException {
+    System.out.println(
+        "\n"
+            + this.placement
+            + ": live="
+            + PrintUtil.printDataSize(this.live * SIZE)
+            + ", blocks="
+            + this.manager.getBlockCount()
+            + ", on disk="
+            + PrintUtil.printDataSize(diskUsage(this.dir)));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    this.manager.release();
+    this.dir.toFile().delete();
+  }
+
+  /**
+   * @param dir a directory
+   * @return the disk space used by the files of the directory, holes excluded
+   */
+  private static long diskUsage(final Path dir) throws IOException, InterruptedException {
+    final Process process =
+        new ProcessBuilder("du", "-s", "-B1", dir.toAbsolutePath().toString()).start();
+    try (final InputStream output = process.getInputStream()) {
+      final String result = new String(output.readAllBytes(), StandardCharsets.UTF_8);
+      process.waitFor();
+      return Long.parseLong(result.split("\\s+")[0]);
+    }
+  }
+}
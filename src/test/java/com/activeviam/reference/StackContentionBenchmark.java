@@ -0,0 +1,80 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.reference;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Many threads popping and pushing back elements of a shared {@link ConcurrentUniqueIntegerStack},
+ * as when they allocate and free memory from the same block, one element or a batch of elements at
+ * a time.
+ *
+ * <pre>
+ * java -cp target/test-classes:... org.openjdk.jmh.Main StackContentionBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(Threads.MAX)
+public class StackContentionBenchmark {
+
+  private static final int CAPACITY = 1 << 16;
+
+  private ConcurrentUniqueIntegerStack stack;
+
+  @Setup
+  public void setUp() {
+    this.stack = new ConcurrentUniqueIntegerStack(CAPACITY);
+    for (int i = 0; i < CAPACITY; i++) {
+      this.stack.push(i);
+    }
+  }
+
+  /** Batch of elements of a thread. */
+  @State(Scope.Thread)
+  public static class Batch {
+    final int[] elems = new int[16];
+  }
+
+  @Benchmark
+  public int popPush() {
+    final int elem = this.stack.pop();
+    if (elem != ConcurrentUniqueIntegerStack.NULL) {
+      this.stack.push(elem);
+    }
+    return elem;
+  }
+
+  /** Pops and pushes back a batch of elements, with one update of the head each time. */
+  @Benchmark
+  public int popNPushAll(final Batch batch) {
+    final int n = this.stack.popN(batch.elems.length, batch.elems);
+    if (n == batch.elems.length) {
+      return this.stack.pushAll(batch.elems);
+    }
+    for (int i = 0; i < n; i++) {
+      this.stack.push(batch.elems[i]);
+    }
+    return n;
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.reference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.activeviam.MemoryAllocator;
+import com.activeviam.UnsafeUtil;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestArena {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testCloseDeletesTheFiles() {
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir)) {
+      final var arena = allocator.createArena();
+      final var other = allocator.createArena();
+      for (int i = 0; i < 100; i++) {
+        UnsafeUtil.putLong(arena.allocateMemory(MemoryAllocator.PAGE_SIZE), i);
+      }
+      arena.allocateMemory(4 * MemoryAllocator.PAGE_SIZE);
+      final var ptr = other.allocateMemory(MemoryAllocator.PAGE_SIZE);
+      UnsafeUtil.putLong(ptr, 42L);
+      assertThat(arena.getBlockCount()).isEqualTo(2);
+      assertThat(arena.dir.toFile().list()).hasSize(2);
+
+      arena.close();
+      assertThat(arena.dir).doesNotExist();
+      assertThat(arena.getBlockCount()).isEqualTo(0);
+      assertThatThrownBy(() -> arena.allocateMemory(MemoryAllocator.PAGE_SIZE))
+          .isInstanceOf(IllegalStateException.class);
+      // Other arenas are not affected
+      assertThat(UnsafeUtil.getLong(ptr)).isEqualTo(42L);
+      arena.close();
+    }
+  }
+
+  @Test
+  void testParentClosesItsArenas() {
+    final var allocator = new MemoryAllocatorOnFile(this.tempDir);
+    final var arena = allocator.createArena();
+    arena.allocateMemory(MemoryAllocator.PAGE_SIZE);
+    allocator.close();
+    assertThat(arena.closed).isTrue();
+    assertThat(arena.dir).doesNotExist();
+  }
+
+  @Test
+  void testStaleArenasOfPersistentAllocatorsAreDeleted() throws IOException {
+    // Left by a process that crashed
+    final Path stale = Files.createDirectory(this.tempDir.resolve("arena_0"));
+    Files.write(stale.resolve("block_0"), new byte[] {1});
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir, true)) {
+      assertThat(stale).doesNotExist();
+      final var arena = allocator.createArena();
+      assertThat(arena.dir).isEqualTo(stale);
+      arena.allocateMemory(MemoryAllocator.PAGE_SIZE);
+    }
+  }
+
+  @Test
+  void testArenasSkipExistingDirectories() throws IOException {
+    final Path existing = Files.createDirectory(this.tempDir.resolve("arena_0"));
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir)) {
+      final var arena = allocator.createArena();
+      assertThat(arena.dir).isEqualTo(this.tempDir.resolve("arena_1"));
+      arena.close();
+      assertThat(existing).exists();
+    }
+  }
+
+  @Test
+  void testClosedAllocatorCreatesNoArena() {
+    final var allocator = new MemoryAllocatorOnFile(this.tempDir);
+    allocator.close();
+    assertThatThrownBy(allocator::createArena).isInstanceOf(IllegalStateException.class);
+  }
+}
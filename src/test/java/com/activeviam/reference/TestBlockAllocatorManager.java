@@ -0,0 +1,210 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.reference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.MemoryAllocator;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestBlockAllocatorManager {
+
+  private static final long SIZE = MemoryAllocator.PAGE_SIZE;
+
+  @TempDir Path tempDir;
+
+  private BlockAllocatorManager createManager(final PlacementPolicy placement) {
+    return new BlockAllocatorManager(
+        (size, blockSize, useHugePage) -> {
+          final var block = new BlockAllocatorOnFile(this.tempDir, size, blockSize, useHugePage);
+          block.init();
+          return block;
+        },
+        SIZE,
+        4 * SIZE,
+        placement);
+  }
+
+  /**
+   * Fills two blocks, then leaves the first one half full and the second one three quarters full.
+   *
+   * @return the addresses allocated in the blocks, by block
+   */
+  private long[][] fillTwoBlocks(final BlockAllocatorManager manager) {
+    final long[][] ptrs = new long[2][4];
+    for (int i = 0; i < 8; i++) {
+      ptrs[i / 4][i % 4] = manager.allocate();
+    }
+    assertThat(manager.getBlockCount()).isEqualTo(2);
+    manager.free(ptrs[0][0]);
+    manager.free(ptrs[0][1]);
+    manager.free(ptrs[1][0]);
+    return ptrs;
+  }
+
+  @Test
+  void testFullestFirst() {
+    final var manager = createManager(PlacementPolicy.FULLEST_FIRST);
+    final long[][] ptrs = fillTwoBlocks(manager);
+    assertThat(manager.allocate()).isEqualTo(ptrs[1][0]);
+    // The second block is full again, the first one is used next
+    final long ptr = manager.allocate();
+    assertThat(ptr == ptrs[0][0] || ptr == ptrs[0][1]).isTrue();
+    manager.release();
+  }
+
+  @Test
+  void testFirstFit() {
+    final var manager = createManager(PlacementPolicy.FIRST_FIT);
+    final long[][] ptrs = fillTwoBlocks(manager);
+    final long ptr = manager.allocate();
+    assertThat(ptr == ptrs[0][0] || ptr == ptrs[0][1]).isTrue();
+    manager.release();
+  }
+
+  @Test
+  void testEmptyBlocksAreReleased() {
+    final var manager = createManager(PlacementPolicy.FULLEST_FIRST);
+    final long[][] ptrs = fillTwoBlocks(manager);
+    manager.free(ptrs[0][2]);
+    manager.free(ptrs[0][3]);
+    assertThat(manager.getBlockCount()).isEqualTo(1);
+    manager.release();
+    assertThat(manager.getBlockCount()).isEqualTo(0);
+  }
+
+  @Test
+  void testConcurrentChurnReleasesEmptyBlocks() throws Exception {
+    final var manager = createManager(PlacementPolicy.FULLEST_FIRST);
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    final List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                final long[] ptrs = new long[6];
+                for (int i = 0; i < 2_000; i++) {
+                  for (int j = 0; j < ptrs.length; j++) {
+                    ptrs[j] = manager.allocate();
+                  }
+                  for (final long ptr : ptrs) {
+                    manager.free(ptr);
+                  }
+                }
+              }));
+    }
+    for (final Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+    // Whichever thread freed the last piece of memory of a block released it
+    assertThat(manager.getBlockCount()).isEqualTo(0);
+    manager.release();
+  }
+
+  @Test
+  void testOnlyTheFreeEmptyingAStripeSumsTheStripes() throws Exception {
+    final AtomicInteger sums = new AtomicInteger();
+    final var block =
+        new BlockAllocatorOnFile(this.tempDir, SIZE, 4 * SIZE, false) {
+          @Override
+          protected int sumCounters() {
+            sums.incrementAndGet();
+            return super.sumCounters();
+          }
+        };
+    block.init();
+    // Allocated by another thread than the one freeing them: the frees decrement its stripe
+    final long[] ptrs = new long[3];
+    final Thread allocating =
+        new Thread(
+            () -> {
+              for (int i = 0; i < ptrs.length; i++) {
+                ptrs[i] = block.allocate();
+              }
+            });
+    allocating.start();
+    allocating.join();
+    assertThat(block.approximateOccupancy()).isEqualTo(3);
+
+    assertThat(block.freeAndCheck(ptrs[0])).isFalse();
+    assertThat(block.freeAndCheck(ptrs[1])).isFalse();
+    assertThat(sums.get()).isEqualTo(0);
+    assertThat(block.freeAndCheck(ptrs[2])).isTrue();
+    assertThat(block.tryRelease()).isTrue();
+    assertThat(block.approximateOccupancy()).isNegative();
+  }
+
+  /**
+   * Interleaves two frees emptying a block allocated by two allocations: the first free to try to
+   * release the block reads the counters while the other free is still visible as an allocation,
+   * and the other free tries to release the block while it is closing. One of them must release the
+   * block anyway.
+   */
+  @Test
+  void testConcurrentFreesReleaseWhileCountersAreStale() throws Exception {
+    final CountDownLatch closing = new CountDownLatch(1);
+    final var block =
+        new BlockAllocatorOnFile(this.tempDir, SIZE, 4 * SIZE, false) {
+          private boolean stale = true;
+
+          @Override
+          protected int sumCounters() {
+            if (this.state != CLOSING || !this.stale) {
+              return super.sumCounters();
+            }
+            this.stale = false;
+            closing.countDown();
+            try {
+              // Gives the other free the time to see the block closing
+              Thread.sleep(100);
+            } catch (final InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            // Counters read before the other free was visible
+            return 1;
+          }
+        };
+    block.init();
+    final long first = block.allocate();
+    final long second = block.allocate();
+
+    final AtomicBoolean secondReleased = new AtomicBoolean();
+    final Thread other =
+        new Thread(
+            () -> {
+              block.free(second);
+              try {
+                closing.await();
+              } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              secondReleased.set(block.tryRelease());
+            });
+    other.start();
+    while (block.occupancy() != 1) {
+      Thread.onSpinWait();
+    }
+    block.free(first);
+    final boolean firstReleased = block.tryRelease();
+    other.join();
+
+    assertThat(block.isReleased()).isTrue();
+    assertThat(firstReleased ^ secondReleased.get()).isTrue();
+  }
+}
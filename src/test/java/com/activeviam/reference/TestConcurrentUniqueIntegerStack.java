@@ -0,0 +1,92 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.reference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+public class TestConcurrentUniqueIntegerStack {
+
+  private static final int NULL = ConcurrentUniqueIntegerStack.NULL;
+
+  @Test
+  void testPushAllAndPopN() {
+    final var stack = new ConcurrentUniqueIntegerStack(16);
+    assertThat(stack.push(3)).isTrue();
+    // Duplicates, in the stack or in the array, are not pushed
+    assertThat(stack.pushAll(new int[] {1, 2, 3, 1, 4})).isEqualTo(3);
+    assertThat(stack.size()).isEqualTo(4);
+
+    final int[] out = new int[8];
+    assertThat(stack.popN(2, out)).isEqualTo(2);
+    assertThat(Arrays.copyOf(out, 2)).containsExactly(1, 2);
+    assertThat(stack.popN(8, out)).isEqualTo(2);
+    assertThat(Arrays.copyOf(out, 2)).containsExactly(4, 3);
+    assertThat(stack.popN(8, out)).isEqualTo(0);
+    assertThat(stack.pop()).isEqualTo(NULL);
+
+    // Popped elements can be pushed again
+    assertThat(stack.pushAll(new int[] {1, 2, 3, 4})).isEqualTo(4);
+    assertThat(stack.pop()).isEqualTo(1);
+  }
+
+  @Test
+  void testConcurrentChurnKeepsElementsUnique() throws Exception {
+    final int capacity = 1024;
+    final int threads = 8;
+    final var stack = new ConcurrentUniqueIntegerStack(capacity);
+    for (int i = 0; i < capacity; i++) {
+      stack.push(i);
+    }
+
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    final CountDownLatch start = new CountDownLatch(1);
+    final Future<?>[] futures = new Future<?>[threads];
+    for (int t = 0; t < threads; t++) {
+      final boolean batched = t % 2 == 0;
+      futures[t] =
+          executor.submit(
+              () -> {
+                start.await();
+                final int[] elems = new int[8];
+                for (int i = 0; i < 20_000; i++) {
+                  if (batched) {
+                    final int n = stack.popN(elems.length, elems);
+                    assertThat(stack.pushAll(Arrays.copyOf(elems, n))).isEqualTo(n);
+                  } else {
+                    final int elem = stack.pop();
+                    if (elem != NULL) {
+                      assertThat(stack.push(elem)).isTrue();
+                    }
+                  }
+                }
+                return null;
+              });
+    }
+    start.countDown();
+    for (final Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    final BitSet popped = new BitSet();
+    int elem;
+    while ((elem = stack.pop()) != NULL) {
+      assertThat(popped.get(elem)).isFalse();
+      popped.set(elem);
+    }
+    assertThat(popped.cardinality()).isEqualTo(capacity);
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.reference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.activeviam.MemoryAllocator;
+import com.activeviam.UnsafeUtil;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestPersistentMemoryAllocatorOnFile {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testReopenKeepsAllocations() {
+    final var size = 2 * MemoryAllocator.PAGE_SIZE;
+    final BlockLocation kept;
+    final BlockLocation freed;
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir, true)) {
+      final var ptr1 = allocator.allocateMemory(size);
+      final var ptr2 = allocator.allocateMemory(size);
+      final var ptr3 = allocator.allocateMemory(size);
+      UnsafeUtil.putLong(ptr1, 42L);
+      UnsafeUtil.putLong(ptr3 + size - Long.BYTES, 24L);
+      kept = allocator.locate(ptr3);
+      freed = allocator.locate(ptr2);
+      allocator.freeMemory(ptr2, size);
+      assertThat(allocator.resolve(allocator.locate(ptr1))).isEqualTo(ptr1);
+    }
+
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir, true)) {
+      final var ptr3 = allocator.resolve(kept);
+      assertThat(UnsafeUtil.getLong(ptr3 + size - Long.BYTES)).isEqualTo(24L);
+      assertThat(UnsafeUtil.getLong(allocator.resolve(new BlockLocation(kept.getBlockId(), 0))))
+          .isEqualTo(42L);
+
+      // The hole left by the freed memory is used first
+      final var ptr = allocator.allocateMemory(size);
+      assertThat(allocator.locate(ptr)).isEqualTo(freed);
+      // Then the memory after the last allocation
+      final var next = allocator.allocateMemory(size);
+      assertThat(allocator.locate(next).getOffset()).isEqualTo(kept.getOffset() + size);
+    }
+  }
+
+  @Test
+  void testEmptyBlocksAreNotKept() {
+    final var size = MemoryAllocator.PAGE_SIZE;
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir, true)) {
+      final var ptr = allocator.allocateMemory(size);
+      allocator.freeMemory(ptr, size);
+    }
+    assertThat(BlockManifest.read(this.tempDir.resolve(BlockManifest.FILE_NAME)).isEmpty())
+        .isTrue();
+    assertThat(BlockManifest.blockFile(this.tempDir, 0).toFile().exists()).isFalse();
+  }
+}
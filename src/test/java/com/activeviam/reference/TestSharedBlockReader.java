@@ -0,0 +1,98 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.reference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.activeviam.MemoryAllocator;
+import com.activeviam.UnsafeUtil;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestSharedBlockReader {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void testReadExportedMemory() {
+    final var size = MemoryAllocator.PAGE_SIZE;
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir, true)) {
+      final var ptr = allocator.allocateMemory(size);
+      UnsafeUtil.putInt(ptr, 1234);
+      final var location = allocator.locate(ptr);
+
+      try (final var reader = MemoryAllocatorOnFile.attach(allocator.export())) {
+        final var shared = reader.resolve(location);
+        assertThat(UnsafeUtil.getInt(shared)).isEqualTo(1234);
+        assertThat(reader.isAllocated(location)).isTrue();
+
+        // Both processes share the same pages
+        UnsafeUtil.putInt(ptr + Integer.BYTES, 5678);
+        assertThat(UnsafeUtil.getInt(shared + Integer.BYTES)).isEqualTo(5678);
+
+        final var other = allocator.allocateMemory(size);
+        allocator.freeMemory(ptr, size);
+        assertThat(reader.isAllocated(location)).isFalse();
+        assertThat(reader.isAllocated(allocator.locate(other))).isTrue();
+      }
+    }
+  }
+
+  @Test
+  void testRefreshSeesNewBlocks() {
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir, true);
+        final var reader = MemoryAllocatorOnFile.attach(allocator.export())) {
+      final var size = 4 * MemoryAllocator.PAGE_SIZE;
+      final var ptr = allocator.allocateMemory(size);
+      UnsafeUtil.putLong(ptr, 99L);
+      final var location = allocator.locate(ptr);
+
+      reader.refresh();
+      assertThat(UnsafeUtil.getLong(reader.resolve(location))).isEqualTo(99L);
+    }
+  }
+
+  @Test
+  void testBlockIdsAreNotReusedAfterRestart() {
+    final var size = MemoryAllocator.PAGE_SIZE;
+    final BlockLocation kept;
+    final BlockLocation released;
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir, true)) {
+      final var ptr = allocator.allocateMemory(size);
+      UnsafeUtil.putInt(ptr, 1234);
+      kept = allocator.locate(ptr);
+      // In a block of its own, the block with the highest id, released with its memory
+      final var other = allocator.allocateMemory(2 * size);
+      released = allocator.locate(other);
+      allocator.freeMemory(other, 2 * size);
+    }
+    assertThat(released.getBlockId()).isGreaterThan(kept.getBlockId());
+
+    final SharedBlockReader before = MemoryAllocatorOnFile.attach(this.tempDir);
+    // The exporter restarts, and creates a new block
+    try (final var allocator = new MemoryAllocatorOnFile(this.tempDir, true)) {
+      final var ptr = allocator.allocateMemory(2 * size);
+      UnsafeUtil.putInt(ptr, 5678);
+      final var created = allocator.locate(ptr);
+      assertThat(created.getBlockId()).isGreaterThan(released.getBlockId());
+
+      try (final var after = MemoryAllocatorOnFile.attach(allocator.export())) {
+        for (final SharedBlockReader reader : new SharedBlockReader[] {before, after}) {
+          assertThat(UnsafeUtil.getInt(reader.resolve(kept))).isEqualTo(1234);
+          assertThat(UnsafeUtil.getInt(reader.resolve(created))).isEqualTo(5678);
+          assertThatThrownBy(() -> reader.resolve(released))
+              .isInstanceOf(IllegalArgumentException.class);
+        }
+      }
+    } finally {
+      before.close();
+    }
+  }
+}
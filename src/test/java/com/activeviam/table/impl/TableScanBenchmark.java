@@ -0,0 +1,95 @@
+/*
+ * (C) ActiveViam 2020
+ * ALL RIGHTS RESERVED. This material is the CONFIDENTIAL and PROPRIETARY
+ * property of ActiveViam. Any unauthorized use
+ * reproduction or transfer of this material is strictly prohibited
+ */
+
+package com.activeviam.table.impl;
+
+import com.activeviam.chunk.FileChunkAllocator;
+import com.activeviam.chunk.OnHeapAllocator;
+import com.activeviam.reference.MemoryAllocatorOnFile;
+import com.activeviam.table.impl.ColumnarTable.TableFormat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scan of a {@link ColumnarTable} stored on the heap or in memory mapped files.
+ *
+ * <p>Set {@code rows} above what the heap or the RAM can hold to measure the table spilling to the
+ * disk of {@code java.io.tmpdir}.
+ *
+ * <pre>
+ * java -cp target/test-classes:... org.openjdk.jmh.Main TableScanBenchmark -p rows=100000000
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TableScanBenchmark {
+
+  @Param({"HEAP", "FILE"})
+  public String storage;
+
+  @Param({"4000000"})
+  public int rows;
+
+  private Path dir;
+  private MemoryAllocatorOnFile allocator;
+  private ColumnarTable table;
+  private long[] words;
+
+  @Setup
+  public void setUp() throws IOException {
+    final TableFormat format = new TableFormat(3, 1, 1 << 16);
+    if ("FILE".equals(this.storage)) {
+      this.dir = Files.createTempDirectory("table");
+      this.allocator = new MemoryAllocatorOnFile(this.dir);
+      this.table = new ColumnarTable(format, new FileChunkAllocator(this.allocator));
+    } else {
+      this.table = new ColumnarTable(format, new OnHeapAllocator());
+    }
+    for (int i = 0; i < this.rows; i++) {
+      this.table.append(new Record(new int[] {i % 1000, i % 7, i % 3}, new double[] {i}));
+    }
+    this.words = new long[(this.rows + Long.SIZE - 1) / Long.SIZE];
+  }
+
+  @Benchmark
+  public int findRows() {
+    return this.table.findRows(new int[] {-1, 3, 1}).cardinality();
+  }
+
+  /** The same scan into words allocated once, as a query engine reusing its bitmaps would do */
+  @Benchmark
+  public boolean findRowsIntoWords() {
+    return this.table.findRows(new int[] {-1, 3, 1}, this.words);
+  }
+
+  @TearDown
+  public void tearDown() {
+    this.table.close();
+    if (this.allocator != null) {
+      this.allocator.close();
+      this.dir.toFile().delete();
+    }
+  }
+}
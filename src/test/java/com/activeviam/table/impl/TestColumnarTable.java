@@ -1,12 +1,29 @@
 package com.activeviam.table.impl;
 
+import com.activeviam.chunk.BitPackedIntegerChunk;
+import com.activeviam.chunk.ChunkPinner;
+import com.activeviam.chunk.ChunkSealer;
+import com.activeviam.chunk.ConstantIntegerChunk;
+import com.activeviam.chunk.FileChunkAllocator;
+import com.activeviam.chunk.FileIntegerChunk;
+import com.activeviam.chunk.IntegerChunk;
+import com.activeviam.chunk.OnHeapAllocator;
+import com.activeviam.chunk.RunLengthIntegerChunk;
+import com.activeviam.platform.AccessPattern;
+import com.activeviam.reference.MemoryAllocatorOnFile;
 import com.activeviam.table.impl.ColumnarTable.TableFormat;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.BitSet;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class TestColumnarTable {
 
+	@TempDir
+	Path tempDir;
+
 	@Test
 	public void testFindRows() {
 		int chunkSize = 4;
@@ -27,4 +44,184 @@ public class TestColumnarTable {
 		Assertions.assertEquals(expected, table.findRows(new int[] {-1, -1, 2}));
 	}
 
+	@Test
+	public void testResidencyOnHeap() {
+		final ColumnarTable table = new ColumnarTable(new TableFormat(2, 1, 4));
+		for (int i = 0; i < 9; i++) {
+			table.append(new Record(new int[] {i, i % 2}, new double[] {i}));
+		}
+		Assertions.assertArrayEquals(new double[] {1d, 1d, 1d}, table.getAttributeResidency(1));
+		Assertions.assertArrayEquals(new double[] {1d, 1d, 1d}, table.getChunkResidency());
+		Assertions.assertEquals(3, table.getChunksByResidency(new int[] {-1, 1}).length);
+	}
+
+	@Test
+	public void testOnFile() {
+		try (final MemoryAllocatorOnFile allocator = new MemoryAllocatorOnFile(this.tempDir)) {
+			final ColumnarTable table =
+					new ColumnarTable(new TableFormat(2, 1, 1024), new FileChunkAllocator(allocator));
+			for (int i = 0; i < 3000; i++) {
+				table.append(new Record(new int[] {i, i % 3}, new double[] {i}));
+			}
+			Assertions.assertEquals(1000, table.findRows(new int[] {-1, 2}).cardinality());
+			Assertions.assertEquals(2999D, table.readDouble(2999, 0));
+			Assertions.assertTrue(allocator.getBlockCount() > 0);
+
+			table.close();
+			Assertions.assertEquals(0, table.size());
+			Assertions.assertEquals(0, table.capacity());
+			// All the chunks were freed, releasing the blocks of the allocator
+			Assertions.assertEquals(0, allocator.getBlockCount());
+		}
+	}
+
+	@Test
+	public void testLookupsAdviseTheChunksNoScanReads() {
+		try (final MemoryAllocatorOnFile allocator = new MemoryAllocatorOnFile(this.tempDir)) {
+			final ColumnarTable table =
+					new ColumnarTable(new TableFormat(2, 1, 1024), new FileChunkAllocator(allocator));
+			for (int i = 0; i < 1024; i++) {
+				table.append(new Record(new int[] {i, i % 3}, new double[] {i}));
+			}
+			final ChunkSet chunk = table.chunks[0];
+			final FileIntegerChunk scanned = (FileIntegerChunk) chunk.attributes[1];
+			Assertions.assertEquals(341, table.findRows(new int[] {-1, 2}).cardinality());
+			Assertions.assertEquals(AccessPattern.SEQUENTIAL, scanned.getPattern());
+
+			// The scan is over: the lookups read a few pages at random
+			table.getRecord(100);
+			Assertions.assertEquals(AccessPattern.RANDOM, scanned.getPattern());
+
+			// A running scan keeps its read-ahead
+			chunk.beginScan(new int[] {-1, 2});
+			table.getRecord(100);
+			Assertions.assertEquals(AccessPattern.SEQUENTIAL, scanned.getPattern());
+			chunk.endScan();
+			table.close();
+		}
+	}
+
+	@Test
+	public void testSealFullChunks() {
+		try (final MemoryAllocatorOnFile allocator = new MemoryAllocatorOnFile(this.tempDir)) {
+			final ColumnarTable table =
+					new ColumnarTable(new TableFormat(2, 1, 4096), new FileChunkAllocator(allocator));
+			table.setChunkSealer(new ChunkSealer(allocator));
+			for (int i = 0; i < 10_000; i++) {
+				table.append(new Record(new int[] {100_000 + i % 7, i}, new double[] {i}));
+			}
+			for (int i = 0; i < 10_000; i++) {
+				Assertions.assertEquals(100_000 + i % 7, table.readInt(i, 0));
+				Assertions.assertEquals(i, table.readInt(i, 1));
+				Assertions.assertEquals(i, table.readDouble(i, 0));
+			}
+			Assertions.assertEquals(1429, table.findRows(new int[] {100_003, -1}).cardinality());
+			table.close();
+			Assertions.assertEquals(0, allocator.getBlockCount());
+		}
+	}
+
+	@Test
+	public void testSealKeepsPinnedColumns() {
+		try (final MemoryAllocatorOnFile allocator = new MemoryAllocatorOnFile(this.tempDir);
+				final ChunkPinner pinner = new ChunkPinner()) {
+			final ColumnarTable table =
+					new ColumnarTable(new TableFormat(2, 1, 4096), new FileChunkAllocator(allocator));
+			Assertions.assertTrue(table.pinAttribute(0, pinner));
+			table.setChunkSealer(new ChunkSealer(allocator));
+			for (int i = 0; i < 10_000; i++) {
+				table.append(new Record(new int[] {i % 7, i % 5}, new double[] {i}));
+			}
+			// The full chunks are sealed, but their pinned column is still locked in RAM
+			Assertions.assertEquals(3, pinner.getPinnedChunkCount());
+			Assertions.assertEquals(1429, table.findRows(new int[] {3, -1}).cardinality());
+			// The other columns were sealed off-heap, and cannot be pinned anymore
+			Assertions.assertFalse(table.pinAttribute(1, pinner));
+			Assertions.assertEquals(4, pinner.getPinnedChunkCount());
+			table.close();
+			Assertions.assertEquals(0, pinner.getPinnedChunkCount());
+		}
+	}
+
+	@Test
+	public void testFindRowsIntoWords() {
+		final ColumnarTable table = new ColumnarTable(new TableFormat(3, 1, 128));
+		for (int i = 0; i < 1000; i++) {
+			table.append(new Record(new int[] {i % 2, i % 3, i % 5}, new double[] {i}));
+		}
+		final int[][] predicates = {{-1, -1, -1}, {1, -1, -1}, {1, 2, -1}, {0, 0, 4}, {-1, 7, -1}};
+		for (final int[] predicate : predicates) {
+			final long[] words = new long[16];
+			// Garbage from a previous scan is overwritten
+			Arrays.fill(words, -1L);
+			final boolean any = table.findRows(predicate, words);
+			final BitSet expected = new BitSet();
+			for (int i = 0; i < 1000; i++) {
+				if ((predicate[0] < 0 || i % 2 == predicate[0])
+						&& (predicate[1] < 0 || i % 3 == predicate[1])
+						&& (predicate[2] < 0 || i % 5 == predicate[2])) {
+					expected.set(i);
+				}
+			}
+			Assertions.assertEquals(!expected.isEmpty(), any);
+			Assertions.assertEquals(expected, BitSet.valueOf(words).get(0, 1000));
+			Assertions.assertEquals(expected, table.findRows(predicate));
+		}
+
+		final ColumnarTable small = new ColumnarTable(new TableFormat(1, 0, 4));
+		Assertions.assertThrows(
+				IllegalStateException.class, () -> small.findRows(new int[] {0}, new long[1]));
+	}
+
+	@Test
+	public void testFindRowsIntoWordsOfEncodedChunks() {
+		// Sorted, constant, narrow and wide columns, the last one sealed with a frame of reference
+		final OnHeapAllocator allocator =
+				new OnHeapAllocator() {
+					private int column;
+
+					@Override
+					public IntegerChunk allocateIntergerChunk(int size) {
+						switch (this.column++ % 4) {
+							case 0:
+								return new RunLengthIntegerChunk(size);
+							case 1:
+								return new ConstantIntegerChunk(size, 3, this);
+							case 2:
+								return new BitPackedIntegerChunk(size);
+							default:
+								return super.allocateIntergerChunk(size);
+						}
+					}
+				};
+		final ColumnarTable table = new ColumnarTable(new TableFormat(4, 1, 256), allocator);
+		table.setChunkSealer(new ChunkSealer());
+		for (int i = 0; i < 1000; i++) {
+			table.append(new Record(new int[] {i / 100, 3, i % 3, 1_000_000 + i % 5}, new double[] {i}));
+		}
+		final int[][] predicates = {
+			{4, -1, -1, -1}, {4, 3, -1, -1}, {4, 3, 2, -1}, {-1, 3, 1, 1_000_004},
+			{-1, 2, -1, -1}, {-1, -1, -1, 1_000_002}, {11, -1, -1, -1}, {-1, -1, 7, -1}
+		};
+		for (final int[] predicate : predicates) {
+			final long[] words = new long[16];
+			// Garbage from a previous scan is overwritten
+			Arrays.fill(words, -1L);
+			final boolean any = table.findRows(predicate, words);
+			final BitSet expected = new BitSet();
+			for (int i = 0; i < 1000; i++) {
+				if ((predicate[0] < 0 || i / 100 == predicate[0])
+						&& (predicate[1] < 0 || 3 == predicate[1])
+						&& (predicate[2] < 0 || i % 3 == predicate[2])
+						&& (predicate[3] < 0 || 1_000_000 + i % 5 == predicate[3])) {
+					expected.set(i);
+				}
+			}
+			Assertions.assertEquals(!expected.isEmpty(), any, Arrays.toString(predicate));
+			Assertions.assertEquals(
+					expected, BitSet.valueOf(words).get(0, 1000), Arrays.toString(predicate));
+			Assertions.assertEquals(expected, table.findRows(predicate), Arrays.toString(predicate));
+		}
+	}
+
 }